@@ -5,15 +5,25 @@ import io.github.phantamanta44.shlgl.engine.event.EventBus;
 import io.github.phantamanta44.shlgl.engine.event.impl.GameTickEvent;
 import io.github.phantamanta44.shlgl.engine.event.impl.RenderEvent;
 import io.github.phantamanta44.shlgl.engine.TickTimer;
+import io.github.phantamanta44.shlgl.graphics.font.BitmapFont;
+import io.github.phantamanta44.shlgl.graphics.render.FramePacket;
+import io.github.phantamanta44.shlgl.graphics.render.GLState;
 import io.github.phantamanta44.shlgl.graphics.render.MarginHandler;
+import io.github.phantamanta44.shlgl.graphics.render.QuadBatch;
 import io.github.phantamanta44.shlgl.graphics.render.RenderBuffer;
+import io.github.phantamanta44.shlgl.graphics.render.RetainedMesh;
+import io.github.phantamanta44.shlgl.graphics.render.ShaderCache;
+import io.github.phantamanta44.shlgl.graphics.render.SpriteInstanceBatch;
+import io.github.phantamanta44.shlgl.graphics.render.StreamingBuffer;
+import io.github.phantamanta44.shlgl.graphics.render.UniformBuffer;
 import io.github.phantamanta44.shlgl.graphics.render.Window;
+import io.github.phantamanta44.shlgl.graphics.texture.TextureManager;
+import io.github.phantamanta44.shlgl.util.collection.TripleBuffer;
 import io.github.phantamanta44.shlgl.util.io.InputStreamUtils;
 import io.github.phantamanta44.shlgl.util.io.ResourceUtils;
 import io.github.phantamanta44.shlgl.util.math.Vector2I;
 import io.github.phantamanta44.shlgl.util.memory.Pooled;
 import io.github.phantamanta44.shlgl.graphics.render.ShaderProperty;
-import io.github.phantamanta44.shlgl.graphics.render.ShaderUtils;
 import org.lwjgl.glfw.Callbacks;
 import org.lwjgl.glfw.GLFW;
 import org.lwjgl.glfw.GLFWErrorCallback;
@@ -21,9 +31,16 @@ import org.lwjgl.opengl.GL;
 import org.lwjgl.opengl.GL11;
 import org.lwjgl.opengl.GL15;
 import org.lwjgl.opengl.GL20;
+import org.lwjgl.opengl.GL30;
+import org.lwjgl.opengl.GLCapabilities;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.file.Paths;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.locks.LockSupport;
 
 import static org.lwjgl.system.MemoryUtil.NULL;
 
@@ -39,7 +56,7 @@ public class SHLGL {
     private static SHLGL INSTANCE;
 
     /**
-     * Initializes GLFW and constructs the game window.
+     * Initializes GLFW and constructs the game window. Requires an OpenGL 3.3 core profile context.
      * @param windowWidth The game window's initial width.
      * @param windowHeight The game window's initial height.
      * @param windowTitle The game window's initial title bar text.
@@ -65,6 +82,23 @@ public class SHLGL {
         return INSTANCE;
     }
 
+    /**
+     * Checks whether the calling thread owns the GL context. Before SHLGL is initialized, every thread does.
+     * @return Whether GL calls can be made on the calling thread.
+     */
+    public static boolean isRenderThread() {
+        return INSTANCE == null || Thread.currentThread() == INSTANCE.glThread;
+    }
+
+    /**
+     * Throws if the calling thread doesn't own the GL context, such as the logic thread when rendering is threaded.
+     * @param action What the caller is doing, for the exception's message.
+     */
+    public static void checkRenderThread(String action) {
+        if (!isRenderThread())
+            throw new IllegalStateException(action + " needs the GL context; go through runOnRenderThread instead!");
+    }
+
     /**
      * The game window instance.
      */
@@ -90,6 +124,16 @@ public class SHLGL {
      */
     private int shaderProg;
 
+    /**
+     * The shader program used for instanced sprites.
+     */
+    private int instancedProg;
+
+    /**
+     * The shader program used for instanced sprites sampling array textures.
+     */
+    private int arrayProg;
+
     /**
      * The transformation kernel uniform.
      */
@@ -100,6 +144,16 @@ public class SHLGL {
      */
     private ShaderProperty.Vec4 colourTrans;
 
+    /**
+     * The binding point of the per-frame constants block.
+     */
+    private static final int FRAME_CONSTANTS_BINDING = 0;
+
+    /**
+     * The uniform buffer holding per-frame constants shared by all programs.
+     */
+    private UniformBuffer frameConstants;
+
     /**
      * The rendering action buffer.
      */
@@ -120,20 +174,65 @@ public class SHLGL {
      */
     private MarginHandler margins;
 
+    /**
+     * The number of frame segments in the vertex streaming buffer.
+     */
+    private static final int STREAM_SEGMENTS = 3;
+
+    /**
+     * The address of the VAO used for rendering.
+     */
+    private int vao;
+
     /**
      * The address of the VBO used for rendering.
      */
     private int vbo;
 
+    /**
+     * The streaming buffer backing the VBO.
+     */
+    private StreamingBuffer vertexStream;
+
     /**
      * The game tick counter.
      */
     private long tickCount;
 
+    /**
+     * How long an idle thread waits before checking for new frames again, in nanoseconds.
+     */
+    private static final long FRAME_WAIT_NANOS = 500000L;
+
     /**
      * The game's running state.
      */
-    private boolean running;
+    private volatile boolean running;
+
+    /**
+     * Whether rendering runs on a dedicated thread.
+     */
+    private boolean threaded;
+
+    /**
+     * The frame packets exchanged between the logic and render threads, or <code>null</code> if not threaded.
+     */
+    private TripleBuffer<FramePacket> frames;
+
+    /**
+     * The render thread, or <code>null</code> if not threaded.
+     */
+    private Thread renderThread;
+
+    /**
+     * The thread that owns the GL context.
+     */
+    private volatile Thread glThread;
+
+    /**
+     * Tasks waiting to be run on the render thread.
+     */
+    private final Queue<Runnable> renderTasks = new ConcurrentLinkedQueue<>();
 
     /**
      * The exit code to terminate with.
@@ -153,15 +252,24 @@ public class SHLGL {
         GLFW.glfwDefaultWindowHints();
         GLFW.glfwWindowHint(GLFW.GLFW_VISIBLE, GLFW.GLFW_FALSE);
         GLFW.glfwWindowHint(GLFW.GLFW_RESIZABLE, GLFW.GLFW_TRUE);
+        GLFW.glfwWindowHint(GLFW.GLFW_CONTEXT_VERSION_MAJOR, 3);
+        GLFW.glfwWindowHint(GLFW.GLFW_CONTEXT_VERSION_MINOR, 3);
+        GLFW.glfwWindowHint(GLFW.GLFW_OPENGL_PROFILE, GLFW.GLFW_OPENGL_CORE_PROFILE);
+        GLFW.glfwWindowHint(GLFW.GLFW_OPENGL_FORWARD_COMPAT, GLFW.GLFW_TRUE);
         this.windowHandle = GLFW.glfwCreateWindow(windowWidth, windowHeight, windowTitle, NULL, NULL);
         if (windowHandle == NULL)
-            throw new IllegalStateException("Failed to initialize game window!");
+            throw new IllegalStateException("Failed to initialize game window with an OpenGL 3.3 core context!");
         GLFW.glfwMakeContextCurrent(windowHandle);
+        this.glThread = Thread.currentThread();
         this.gameWindow = new Window(windowHandle);
         GL.createCapabilities();
-        vbo = GL15.glGenBuffers();
-        GL15.glBindBuffer(GL15.GL_ARRAY_BUFFER, vbo);
+        vao = GL30.glGenVertexArrays();
+        GLState.bindVertexArray(vao);
+        vertexStream = new StreamingBuffer(GL15.GL_ARRAY_BUFFER,
+                4 * RenderBuffer.DEFAULT_BATCH_SIZE * QuadBatch.FLOATS_PER_QUAD * Float.BYTES, STREAM_SEGMENTS);
+        vbo = vertexStream.getHandle();
         initShaders();
+        TextureManager.init();
         setResolution(640, 480);
         this.eventBus = new EventBus();
         this.timer = new TickTimer();
@@ -172,15 +280,18 @@ public class SHLGL {
      * Initializes the default vertex and fragment shaders.
      */
     private void initShaders() {
-        try (InputStream vertIn = ResourceUtils.getStream("shlgl/shader/shader.vert");
-             InputStream fragIn = ResourceUtils.getStream("shlgl/shader/shader.frag")) {
-            int vert = ShaderUtils.compileShader(GL20.GL_VERTEX_SHADER, InputStreamUtils.readAsString(vertIn));
-            int frag = ShaderUtils.compileShader(GL20.GL_FRAGMENT_SHADER, InputStreamUtils.readAsString(fragIn));
-            shaderProg = ShaderUtils.createProgram(vert, frag);
-            GL20.glUseProgram(shaderProg);
-        } catch (IOException e) {
-            throw new IllegalStateException("Failed to initialize shaders!", e);
-        }
+        ShaderCache cache = new ShaderCache(Paths.get(System.getProperty("shlgl.shaderCache",
+                Paths.get(System.getProperty("user.home"), ".shlgl", "shader-cache").toString())));
+        int[] programs = cache.load(readProgram("shader"), readProgram("shader_instanced"),
+                readProgram("shader_array"));
+        shaderProg = programs[0];
+        instancedProg = programs[1];
+        arrayProg = programs[2];
+        frameConstants = new UniformBuffer(16, FRAME_CONSTANTS_BINDING);
+        frameConstants.attach(shaderProg, "FrameConstants");
+        frameConstants.attach(instancedProg, "FrameConstants");
+        frameConstants.attach(arrayProg, "FrameConstants");
+        GLState.useProgram(shaderProg);
         int loc = GL20.glGetAttribLocation(shaderProg, "posXY");
         GL20.glVertexAttribPointer(loc, 2, GL11.GL_FLOAT, false, Float.BYTES * 4, 0);
         GL20.glEnableVertexAttribArray(loc);
@@ -193,6 +304,21 @@ public class SHLGL {
         colourTrans = new ShaderProperty.Vec4(shaderProg, loc);
     }
 
+    /**
+     * Reads the sources of a built-in shader program.
+     * @param name The shared name of the program's vertex and fragment shader resources.
+     * @return The program's sources.
+     */
+    private static ShaderCache.Source readProgram(String name) {
+        try (InputStream vertIn = ResourceUtils.getStream("shlgl/shader/" + name + ".vert");
+             InputStream fragIn = ResourceUtils.getStream("shlgl/shader/" + name + ".frag")) {
+            return new ShaderCache.Source(name,
+                    InputStreamUtils.readAsString(vertIn), InputStreamUtils.readAsString(fragIn));
+        } catch (IOException e) {
+            throw new IllegalStateException("Failed to initialize shaders!", e);
+        }
+    }
+
     /**
      * Sets the game resolution. 640x480 by default.
      */
@@ -201,6 +327,72 @@ public class SHLGL {
         this.height = height;
     }
 
+    /**
+     * Retrieves the game resolution's width.
+     * @return The width, in render coordinates.
+     */
+    public int getResolutionWidth() {
+        return width;
+    }
+
+    /**
+     * Retrieves the game resolution's height.
+     * @return The height, in render coordinates.
+     */
+    public int getResolutionHeight() {
+        return height;
+    }
+
+    /**
+     * Sets whether rendering runs on a dedicated thread that owns the GL context. When enabled, ticks and render
+     * events run on the calling thread and produce frame packets that the render thread draws, so vsync waits and
+     * slow frames no longer hold up game logic. Event listeners then run on the logic thread, which has no GL context,
+     * so any other GL work, such as loading textures synchronously, must go through
+     * {@link #runOnRenderThread(Runnable)}; GL-bound methods called from the logic thread throw. Disabled by default;
+     * must be set before the main loop begins.
+     * @param threaded Whether to render on a dedicated thread.
+     */
+    public void setThreadedRendering(boolean threaded) {
+        if (timer.isEnabled())
+            throw new IllegalStateException("Cannot change threading mode while the main loop is running!");
+        this.threaded = threaded;
+    }
+
+    /**
+     * Sets whether draws are alpha blended with <code>GL_SRC_ALPHA, GL_ONE_MINUS_SRC_ALPHA</code>. Cached layers are
+     * then rendered with premultiplied alpha and composited accordingly. Disabled by default, in which case draws
+     * overwrite what is behind them. Safe to call from any thread; takes effect before the next frame is drawn.
+     * @param blending Whether to blend draws.
+     */
+    public void setBlending(boolean blending) {
+        runOnRenderThread(() -> {
+            GLState.setBlend(blending);
+            if (blending)
+                GLState.blendFunc(GL11.GL_SRC_ALPHA, GL11.GL_ONE_MINUS_SRC_ALPHA);
+        });
+    }
+
+    /**
+     * Runs a task on the thread that owns the GL context. The task is run immediately if called from that thread;
+     * otherwise, it is run before the next frame is drawn.
+     * @param task The task to run.
+     */
+    public void runOnRenderThread(Runnable task) {
+        if (Thread.currentThread() == glThread)
+            task.run();
+        else
+            renderTasks.add(task);
+    }
+
+    /**
+     * Runs the tasks queued through {@link #runOnRenderThread(Runnable)}. Must be called on the GL thread.
+     */
+    private void runRenderTasks() {
+        Runnable task;
+        while ((task = renderTasks.poll()) != null)
+            task.run();
+    }
+
     /**
      * Shuts down the game engine.
      * @param exitCode The exit code to exit with.
@@ -243,8 +435,19 @@ public class SHLGL {
      */
     public void runMainLoop(int tickRate) {
         margins = new MarginHandler();
-        renderBuffer = new RenderBuffer(trans, colourTrans, margins);
         timer.setTickRate(tickRate);
+        if (threaded) {
+            startRenderThread();
+            timer.begin();
+            tickCount = 0;
+            runThreadedLoop();
+            timer.stop();
+            terminate();
+            return;
+        }
+        SpriteInstanceBatch instances = createInstanceBatch();
+        QuadBatch quads = new QuadBatch(RenderBuffer.DEFAULT_BATCH_SIZE, vertexStream);
+        renderBuffer = new RenderBuffer(trans, colourTrans, margins, quads, instances);
         timer.begin();
         tickCount = 0;
         while (running) {
@@ -266,6 +469,123 @@ public class SHLGL {
         terminate();
     }
 
+    /**
+     * Creates the instanced sprite batch. Must be called on the thread owning the GL context.
+     * @return The batch.
+     */
+    private SpriteInstanceBatch createInstanceBatch() {
+        return new SpriteInstanceBatch(RenderBuffer.DEFAULT_BATCH_SIZE, instancedProg, arrayProg, shaderProg, vao, vbo);
+    }
+
+    /**
+     * Hands the GL context over to a new render thread and waits for it to set up its frame packets.
+     */
+    private void startRenderThread() {
+        GLCapabilities caps = GL.getCapabilities();
+        GLFW.glfwMakeContextCurrent(NULL);
+        CountDownLatch ready = new CountDownLatch(1);
+        renderThread = new Thread(() -> runRenderLoop(caps, ready), "SHLGL Render Thread");
+        glThread = renderThread;
+        renderThread.start();
+        try {
+            ready.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while starting render thread!", e);
+        }
+        if (frames == null)
+            throw new IllegalStateException("Failed to start render thread!");
+    }
+
+    /**
+     * Runs ticks and records frames on the logic thread until the game stops, then waits for the render thread.
+     */
+    private void runThreadedLoop() {
+        while (running) {
+            try {
+                int elapsedTicks = timer.getElapsedTicks();
+                for (int i = 0; i < elapsedTicks; i++) {
+                    eventBus.post(new GameTickEvent(tickCount));
+                    tickCount++;
+                }
+                if (frames.isPending()) {
+                    LockSupport.parkNanos(FRAME_WAIT_NANOS);
+                } else {
+                    FramePacket packet = frames.getBack();
+                    packet.begin(gameWindow.getWidth(), gameWindow.getHeight(), width, height);
+                    eventBus.post(new RenderEvent(packet.getBuffer()));
+                    frames.publish();
+                }
+                GLFW.glfwPollEvents();
+                AudioManager.tick();
+            } catch (Exception e) {
+                System.err.println("Exception thrown in main loop!");
+                e.printStackTrace();
+                running = false;
+            }
+        }
+        try {
+            renderThread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Draws frame packets on the render thread until the game stops.
+     * @param caps The GL capabilities of the context.
+     * @param ready The latch to release once the frame packets are set up.
+     */
+    private void runRenderLoop(GLCapabilities caps, CountDownLatch ready) {
+        try {
+            GLFW.glfwMakeContextCurrent(windowHandle);
+            GL.setCapabilities(caps);
+            SpriteInstanceBatch instances = createInstanceBatch();
+            QuadBatch quads = new QuadBatch(RenderBuffer.DEFAULT_BATCH_SIZE, vertexStream);
+            frames = new TripleBuffer<>(() -> new FramePacket(
+                    new RenderBuffer(trans, colourTrans, margins, quads, instances)));
+        } catch (Exception e) {
+            System.err.println("Exception thrown while starting render thread!");
+            e.printStackTrace();
+            running = false;
+        } finally {
+            ready.countDown();
+        }
+        while (running) {
+            try {
+                runRenderTasks();
+                if (frames.acquire()) {
+                    FramePacket packet = frames.getFront();
+                    margins.update(packet.getWindowWidth(), packet.getWindowHeight(),
+                            packet.getResWidth(), packet.getResHeight());
+                    uploadFrameConstants();
+                    TextureManager.tick();
+                    RetainedMesh.releaseDisposed();
+                    GL11.glClear(GL11.GL_COLOR_BUFFER_BIT | GL11.GL_DEPTH_BUFFER_BIT);
+                    BitmapFont.uploadGlyphs();
+                    packet.getBuffer().flush();
+                    GLFW.glfwSwapBuffers(windowHandle);
+                    GLState.endFrame();
+                } else {
+                    LockSupport.parkNanos(FRAME_WAIT_NANOS);
+                }
+            } catch (Exception e) {
+                System.err.println("Exception thrown in render loop!");
+                e.printStackTrace();
+                running = false;
+            }
+        }
+        GLFW.glfwMakeContextCurrent(NULL);
+    }
+
+    /**
+     * Uploads the per-frame constants, if they changed since the last frame.
+     */
+    private void uploadFrameConstants() {
+        frameConstants.set(0, margins.getProjection());
+        frameConstants.upload();
+    }
+
     /**
      * Buffers one frame to be rendered.
      */
@@ -273,10 +593,16 @@ public class SHLGL {
         try (Pooled<Vector2I> size = gameWindow.getSize()) {
             margins.update(size.get(), width, height);
         }
+        uploadFrameConstants();
+        runRenderTasks();
+        TextureManager.tick();
+        RetainedMesh.releaseDisposed();
         GL11.glClear(GL11.GL_COLOR_BUFFER_BIT | GL11.GL_DEPTH_BUFFER_BIT);
         eventBus.post(new RenderEvent(renderBuffer));
+        BitmapFont.uploadGlyphs();
         renderBuffer.flush();
         GLFW.glfwSwapBuffers(windowHandle);
+        GLState.endFrame();
         AudioManager.tick();
     }
 
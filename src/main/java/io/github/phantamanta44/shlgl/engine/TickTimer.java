@@ -64,4 +64,12 @@ public class TickTimer {
         enabled = false;
     }
 
+    /**
+     * Checks whether the timer is running.
+     * @return Whether the timer is enabled.
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
 }
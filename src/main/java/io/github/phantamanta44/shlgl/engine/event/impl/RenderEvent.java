@@ -3,8 +3,12 @@ package io.github.phantamanta44.shlgl.engine.event.impl;
 import io.github.phantamanta44.shlgl.engine.event.Event;
 import io.github.phantamanta44.shlgl.graphics.render.RenderBuffer;
 
+import java.util.concurrent.ForkJoinPool;
+
 /**
- * Posted every render tick. Game renders should be handled in listeners.
+ * Posted every render tick. Game renders should be handled in listeners. Listeners may record in parallel by
+ * {@link RenderBuffer#fork() forking} the buffer, filling the children on the event's pool and joining them back
+ * before returning.
  * @author Evan Geng
  */
 public class RenderEvent extends Event {
@@ -14,12 +18,27 @@ public class RenderEvent extends Event {
      */
     private final RenderBuffer buffer;
 
+    /**
+     * The pool available for parallel recording.
+     */
+    private final ForkJoinPool pool;
+
     /**
      * Creates a render event with the given graphics buffer.
      * @param buffer The graphics buffer.
      */
     public RenderEvent(RenderBuffer buffer) {
+        this(buffer, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Creates a render event with the given graphics buffer and recording pool.
+     * @param buffer The graphics buffer.
+     * @param pool The pool available for parallel recording.
+     */
+    public RenderEvent(RenderBuffer buffer, ForkJoinPool pool) {
         this.buffer = buffer;
+        this.pool = pool;
     }
 
     /**
@@ -30,4 +49,12 @@ public class RenderEvent extends Event {
         return buffer;
     }
 
+    /**
+     * Retrieves the pool available for parallel recording.
+     * @return The fork-join pool.
+     */
+    public ForkJoinPool getPool() {
+        return pool;
+    }
+
 }
@@ -1,6 +1,7 @@
 package io.github.phantamanta44.shlgl.engine.graph;
 
 import io.github.phantamanta44.shlgl.graphics.render.RenderBuffer;
+import io.github.phantamanta44.shlgl.graphics.render.RetainedMesh;
 
 import java.util.ArrayList;
 import java.util.List;
@@ -35,6 +36,46 @@ public abstract class GraphNode {
      * The node's alive state.
      */
     private boolean alive = true;
+
+    /**
+     * Whether this node has bounds and can be culled.
+     */
+    private boolean bounded;
+
+    /**
+     * The left edge of this node's bounds, relative to its position.
+     */
+    private float minX;
+
+    /**
+     * The bottom edge of this node's bounds, relative to its position.
+     */
+    private float minY;
+
+    /**
+     * The right edge of this node's bounds, relative to its position.
+     */
+    private float maxX;
+
+    /**
+     * The top edge of this node's bounds, relative to its position.
+     */
+    private float maxY;
+
+    /**
+     * Whether this node's subtree is baked into a retained mesh instead of being recorded every frame.
+     */
+    private boolean baked;
+
+    /**
+     * Whether the subtree changed since it was last baked.
+     */
+    boolean bakeDirty;
+
+    /**
+     * The subtree's retained mesh, or <code>null</code> if not yet baked.
+     */
+    RetainedMesh mesh;
     
     /**
      * Creates a graph node at the given coordinates.
@@ -55,6 +96,8 @@ public abstract class GraphNode {
     public void setPosition(float x, float y) {
         this.x = x;
         this.y = y;
+        if (parent != null)
+            parent.markDirty();
     }
 
     /**
@@ -73,6 +116,53 @@ public abstract class GraphNode {
         return y;
     }
 
+    /**
+     * Sets this node's bounds, letting the scene graph skip rendering it while it is out of view. The bounds must
+     * enclose everything drawn by this node and its children.
+     * @param minX The left edge, relative to this node's position.
+     * @param minY The bottom edge, relative to this node's position.
+     * @param maxX The right edge, relative to this node's position.
+     * @param maxY The top edge, relative to this node's position.
+     */
+    public void setBounds(float minX, float minY, float maxX, float maxY) {
+        if (maxX < minX || maxY < minY)
+            throw new IllegalArgumentException("Bounds cannot have negative size!");
+        this.minX = minX;
+        this.minY = minY;
+        this.maxX = maxX;
+        this.maxY = maxY;
+        this.bounded = true;
+    }
+
+    /**
+     * Removes this node's bounds, so it is always rendered. Nodes have no bounds by default.
+     */
+    public void clearBounds() {
+        bounded = false;
+    }
+
+    /**
+     * Checks whether this node has bounds.
+     * @return Whether this node can be culled.
+     */
+    public boolean hasBounds() {
+        return bounded;
+    }
+
+    /**
+     * Checks whether this node's bounds overlap a rectangle. Nodes without bounds always overlap.
+     * @param worldX This node's x-coordinate in world space.
+     * @param worldY This node's y-coordinate in world space.
+     * @param x1 The rectangle's left edge.
+     * @param y1 The rectangle's bottom edge.
+     * @param x2 The rectangle's right edge.
+     * @param y2 The rectangle's top edge.
+     * @return Whether this node may be visible within the rectangle.
+     */
+    boolean overlaps(float worldX, float worldY, float x1, float y1, float x2, float y2) {
+        return !bounded || (worldX + maxX >= x1 && worldX + minX <= x2 && worldY + maxY >= y1 && worldY + minY <= y2);
+    }
+
     /**
      * Gets the parent node.
      * @return The parent.
@@ -95,6 +185,53 @@ public abstract class GraphNode {
      */
     public void addChild(GraphNode child) {
         children.add(child);
+        markDirty();
+    }
+
+    /**
+     * Sets whether this node's subtree is static. A static subtree is recorded once into a retained mesh that is
+     * redrawn every frame with a draw call per texture, and is only recorded again once {@link #markDirty()} is
+     * called. Moving the static node itself doesn't require rebaking. Static subtrees may not draw array texture
+     * frames or retained meshes, and their sprites are drawn as ordinary quads. Tile maps and cached layers are
+     * kept as they are between the baked quads, but the tile map chunks in view and the contents of cached layers are
+     * fixed when baking; call {@link #markDirty()} after scrolling such a tile map or invalidating such a layer.
+     * @param baked Whether the subtree is static.
+     */
+    public void setStatic(boolean baked) {
+        this.baked = baked;
+        this.bakeDirty = true;
+        if (!baked)
+            disposeMesh();
+    }
+
+    /**
+     * Checks whether this node's subtree is static.
+     * @return Whether the subtree is baked into a retained mesh.
+     */
+    public boolean isStatic() {
+        return baked;
+    }
+
+    /**
+     * Marks this node as changed, so every static subtree containing it is baked again before it is next drawn. Needed
+     * whenever a node in a static subtree changes what it draws; adding children and moving nodes mark them
+     * automatically.
+     */
+    public void markDirty() {
+        for (GraphNode node = this; node != null; node = node.parent) {
+            if (node.baked)
+                node.bakeDirty = true;
+        }
+    }
+
+    /**
+     * Disposes this node's retained mesh, if it has one.
+     */
+    void disposeMesh() {
+        if (mesh != null) {
+            mesh.dispose();
+            mesh = null;
+        }
     }
 
     /**
@@ -1,13 +1,53 @@
 package io.github.phantamanta44.shlgl.engine.graph;
 
+import io.github.phantamanta44.shlgl.SHLGL;
 import io.github.phantamanta44.shlgl.graphics.render.RenderBuffer;
 
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
 /**
- * A hierarchical representation of the elements in a scene.
+ * A hierarchical representation of the elements in a scene. Subtrees whose nodes have bounds lying entirely outside
+ * the view are skipped when rendering.
  * @author Evan Geng
  */
 public class SceneGraph extends GraphNode {
 
+    /**
+     * Whether the view was set explicitly rather than following the game resolution.
+     */
+    private boolean customView;
+
+    /**
+     * The explicitly set view rectangle: x, y, width, height.
+     */
+    private final float[] view = new float[4];
+
+    /**
+     * The left edge of the view used by the render in progress.
+     */
+    private float viewX1;
+
+    /**
+     * The bottom edge of the view used by the render in progress.
+     */
+    private float viewY1;
+
+    /**
+     * The right edge of the view used by the render in progress.
+     */
+    private float viewX2;
+
+    /**
+     * The top edge of the view used by the render in progress.
+     */
+    private float viewY2;
+
+    /**
+     * The number of nodes culled by the last render.
+     */
+    private volatile int culled;
+
     /**
      * Creates the root graph node with the given coordinates.
      * @param rootX The root x coordinate.
@@ -17,6 +57,57 @@ public class SceneGraph extends GraphNode {
         super(null, rootX, rootY);
     }
 
+    /**
+     * Sets the view rectangle that nodes are culled against, in the coordinates the graph is rendered in. Useful when
+     * the graph is rendered under a camera transformation. By default, the view is the game resolution.
+     * @param x The view's left edge.
+     * @param y The view's bottom edge.
+     * @param width The view's width.
+     * @param height The view's height.
+     */
+    public void setView(float x, float y, float width, float height) {
+        view[0] = x;
+        view[1] = y;
+        view[2] = width;
+        view[3] = height;
+        customView = true;
+    }
+
+    /**
+     * Makes the view follow the game resolution again.
+     */
+    public void resetView() {
+        customView = false;
+    }
+
+    /**
+     * Retrieves the number of nodes skipped by the last render because they were out of view. Descendants of a
+     * skipped node aren't counted.
+     * @return The culled node count.
+     */
+    public int getCulledNodes() {
+        return culled;
+    }
+
+    /**
+     * Resolves the view rectangle for a render. Without an explicit view or an initialized SHLGL, nothing is culled.
+     */
+    private void updateView() {
+        if (customView) {
+            viewX1 = view[0];
+            viewY1 = view[1];
+            viewX2 = view[0] + view[2];
+            viewY2 = view[1] + view[3];
+        } else if (SHLGL.isInitialized()) {
+            viewX1 = viewY1 = 0F;
+            viewX2 = SHLGL.getInstance().getResolutionWidth();
+            viewY2 = SHLGL.getInstance().getResolutionHeight();
+        } else {
+            viewX1 = viewY1 = Float.NEGATIVE_INFINITY;
+            viewX2 = viewY2 = Float.POSITIVE_INFINITY;
+        }
+    }
+
     /**
      * Ticks all the nodes in this scene graph.
      */
@@ -43,7 +134,9 @@ public class SceneGraph extends GraphNode {
      */
     private static void kill(GraphNode node) {
         node.kill();
+        node.disposeMesh();
         node.parent.children.remove(node);
+        node.parent.markDirty();
         node.children.forEach(SceneGraph::kill);
     }
 
@@ -53,20 +146,147 @@ public class SceneGraph extends GraphNode {
      */
     @Override
     public void render(RenderBuffer buf) {
-        children.forEach(child -> render(buf, child));
+        updateView();
+        int count = 0;
+        for (GraphNode child : children)
+            count += render(buf, child, 0F, 0F);
+        culled = count;
+    }
+
+    /**
+     * Renders all the nodes in this scene graph, recording each top-level subtree into its own forked buffer on a
+     * fork-join pool. The forked buffers are joined back in child order, so the result matches
+     * {@link #render(RenderBuffer)}. Node render methods must be safe to call concurrently with each other.
+     * @param buf The render buffer to render with.
+     * @param pool The pool to record subtrees on.
+     */
+    public void render(RenderBuffer buf, ForkJoinPool pool) {
+        int count = children.size();
+        if (count < 2) {
+            render(buf);
+            return;
+        }
+        updateView();
+        RenderBuffer[] forks = new RenderBuffer[count];
+        for (int i = 0; i < count; i++)
+            forks[i] = buf.fork();
+        culled = pool.invoke(new RenderTask(children.toArray(new GraphNode[count]), forks, 0, count));
+        for (RenderBuffer fork : forks)
+            buf.join(fork);
+    }
+
+    /**
+     * Recursively renders a node and all its children, skipping subtrees that are out of view.
+     * @param buf The render buffer to render with.
+     * @param node The node to render.
+     * @param parentX The parent's x-coordinate in world space.
+     * @param parentY The parent's y-coordinate in world space.
+     * @return The number of nodes culled.
+     */
+    private int render(RenderBuffer buf, GraphNode node, float parentX, float parentY) {
+        float worldX = parentX + node.x, worldY = parentY + node.y;
+        if (!node.overlaps(worldX, worldY, viewX1, viewY1, viewX2, viewY2))
+            return 1;
+        buf.pushMatrix();
+        buf.translate(node.x, node.y);
+        int count = 0;
+        if (node.isStatic()) {
+            if (node.mesh == null || node.bakeDirty) {
+                RenderBuffer capture = buf.fork();
+                node.render(capture);
+                node.children.forEach(child -> renderAll(capture, child));
+                node.disposeMesh();
+                node.mesh = buf.bake(capture);
+                node.bakeDirty = false;
+            }
+            buf.drawMesh(node.mesh);
+        } else {
+            node.render(buf);
+            for (GraphNode child : node.children)
+                count += render(buf, child, worldX, worldY);
+        }
+        buf.popMatrix();
+        return count;
     }
 
     /**
-     * Recursively renders a node and all its children.
+     * Recursively renders a node and all its children without culling, for baking into a retained mesh.
      * @param buf The render buffer to render with.
-     * @param node
+     * @param node The node to render.
      */
-    private static void render(RenderBuffer buf, GraphNode node) {
+    private static void renderAll(RenderBuffer buf, GraphNode node) {
         buf.pushMatrix();
         buf.translate(node.x, node.y);
         node.render(buf);
-        node.children.forEach(child -> render(buf, child));
+        node.children.forEach(child -> renderAll(buf, child));
         buf.popMatrix();
     }
 
+    /**
+     * Renders a range of top-level subtrees into their forked buffers, splitting the range in half until it is small.
+     * Results in the number of nodes culled.
+     */
+    private class RenderTask extends RecursiveTask<Integer> {
+
+        /**
+         * Tasks are never serialized, but the superclass is serializable.
+         */
+        private static final long serialVersionUID = 1L;
+
+        /**
+         * The number of subtrees below which a task renders its range directly.
+         */
+        private static final int THRESHOLD = 2;
+
+        /**
+         * The top-level nodes.
+         */
+        private final GraphNode[] nodes;
+
+        /**
+         * The buffer each top-level node is rendered into.
+         */
+        private final RenderBuffer[] bufs;
+
+        /**
+         * The start of the range, inclusive.
+         */
+        private final int from;
+
+        /**
+         * The end of the range, exclusive.
+         */
+        private final int to;
+
+        /**
+         * Creates a task rendering a range of subtrees.
+         * @param nodes The top-level nodes.
+         * @param bufs The buffer each top-level node is rendered into.
+         * @param from The start of the range, inclusive.
+         * @param to The end of the range, exclusive.
+         */
+        RenderTask(GraphNode[] nodes, RenderBuffer[] bufs, int from, int to) {
+            this.nodes = nodes;
+            this.bufs = bufs;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected Integer compute() {
+            if (to - from <= THRESHOLD) {
+                int count = 0;
+                for (int i = from; i < to; i++)
+                    count += render(bufs[i], nodes[i], 0F, 0F);
+                return count;
+            }
+            int mid = (from + to) >>> 1;
+            RenderTask left = new RenderTask(nodes, bufs, from, mid);
+            left.fork();
+            int count = new RenderTask(nodes, bufs, mid, to).compute();
+            return count + left.join();
+        }
+
+    }
+
 }
@@ -0,0 +1,208 @@
+package io.github.phantamanta44.shlgl.engine.particle;
+
+import java.util.Random;
+
+/**
+ * Spawns particles into a particle system at a steady rate, with directions, speeds, sizes and lifetimes drawn from
+ * configurable ranges.
+ * @author Evan Geng
+ */
+public class ParticleEmitter {
+
+    /**
+     * The random number generator particle properties are drawn from.
+     */
+    private final Random rand;
+
+    /**
+     * The emitter's x-coordinate, relative to its particle system.
+     */
+    private float x;
+
+    /**
+     * The emitter's y-coordinate, relative to its particle system.
+     */
+    private float y;
+
+    /**
+     * The number of particles spawned per tick.
+     */
+    private float rate;
+
+    /**
+     * The fraction of a particle carried over to the next tick.
+     */
+    private float accumulated;
+
+    /**
+     * The centre of the spawning direction, in degrees.
+     */
+    private float direction;
+
+    /**
+     * The angle the spawning direction may deviate by either way, in degrees.
+     */
+    private float spread;
+
+    /**
+     * The minimum speed, per tick.
+     */
+    private float minSpeed;
+
+    /**
+     * The maximum speed, per tick.
+     */
+    private float maxSpeed;
+
+    /**
+     * The minimum particle size.
+     */
+    private float minSize;
+
+    /**
+     * The maximum particle size.
+     */
+    private float maxSize;
+
+    /**
+     * The maximum angular velocity either way, in degrees per tick.
+     */
+    private float maxSpin;
+
+    /**
+     * The minimum lifetime, in ticks.
+     */
+    private int minLifetime;
+
+    /**
+     * The maximum lifetime, in ticks.
+     */
+    private int maxLifetime;
+
+    /**
+     * The particles' colour, packed as 0xRRGGBBAA.
+     */
+    private int colour;
+
+    /**
+     * Creates an emitter spawning white particles in every direction.
+     * @param x The emitter's x-coordinate, relative to its particle system.
+     * @param y The emitter's y-coordinate, relative to its particle system.
+     * @param rate The number of particles spawned per tick.
+     */
+    public ParticleEmitter(float x, float y, float rate) {
+        this.rand = new Random();
+        this.x = x;
+        this.y = y;
+        this.rate = rate;
+        this.spread = 180F;
+        this.minSpeed = this.maxSpeed = 1F;
+        this.minSize = this.maxSize = 4F;
+        this.minLifetime = this.maxLifetime = 60;
+        this.colour = 0xFFFFFFFF;
+    }
+
+    /**
+     * Spawns this tick's particles. Called by the particle system it was added to.
+     * @param system The particle system.
+     */
+    void tick(ParticleSystem system) {
+        accumulated += rate;
+        int spawn = (int)accumulated;
+        accumulated -= spawn;
+        burst(system, spawn);
+    }
+
+    /**
+     * Spawns a number of particles at once, stopping early if the system fills up.
+     * @param system The particle system.
+     * @param count The number of particles.
+     */
+    public void burst(ParticleSystem system, int count) {
+        for (int i = 0; i < count; i++) {
+            double angle = Math.toRadians(direction + (rand.nextFloat() * 2F - 1F) * spread);
+            float speed = minSpeed + rand.nextFloat() * (maxSpeed - minSpeed);
+            if (!system.emit(x, y, (float)Math.cos(angle) * speed, (float)Math.sin(angle) * speed,
+                    minSize + rand.nextFloat() * (maxSize - minSize), (rand.nextFloat() * 2F - 1F) * maxSpin,
+                    minLifetime + rand.nextInt(maxLifetime - minLifetime + 1), colour))
+                return;
+        }
+    }
+
+    /**
+     * Sets the emitter's position.
+     * @param x The x-coordinate, relative to the particle system.
+     * @param y The y-coordinate, relative to the particle system.
+     */
+    public void setPosition(float x, float y) {
+        this.x = x;
+        this.y = y;
+    }
+
+    /**
+     * Sets the number of particles spawned per tick. Fractional rates spawn a particle every few ticks.
+     * @param rate The spawn rate.
+     */
+    public void setRate(float rate) {
+        this.rate = rate;
+    }
+
+    /**
+     * Sets the range of directions particles are spawned moving in.
+     * @param direction The centre of the range, in degrees.
+     * @param spread The angle the direction may deviate by either way, in degrees.
+     */
+    public void setDirection(float direction, float spread) {
+        this.direction = direction;
+        this.spread = spread;
+    }
+
+    /**
+     * Sets the range of speeds particles are spawned with.
+     * @param min The minimum speed, per tick.
+     * @param max The maximum speed, per tick.
+     */
+    public void setSpeed(float min, float max) {
+        this.minSpeed = min;
+        this.maxSpeed = max;
+    }
+
+    /**
+     * Sets the range of particle sizes.
+     * @param min The minimum size.
+     * @param max The maximum size.
+     */
+    public void setSize(float min, float max) {
+        this.minSize = min;
+        this.maxSize = max;
+    }
+
+    /**
+     * Sets the maximum angular velocity particles are spawned with.
+     * @param maxSpin The maximum angular velocity either way, in degrees per tick.
+     */
+    public void setSpin(float maxSpin) {
+        this.maxSpin = maxSpin;
+    }
+
+    /**
+     * Sets the range of particle lifetimes.
+     * @param min The minimum lifetime, in ticks.
+     * @param max The maximum lifetime, in ticks.
+     */
+    public void setLifetime(int min, int max) {
+        if (min < 1 || max < min)
+            throw new IllegalArgumentException("Invalid lifetime range!");
+        this.minLifetime = min;
+        this.maxLifetime = max;
+    }
+
+    /**
+     * Sets the particles' colour.
+     * @param rgba The colour, packed as 0xRRGGBBAA.
+     */
+    public void setColour(int rgba) {
+        this.colour = rgba;
+    }
+
+}
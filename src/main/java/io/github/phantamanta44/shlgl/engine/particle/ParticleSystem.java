@@ -0,0 +1,375 @@
+package io.github.phantamanta44.shlgl.engine.particle;
+
+import io.github.phantamanta44.shlgl.engine.graph.GraphNode;
+import io.github.phantamanta44.shlgl.graphics.render.RenderBuffer;
+import io.github.phantamanta44.shlgl.graphics.texture.AtlasRegion;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * A scene graph node holding a large number of particles. Particle state is kept in parallel primitive arrays rather
+ * than as objects, the whole system is stepped in bulk each tick, and particles are drawn as instanced sprites. Live
+ * particles are kept packed at the front of the arrays, so a dead particle's slot is filled by the last live one.
+ * Particle coordinates are relative to the node.
+ * @author Evan Geng
+ */
+public class ParticleSystem extends GraphNode {
+
+    /**
+     * The number of particles below which a stepping task steps its range directly.
+     */
+    private static final int STEP_THRESHOLD = 8192;
+
+    /**
+     * The maximum number of live particles.
+     */
+    private final int capacity;
+
+    /**
+     * The particles' x-coordinates, at their centres.
+     */
+    private final float[] posX;
+
+    /**
+     * The particles' y-coordinates, at their centres.
+     */
+    private final float[] posY;
+
+    /**
+     * The particles' x velocities, per tick.
+     */
+    private final float[] velX;
+
+    /**
+     * The particles' y velocities, per tick.
+     */
+    private final float[] velY;
+
+    /**
+     * The particles' widths and heights.
+     */
+    private final float[] size;
+
+    /**
+     * The particles' rotations, in degrees.
+     */
+    private final float[] rotation;
+
+    /**
+     * The particles' angular velocities, in degrees per tick.
+     */
+    private final float[] spin;
+
+    /**
+     * The particles' ages, in ticks.
+     */
+    private final int[] age;
+
+    /**
+     * The particles' lifetimes, in ticks.
+     */
+    private final int[] lifetime;
+
+    /**
+     * The particles' colours, packed as 0xRRGGBBAA.
+     */
+    private final int[] colour;
+
+    /**
+     * The number of live particles.
+     */
+    private int count;
+
+    /**
+     * The emitters spawning particles into this system.
+     */
+    private final List<ParticleEmitter> emitters;
+
+    /**
+     * The acceleration applied along the x-axis each tick.
+     */
+    private float gravityX;
+
+    /**
+     * The acceleration applied along the y-axis each tick.
+     */
+    private float gravityY;
+
+    /**
+     * The factor velocities are multiplied by each tick.
+     */
+    private float drag;
+
+    /**
+     * Whether particles fade out over their lifetime.
+     */
+    private boolean fade;
+
+    /**
+     * The atlas region particles are drawn with, or <code>null</code> to draw the whole bound texture.
+     */
+    private AtlasRegion region;
+
+    /**
+     * The pool particles are stepped on, or <code>null</code> to step them on the ticking thread.
+     */
+    private ForkJoinPool pool;
+
+    /**
+     * Creates an empty particle system.
+     * @param parent The parent node.
+     * @param x The x coordinate.
+     * @param y The y coordinate.
+     * @param capacity The maximum number of live particles.
+     */
+    public ParticleSystem(GraphNode parent, float x, float y, int capacity) {
+        super(parent, x, y);
+        if (capacity < 1)
+            throw new IllegalArgumentException("Particle capacity must be positive!");
+        this.capacity = capacity;
+        this.posX = new float[capacity];
+        this.posY = new float[capacity];
+        this.velX = new float[capacity];
+        this.velY = new float[capacity];
+        this.size = new float[capacity];
+        this.rotation = new float[capacity];
+        this.spin = new float[capacity];
+        this.age = new int[capacity];
+        this.lifetime = new int[capacity];
+        this.colour = new int[capacity];
+        this.emitters = new ArrayList<>();
+        this.drag = 1F;
+        this.fade = true;
+    }
+
+    /**
+     * Spawns a particle.
+     * @param x The particle's x-coordinate.
+     * @param y The particle's y-coordinate.
+     * @param vx The particle's x velocity, per tick.
+     * @param vy The particle's y velocity, per tick.
+     * @param particleSize The particle's width and height.
+     * @param particleSpin The particle's angular velocity, in degrees per tick.
+     * @param particleLifetime The particle's lifetime, in ticks.
+     * @param rgba The particle's colour, packed as 0xRRGGBBAA.
+     * @return Whether the particle was spawned, which fails if the system is full.
+     */
+    public boolean emit(float x, float y, float vx, float vy, float particleSize, float particleSpin,
+                        int particleLifetime, int rgba) {
+        if (count == capacity)
+            return false;
+        int i = count++;
+        posX[i] = x;
+        posY[i] = y;
+        velX[i] = vx;
+        velY[i] = vy;
+        size[i] = particleSize;
+        rotation[i] = 0F;
+        spin[i] = particleSpin;
+        age[i] = 0;
+        lifetime[i] = particleLifetime;
+        colour[i] = rgba;
+        return true;
+    }
+
+    /**
+     * Adds an emitter that spawns particles into this system every tick.
+     * @param emitter The emitter.
+     */
+    public void addEmitter(ParticleEmitter emitter) {
+        emitters.add(emitter);
+    }
+
+    /**
+     * Removes an emitter. Particles it already spawned live out their lifetimes.
+     * @param emitter The emitter.
+     */
+    public void removeEmitter(ParticleEmitter emitter) {
+        emitters.remove(emitter);
+    }
+
+    /**
+     * Removes every live particle.
+     */
+    public void clear() {
+        count = 0;
+    }
+
+    @Override
+    public void tick() {
+        for (ParticleEmitter emitter : emitters)
+            emitter.tick(this);
+        if (pool != null && count > STEP_THRESHOLD)
+            pool.invoke(new StepTask(0, count));
+        else
+            step(0, count);
+        int i = 0;
+        while (i < count) {
+            if (age[i] >= lifetime[i])
+                moveLast(i);
+            else
+                i++;
+        }
+    }
+
+    /**
+     * Moves particles, applies gravity and drag, and ages them.
+     * @param from The first particle, inclusive.
+     * @param to The last particle, exclusive.
+     */
+    private void step(int from, int to) {
+        float gx = gravityX, gy = gravityY, d = drag;
+        for (int i = from; i < to; i++) {
+            float vx = (velX[i] + gx) * d, vy = (velY[i] + gy) * d;
+            velX[i] = vx;
+            velY[i] = vy;
+            posX[i] += vx;
+            posY[i] += vy;
+            rotation[i] += spin[i];
+            age[i]++;
+        }
+    }
+
+    /**
+     * Overwrites a dead particle with the last live particle.
+     * @param i The dead particle.
+     */
+    private void moveLast(int i) {
+        int last = --count;
+        posX[i] = posX[last];
+        posY[i] = posY[last];
+        velX[i] = velX[last];
+        velY[i] = velY[last];
+        size[i] = size[last];
+        rotation[i] = rotation[last];
+        spin[i] = spin[last];
+        age[i] = age[last];
+        lifetime[i] = lifetime[last];
+        colour[i] = colour[last];
+    }
+
+    @Override
+    public void render(RenderBuffer buf) {
+        float u1 = 0F, v1 = 0F, u2 = 1F, v2 = 1F;
+        if (region != null) {
+            buf.bind(region.page);
+            u1 = region.u1;
+            v1 = region.v1;
+            u2 = region.u2;
+            v2 = region.v2;
+        }
+        for (int i = 0; i < count; i++) {
+            float s = size[i], half = s / 2F;
+            int rgba = colour[i];
+            if (fade) {
+                int alpha = (int)((rgba & 0xFF) * (1F - (float)age[i] / lifetime[i]));
+                rgba = (rgba & 0xFFFFFF00) | alpha;
+            }
+            buf.drawSprite(posX[i] - half, posY[i] - half, s, s, u1, v1, u2, v2, rotation[i], rgba);
+        }
+    }
+
+    /**
+     * Sets the acceleration applied to every particle each tick.
+     * @param x The acceleration along the x-axis.
+     * @param y The acceleration along the y-axis.
+     */
+    public void setGravity(float x, float y) {
+        this.gravityX = x;
+        this.gravityY = y;
+    }
+
+    /**
+     * Sets the factor velocities are multiplied by each tick. Defaults to 1, which leaves velocities unchanged.
+     * @param drag The drag factor.
+     */
+    public void setDrag(float drag) {
+        this.drag = drag;
+    }
+
+    /**
+     * Sets whether particles fade out over their lifetime. Enabled by default.
+     * @param fade Whether to fade particles.
+     */
+    public void setFade(boolean fade) {
+        this.fade = fade;
+    }
+
+    /**
+     * Sets the atlas region particles are drawn with.
+     * @param region The region, or <code>null</code> to draw the whole bound texture.
+     */
+    public void setRegion(AtlasRegion region) {
+        this.region = region;
+    }
+
+    /**
+     * Sets the pool particles are stepped on. Large systems are split into ranges stepped in parallel.
+     * @param pool The pool, or <code>null</code> to step particles on the ticking thread.
+     */
+    public void setPool(ForkJoinPool pool) {
+        this.pool = pool;
+    }
+
+    /**
+     * Retrieves the number of live particles.
+     * @return The particle count.
+     */
+    public int getCount() {
+        return count;
+    }
+
+    /**
+     * Retrieves the maximum number of live particles.
+     * @return The capacity.
+     */
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * Steps a range of particles, splitting the range in half until it is small.
+     */
+    private class StepTask extends RecursiveAction {
+
+        /**
+         * Tasks are never serialized, but the superclass is serializable.
+         */
+        private static final long serialVersionUID = 1L;
+
+        /**
+         * The start of the range, inclusive.
+         */
+        private final int from;
+
+        /**
+         * The end of the range, exclusive.
+         */
+        private final int to;
+
+        /**
+         * Creates a task stepping a range of particles.
+         * @param from The start of the range, inclusive.
+         * @param to The end of the range, exclusive.
+         */
+        StepTask(int from, int to) {
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= STEP_THRESHOLD) {
+                step(from, to);
+                return;
+            }
+            int mid = (from + to) >>> 1;
+            invokeAll(new StepTask(from, mid), new StepTask(mid, to));
+        }
+
+    }
+
+}
@@ -0,0 +1,297 @@
+package io.github.phantamanta44.shlgl.graphics.font;
+
+import io.github.phantamanta44.shlgl.graphics.render.RenderBuffer;
+import io.github.phantamanta44.shlgl.graphics.texture.TextureInfo;
+import io.github.phantamanta44.shlgl.util.io.ResourceUtils;
+
+import java.awt.AlphaComposite;
+import java.awt.Color;
+import java.awt.Font;
+import java.awt.FontFormatException;
+import java.awt.FontMetrics;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * A font whose glyphs are rasterized on demand into shared glyph page textures, so that text is drawn as batched quads
+ * from a few textures. Laid out strings are cached, so text that stays the same between frames is only laid out once.
+ * Text may be laid out and drawn from any thread that records render buffers.
+ * @author Evan Geng
+ */
+public class BitmapFont {
+
+    /**
+     * The width and height of a glyph page.
+     */
+    public static final int PAGE_SIZE = 512;
+
+    /**
+     * The empty border left around each glyph to keep filtering from sampling its neighbours.
+     */
+    private static final int PADDING = 1;
+
+    /**
+     * The default number of laid out strings to cache per font.
+     */
+    public static final int DEFAULT_RUN_CACHE_SIZE = 256;
+
+    /**
+     * The glyph pages of every font, whose changes are uploaded each frame.
+     */
+    private static final List<GlyphPage> allPages = new CopyOnWriteArrayList<>();
+
+    /**
+     * The font glyphs are rasterized from.
+     */
+    private final Font font;
+
+    /**
+     * The font's metrics.
+     */
+    private final FontMetrics metrics;
+
+    /**
+     * The height of a line, in pixels.
+     */
+    private final int lineHeight;
+
+    /**
+     * The space left on either side of a glyph while rasterizing, for glyphs that overhang their advance.
+     */
+    private final int margin;
+
+    /**
+     * Map of code points to rasterized glyphs.
+     */
+    private final Map<Integer, Glyph> glyphs;
+
+    /**
+     * The most recently used laid out strings, in access order.
+     */
+    private final LinkedHashMap<String, TextRun> runs;
+
+    /**
+     * This font's glyph pages, the last of which has room for more glyphs. Guarded by this font's lock.
+     */
+    private final List<GlyphPage> pages;
+
+    /**
+     * The image glyphs are rasterized into. Guarded by this font's lock.
+     */
+    private BufferedImage scratch;
+
+    /**
+     * Creates a font from an AWT font, such as one of the system's fonts.
+     * @param font The font.
+     * @param runCacheSize The number of laid out strings to cache.
+     */
+    public BitmapFont(Font font, int runCacheSize) {
+        this.font = font;
+        Graphics2D g = new BufferedImage(1, 1, BufferedImage.TYPE_INT_ARGB).createGraphics();
+        this.metrics = g.getFontMetrics(font);
+        g.dispose();
+        this.lineHeight = Math.max(1, metrics.getAscent() + metrics.getDescent());
+        this.margin = (lineHeight + 3) / 4;
+        this.glyphs = new ConcurrentHashMap<>();
+        this.runs = new LinkedHashMap<String, TextRun>(16, 0.75F, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, TextRun> eldest) {
+                return size() > runCacheSize;
+            }
+        };
+        this.pages = new ArrayList<>();
+    }
+
+    /**
+     * Creates a font from an AWT font with the default run cache size.
+     * @param font The font.
+     */
+    public BitmapFont(Font font) {
+        this(font, DEFAULT_RUN_CACHE_SIZE);
+    }
+
+    /**
+     * Loads a TrueType font from the classpath.
+     * @param path The path to the font file.
+     * @param size The font's size, in pixels.
+     * @return The font.
+     * @throws IOException If the font could not be read.
+     */
+    public static BitmapFont load(String path, float size) throws IOException {
+        try (InputStream in = ResourceUtils.getStream(path)) {
+            return new BitmapFont(Font.createFont(Font.TRUETYPE_FONT, in).deriveFont(size));
+        } catch (FontFormatException e) {
+            throw new IOException("Invalid font file: " + path, e);
+        }
+    }
+
+    /**
+     * Draws a string, laying it out first unless it was drawn recently. Lines are separated by <code>'\n'</code>. The
+     * text is coloured by the colour modifier.
+     * @param buf The render buffer to draw into.
+     * @param text The string.
+     * @param x The x-coordinate of the text's top left corner.
+     * @param y The y-coordinate of the text's top left corner.
+     */
+    public void drawString(RenderBuffer buf, String text, float x, float y) {
+        layout(text).draw(buf, x, y);
+    }
+
+    /**
+     * Measures the width of a string's widest line.
+     * @param text The string.
+     * @return The width.
+     */
+    public float getStringWidth(String text) {
+        return layout(text).getWidth();
+    }
+
+    /**
+     * Retrieves the height of a line of text.
+     * @return The line height.
+     */
+    public int getLineHeight() {
+        return lineHeight;
+    }
+
+    /**
+     * Retrieves the font glyphs are rasterized from.
+     * @return The AWT font.
+     */
+    public Font getFont() {
+        return font;
+    }
+
+    /**
+     * Lays out a string into glyph quads, rasterizing any glyphs not yet on a page. Recently laid out strings are
+     * returned from the cache.
+     * @param text The string.
+     * @return The laid out run.
+     */
+    public TextRun layout(String text) {
+        synchronized (runs) {
+            TextRun run = runs.get(text);
+            if (run != null)
+                return run;
+        }
+        float[] quads = new float[text.length() * 6];
+        TextureInfo[] runPages = new TextureInfo[text.length()];
+        int count = 0, penX = 0, width = 0, lines = 1;
+        for (int i = 0; i < text.length(); ) {
+            int cp = text.codePointAt(i);
+            i += Character.charCount(cp);
+            if (cp == '\n') {
+                width = Math.max(width, penX);
+                penX = 0;
+                lines++;
+                continue;
+            }
+            Glyph glyph = glyph(cp);
+            if (glyph.page != null) {
+                int base = count * 6;
+                quads[base] = penX + glyph.offsetX;
+                quads[base + 1] = -lines * lineHeight;
+                quads[base + 2] = glyph.w;
+                quads[base + 3] = lineHeight;
+                quads[base + 4] = glyph.x;
+                quads[base + 5] = glyph.y;
+                runPages[count++] = glyph.page;
+            }
+            penX += glyph.advance;
+        }
+        width = Math.max(width, penX);
+        TextRun run = new TextRun(Arrays.copyOf(quads, count * 6), Arrays.copyOf(runPages, count), count,
+                width, lines * lineHeight);
+        synchronized (runs) {
+            runs.put(text, run);
+        }
+        return run;
+    }
+
+    /**
+     * Retrieves a glyph, rasterizing it onto a page if necessary.
+     * @param cp The glyph's code point.
+     * @return The glyph.
+     */
+    private Glyph glyph(int cp) {
+        Glyph glyph = glyphs.get(cp);
+        if (glyph != null)
+            return glyph;
+        synchronized (this) {
+            glyph = glyphs.get(cp);
+            if (glyph == null) {
+                glyph = rasterize(cp);
+                glyphs.put(cp, glyph);
+            }
+            return glyph;
+        }
+    }
+
+    /**
+     * Rasterizes a glyph and packs its visible columns onto a page.
+     * @param cp The glyph's code point.
+     * @return The glyph.
+     */
+    private Glyph rasterize(int cp) {
+        int advance = metrics.charWidth(cp);
+        int cellW = Math.max(1, advance + 2 * margin);
+        if (scratch == null || scratch.getWidth() < cellW)
+            scratch = new BufferedImage(Math.max(cellW, lineHeight * 2), lineHeight, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g = scratch.createGraphics();
+        g.setComposite(AlphaComposite.Clear);
+        g.fillRect(0, 0, scratch.getWidth(), lineHeight);
+        g.setComposite(AlphaComposite.SrcOver);
+        g.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING, RenderingHints.VALUE_TEXT_ANTIALIAS_ON);
+        g.setColor(Color.WHITE);
+        g.setFont(font);
+        g.drawString(new String(Character.toChars(cp)), margin, metrics.getAscent());
+        g.dispose();
+        int[] argb = scratch.getRGB(0, 0, cellW, lineHeight, null, 0, cellW);
+        int left = cellW, right = -1;
+        for (int row = 0; row < lineHeight; row++) {
+            for (int col = 0; col < cellW; col++) {
+                if ((argb[row * cellW + col] >>> 24) != 0) {
+                    left = Math.min(left, col);
+                    right = Math.max(right, col);
+                }
+            }
+        }
+        if (right == -1)
+            return new Glyph(null, 0, 0, 0, 0, advance);
+        int w = right - left + 1;
+        int paddedW = w + 2 * PADDING, paddedH = lineHeight + 2 * PADDING;
+        if (paddedW > PAGE_SIZE || paddedH > PAGE_SIZE)
+            throw new IllegalStateException("Glyph is too large for a glyph page!");
+        int pos = pages.isEmpty() ? -1 : pages.get(pages.size() - 1).pack(paddedW, paddedH);
+        if (pos == -1) {
+            GlyphPage page = new GlyphPage(PAGE_SIZE);
+            pages.add(page);
+            allPages.add(page);
+            pos = page.pack(paddedW, paddedH);
+        }
+        GlyphPage page = pages.get(pages.size() - 1);
+        int x = (pos >>> 16) + PADDING, y = (pos & 0xFFFF) + PADDING;
+        page.put(x, y, w, lineHeight, scratch.getRGB(left, 0, w, lineHeight, null, 0, w));
+        return new Glyph(page.tex, x, y, w, left - margin, advance);
+    }
+
+    /**
+     * Uploads glyphs rasterized since the last upload to their page textures. Called by SHLGL on the GL thread before
+     * drawing each frame.
+     */
+    public static void uploadGlyphs() {
+        for (GlyphPage page : allPages)
+            page.upload();
+    }
+
+}
@@ -0,0 +1,59 @@
+package io.github.phantamanta44.shlgl.graphics.font;
+
+import io.github.phantamanta44.shlgl.graphics.texture.TextureInfo;
+
+/**
+ * POJO describing a rasterized glyph and where it lies on its glyph page.
+ * @author Evan Geng
+ */
+class Glyph {
+
+    /**
+     * The glyph page texture, or <code>null</code> if the glyph has no visible pixels.
+     */
+    final TextureInfo page;
+
+    /**
+     * The glyph's x-coordinate on the page, in pixels.
+     */
+    final int x;
+
+    /**
+     * The glyph's y-coordinate on the page, in pixels.
+     */
+    final int y;
+
+    /**
+     * The glyph's width, in pixels.
+     */
+    final int w;
+
+    /**
+     * The horizontal offset of the glyph's left edge from the pen position.
+     */
+    final int offsetX;
+
+    /**
+     * The distance the pen moves after the glyph.
+     */
+    final int advance;
+
+    /**
+     * Constructs a Glyph.
+     * @param page The glyph page texture, or <code>null</code> if the glyph has no visible pixels.
+     * @param x The glyph's x-coordinate on the page.
+     * @param y The glyph's y-coordinate on the page.
+     * @param w The glyph's width.
+     * @param offsetX The horizontal offset of the glyph's left edge from the pen position.
+     * @param advance The distance the pen moves after the glyph.
+     */
+    Glyph(TextureInfo page, int x, int y, int w, int offsetX, int advance) {
+        this.page = page;
+        this.x = x;
+        this.y = y;
+        this.w = w;
+        this.offsetX = offsetX;
+        this.advance = advance;
+    }
+
+}
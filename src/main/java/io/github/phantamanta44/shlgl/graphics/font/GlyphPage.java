@@ -0,0 +1,124 @@
+package io.github.phantamanta44.shlgl.graphics.font;
+
+import io.github.phantamanta44.shlgl.graphics.texture.TextureInfo;
+import io.github.phantamanta44.shlgl.graphics.texture.TextureManager;
+import org.lwjgl.BufferUtils;
+
+import java.nio.ByteBuffer;
+
+/**
+ * A texture that glyphs are packed into row by row. Glyphs are written into a copy of the pixels in memory from
+ * whichever thread lays out text, and the rows they touched are uploaded on the GL thread before the next draw.
+ * @author Evan Geng
+ */
+class GlyphPage {
+
+    /**
+     * The page texture, whose storage is allocated on the first upload.
+     */
+    final TextureInfo tex;
+
+    /**
+     * The width and height of the page.
+     */
+    private final int size;
+
+    /**
+     * The page's RGBA pixels, row by row from the bottom.
+     */
+    private final ByteBuffer pixels;
+
+    /**
+     * The x-coordinate of the next free column in the current row.
+     */
+    private int cursorX;
+
+    /**
+     * The bottom edge of the current row.
+     */
+    private int rowY;
+
+    /**
+     * The height of the current row.
+     */
+    private int rowHeight;
+
+    /**
+     * The first row changed since the last upload, inclusive.
+     */
+    private int dirtyFrom;
+
+    /**
+     * The last row changed since the last upload, inclusive.
+     */
+    private int dirtyTo;
+
+    /**
+     * Creates an empty page of transparent white, so filtering at glyph edges doesn't darken them. The whole page is
+     * uploaded the first time, so no uninitialized texels are ever sampled.
+     * @param size The width and height of the page.
+     */
+    GlyphPage(int size) {
+        this.tex = TextureManager.createRenderTarget(size, size);
+        this.size = size;
+        this.pixels = BufferUtils.createByteBuffer(size * size * 4);
+        for (int i = 0; i < size * size * 4; i += 4)
+            pixels.put(i, (byte)0xFF).put(i + 1, (byte)0xFF).put(i + 2, (byte)0xFF);
+        this.dirtyFrom = 0;
+        this.dirtyTo = size - 1;
+    }
+
+    /**
+     * Finds room for a glyph, moving to a new row if the current one is full.
+     * @param w The glyph's width, including padding.
+     * @param h The glyph's height, including padding.
+     * @return The glyph's position packed as <code>x &lt;&lt; 16 | y</code>, or -1 if the page is full.
+     */
+    synchronized int pack(int w, int h) {
+        if (cursorX + w > size) {
+            rowY += rowHeight;
+            cursorX = rowHeight = 0;
+        }
+        if (w > size || rowY + h > size)
+            return -1;
+        int pos = cursorX << 16 | rowY;
+        cursorX += w;
+        rowHeight = Math.max(rowHeight, h);
+        return pos;
+    }
+
+    /**
+     * Writes a glyph's coverage into the page's alpha. The page is white, so text takes on the colour modifier.
+     * @param x The glyph's x-coordinate.
+     * @param y The glyph's y-coordinate.
+     * @param w The glyph's width.
+     * @param h The glyph's height.
+     * @param argb The glyph's ARGB pixels, row by row from the top, of which only alpha is used.
+     */
+    synchronized void put(int x, int y, int w, int h, int[] argb) {
+        for (int row = 0; row < h; row++) {
+            int index = ((y + h - 1 - row) * size + x) * 4 + 3;
+            for (int col = 0; col < w; col++, index += 4)
+                pixels.put(index, (byte)(argb[row * w + col] >>> 24));
+        }
+        dirtyFrom = Math.min(dirtyFrom, y);
+        dirtyTo = Math.max(dirtyTo, y + h - 1);
+    }
+
+    /**
+     * Uploads the rows changed since the last upload, allocating the texture first if necessary. Must be called on
+     * the GL thread.
+     */
+    synchronized void upload() {
+        if (dirtyFrom > dirtyTo)
+            return;
+        TextureManager.allocateRenderTarget(tex);
+        ByteBuffer rows = pixels.duplicate();
+        rows.position(dirtyFrom * size * 4);
+        rows.limit((dirtyTo + 1) * size * 4);
+        TextureManager.updateRegion(tex, 0, dirtyFrom, size, dirtyTo - dirtyFrom + 1, rows.slice());
+        dirtyFrom = size;
+        dirtyTo = -1;
+    }
+
+}
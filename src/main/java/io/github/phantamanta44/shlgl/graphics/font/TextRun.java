@@ -0,0 +1,103 @@
+package io.github.phantamanta44.shlgl.graphics.font;
+
+import io.github.phantamanta44.shlgl.graphics.render.RenderBuffer;
+import io.github.phantamanta44.shlgl.graphics.texture.TextureInfo;
+
+/**
+ * A string laid out into glyph quads, ready to be drawn any number of times without being laid out again. Runs are
+ * made by {@link BitmapFont#layout(String)} and are immutable.
+ * @author Evan Geng
+ */
+public class TextRun {
+
+    /**
+     * The number of floats describing each quad: x, y, width, height, page x, page y.
+     */
+    private static final int FLOATS_PER_QUAD = 6;
+
+    /**
+     * The quads, relative to the run's top left corner.
+     */
+    private final float[] quads;
+
+    /**
+     * The glyph page of each quad.
+     */
+    private final TextureInfo[] pages;
+
+    /**
+     * The number of quads.
+     */
+    private final int count;
+
+    /**
+     * The width of the widest line.
+     */
+    private final float width;
+
+    /**
+     * The total height of the lines.
+     */
+    private final float height;
+
+    /**
+     * Creates a run from laid out quads.
+     * @param quads The quads.
+     * @param pages The glyph page of each quad.
+     * @param count The number of quads.
+     * @param width The width of the widest line.
+     * @param height The total height of the lines.
+     */
+    TextRun(float[] quads, TextureInfo[] pages, int count, float width, float height) {
+        this.quads = quads;
+        this.pages = pages;
+        this.count = count;
+        this.width = width;
+        this.height = height;
+    }
+
+    /**
+     * Draws the run. Glyphs on the same page are batched together, so a run usually costs a single draw call. The
+     * text is coloured by the colour modifier.
+     * @param buf The render buffer to draw into.
+     * @param x The x-coordinate of the run's top left corner.
+     * @param y The y-coordinate of the run's top left corner.
+     */
+    public void draw(RenderBuffer buf, float x, float y) {
+        TextureInfo bound = null;
+        for (int i = 0; i < count; i++) {
+            if (pages[i] != bound) {
+                bound = pages[i];
+                buf.bind(bound);
+            }
+            int base = i * FLOATS_PER_QUAD;
+            float w = quads[base + 2], h = quads[base + 3];
+            buf.drawRect(x + quads[base], y + quads[base + 1], w, h, quads[base + 4], quads[base + 5], w, h);
+        }
+    }
+
+    /**
+     * Retrieves the width of the run's widest line.
+     * @return The width.
+     */
+    public float getWidth() {
+        return width;
+    }
+
+    /**
+     * Retrieves the total height of the run's lines.
+     * @return The height.
+     */
+    public float getHeight() {
+        return height;
+    }
+
+    /**
+     * Retrieves the number of glyph quads in the run.
+     * @return The quad count.
+     */
+    public int getQuadCount() {
+        return count;
+    }
+
+}
@@ -0,0 +1,171 @@
+package io.github.phantamanta44.shlgl.graphics.render;
+
+import io.github.phantamanta44.shlgl.SHLGL;
+import io.github.phantamanta44.shlgl.graphics.texture.TextureInfo;
+import io.github.phantamanta44.shlgl.graphics.texture.TextureManager;
+import org.lwjgl.opengl.GL11;
+import org.lwjgl.opengl.GL30;
+
+import java.util.function.Consumer;
+
+/**
+ * A layer that is rendered into a texture through a framebuffer and then drawn as a single textured quad. The layer is
+ * only rendered again once invalidated, so layers that rarely change, such as HUD panels or backgrounds, cost a single
+ * draw on most frames. The layer's contents are drawn in its own coordinates, from (0, 0) to its width and height.
+ * When blending is enabled, the layer keeps premultiplied alpha, so translucent contents look the same as when drawn
+ * directly.
+ * @author Evan Geng
+ */
+public class CachedLayer {
+
+    /**
+     * The layer's width, in texture pixels and layer coordinates.
+     */
+    private final int width;
+
+    /**
+     * The layer's height, in texture pixels and layer coordinates.
+     */
+    private final int height;
+
+    /**
+     * Records the layer's contents.
+     */
+    private final Consumer<RenderBuffer> painter;
+
+    /**
+     * The texture the layer is rendered into.
+     */
+    private final TextureInfo texture;
+
+    /**
+     * The framebuffer the layer is rendered through, or zero if not yet created.
+     */
+    private int framebuffer;
+
+    /**
+     * Whether the texture holds the layer's current contents, or a render of them has been recorded.
+     */
+    private volatile boolean valid;
+
+    /**
+     * Creates a cached layer.
+     * @param width The layer's width.
+     * @param height The layer's height.
+     * @param painter Records the layer's contents into a render buffer whenever the layer needs rendering.
+     */
+    public CachedLayer(int width, int height, Consumer<RenderBuffer> painter) {
+        this.width = width;
+        this.height = height;
+        this.painter = painter;
+        this.texture = TextureManager.createRenderTarget(width, height);
+        this.valid = false;
+    }
+
+    /**
+     * Marks the layer's contents as changed, so it is rendered again the next time it is drawn.
+     */
+    public void invalidate() {
+        valid = false;
+    }
+
+    /**
+     * Checks whether the layer's contents are cached.
+     * @return Whether the layer can be drawn without rendering it again.
+     */
+    public boolean isValid() {
+        return valid;
+    }
+
+    /**
+     * Draws the layer at its native size, rendering it first if it was invalidated.
+     * @param buf The render buffer to draw into.
+     * @param x The layer's x-coordinate.
+     * @param y The layer's y-coordinate.
+     */
+    public void draw(RenderBuffer buf, float x, float y) {
+        draw(buf, x, y, width, height);
+    }
+
+    /**
+     * Draws the layer stretched over a rectangle, rendering it first if it was invalidated. The buffer's bound texture
+     * is left as it was.
+     * @param buf The render buffer to draw into.
+     * @param x The rectangle's x-coordinate.
+     * @param y The rectangle's y-coordinate.
+     * @param w The rectangle's width.
+     * @param h The rectangle's height.
+     */
+    public void draw(RenderBuffer buf, float x, float y, float w, float h) {
+        if (!valid) {
+            valid = true;
+            RenderBuffer pass = buf.fork();
+            painter.accept(pass);
+            buf.renderLayer(this, pass);
+        }
+        buf.drawLayer(this, x, y, w, h);
+    }
+
+    /**
+     * Retrieves the texture the layer is rendered into.
+     * @return The texture's info.
+     */
+    public TextureInfo getTexture() {
+        return texture;
+    }
+
+    /**
+     * Retrieves the layer's width.
+     * @return The width.
+     */
+    public int getWidth() {
+        return width;
+    }
+
+    /**
+     * Retrieves the layer's height.
+     * @return The height.
+     */
+    public int getHeight() {
+        return height;
+    }
+
+    /**
+     * Binds the layer's framebuffer and clears it to transparent, creating the framebuffer and texture if necessary.
+     * Must be called on the GL thread.
+     */
+    void beginPass() {
+        if (framebuffer == 0) {
+            TextureManager.allocateRenderTarget(texture);
+            framebuffer = GL30.glGenFramebuffers();
+            GLState.bindFramebuffer(framebuffer);
+            GL30.glFramebufferTexture2D(GL30.GL_FRAMEBUFFER, GL30.GL_COLOR_ATTACHMENT0, GL11.GL_TEXTURE_2D,
+                    texture.getId(), 0);
+            if (GL30.glCheckFramebufferStatus(GL30.GL_FRAMEBUFFER) != GL30.GL_FRAMEBUFFER_COMPLETE)
+                throw new IllegalStateException("Cached layer framebuffer is incomplete!");
+        } else {
+            GLState.bindFramebuffer(framebuffer);
+        }
+        GLState.viewport(0, 0, width, height);
+        GL11.glClear(GL11.GL_COLOR_BUFFER_BIT);
+    }
+
+    /**
+     * Deletes the layer's framebuffer and texture. The layer is rendered again if drawn afterwards. Safe to call from
+     * any thread; off the render thread, they are deleted before the next frame is drawn.
+     */
+    public void dispose() {
+        if (!SHLGL.isRenderThread()) {
+            SHLGL.getInstance().runOnRenderThread(this::dispose);
+            return;
+        }
+        if (framebuffer != 0) {
+            GLState.bindFramebuffer(0);
+            GL30.glDeleteFramebuffers(framebuffer);
+            framebuffer = 0;
+        }
+        TextureManager.deleteTexture(texture);
+        valid = false;
+    }
+
+}
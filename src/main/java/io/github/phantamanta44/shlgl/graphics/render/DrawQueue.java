@@ -0,0 +1,268 @@
+package io.github.phantamanta44.shlgl.graphics.render;
+
+import io.github.phantamanta44.shlgl.graphics.texture.TextureInfo;
+import io.github.phantamanta44.shlgl.util.collection.RadixSorter;
+
+import java.util.Arrays;
+
+/**
+ * A reusable list of resolved draws tagged with 64-bit sort keys, along with the render state snapshots they refer to.
+ * @author Evan Geng
+ */
+class DrawQueue {
+
+    /**
+     * The number of floats in a state snapshot: a 4x4 kernel followed by a colour.
+     */
+    static final int STATE_FLOATS = 20;
+
+    /**
+     * The sort keys, permuted alongside {@link #order} when sorting.
+     */
+    private long[] keys;
+
+    /**
+     * The draw indices in drawing order.
+     */
+    private int[] order;
+
+    /**
+     * The offset of each draw's operands in the command stream's float storage, or its integer storage for tile maps.
+     */
+    private int[] offsets;
+
+    /**
+     * The state snapshot index of each draw.
+     */
+    private int[] states;
+
+    /**
+     * An extra integer operand of each draw, such as a packed sprite colour.
+     */
+    private int[] params;
+
+    /**
+     * The texture bound for each draw.
+     */
+    private TextureInfo[] textures;
+
+    /**
+     * The number of draws queued.
+     */
+    private int count;
+
+    /**
+     * The state snapshots, stored consecutively.
+     */
+    private float[] stateStore;
+
+    /**
+     * The number of state snapshots.
+     */
+    private int stateCount;
+
+    /**
+     * The sorter used to order draws by key.
+     */
+    private final RadixSorter sorter;
+
+    /**
+     * Creates an empty draw queue.
+     */
+    DrawQueue() {
+        this.keys = new long[256];
+        this.order = new int[256];
+        this.offsets = new int[256];
+        this.states = new int[256];
+        this.params = new int[256];
+        this.textures = new TextureInfo[256];
+        this.stateStore = new float[STATE_FLOATS * 16];
+        this.sorter = new RadixSorter();
+    }
+
+    /**
+     * Builds a sort key. Fields are ordered from most to least significant.
+     * @param layer The draw layer, clamped to the range of a short.
+     * @param shader The shader index, in the range [0, 255].
+     * @param texture The texture ID. Only the low 24 bits are kept, so IDs beyond that share a group with lower ones;
+     *                this only costs batching, since each draw keeps its own texture.
+     * @param depth The depth within the texture group, clamped to the range [0, 65535].
+     * @return The sort key.
+     */
+    static long key(int layer, int shader, int texture, int depth) {
+        int clampedLayer = Math.max(Short.MIN_VALUE, Math.min(Short.MAX_VALUE, layer));
+        int clampedDepth = Math.max(0, Math.min(0xFFFF, depth));
+        return ((long)((clampedLayer ^ 0x8000) & 0xFFFF) << 48)
+                | ((long)(shader & 0xFF) << 40)
+                | ((long)(texture & 0xFFFFFF) << 16)
+                | clampedDepth;
+    }
+
+    /**
+     * Stores a state snapshot.
+     * @param kernel The row-major transformation kernel.
+     * @param colour The colour modifier.
+     * @return The snapshot's index.
+     */
+    int pushState(float[] kernel, float[] colour) {
+        if ((stateCount + 1) * STATE_FLOATS > stateStore.length)
+            stateStore = Arrays.copyOf(stateStore, stateStore.length * 2);
+        int base = stateCount * STATE_FLOATS;
+        System.arraycopy(kernel, 0, stateStore, base, 16);
+        System.arraycopy(colour, 0, stateStore, base + 16, 4);
+        return stateCount++;
+    }
+
+    /**
+     * Queues a draw.
+     * @param key The draw's sort key.
+     * @param texture The texture bound for the draw.
+     * @param state The draw's state snapshot index.
+     * @param offset The offset of the draw's operands in the command stream's float stream, or its integer stream for
+     *               tile map draws.
+     * @param param An extra integer operand of the draw.
+     */
+    void add(long key, TextureInfo texture, int state, int offset, int param) {
+        if (count == keys.length) {
+            int size = count * 2;
+            keys = Arrays.copyOf(keys, size);
+            order = Arrays.copyOf(order, size);
+            offsets = Arrays.copyOf(offsets, size);
+            states = Arrays.copyOf(states, size);
+            params = Arrays.copyOf(params, size);
+            textures = Arrays.copyOf(textures, size);
+        }
+        keys[count] = key;
+        order[count] = count;
+        offsets[count] = offset;
+        states[count] = state;
+        params[count] = param;
+        textures[count] = texture;
+        count++;
+    }
+
+    /**
+     * Sorts the queued draws by key, keeping submission order among equal keys.
+     */
+    void sort() {
+        sorter.sort(keys, order, count);
+    }
+
+    /**
+     * Retrieves the number of queued draws.
+     * @return The draw count.
+     */
+    int size() {
+        return count;
+    }
+
+    /**
+     * Retrieves the draw at a position in drawing order.
+     * @param i The position.
+     * @return The draw's index.
+     */
+    int drawAt(int i) {
+        return order[i];
+    }
+
+    /**
+     * Retrieves the sort key at a position in drawing order.
+     * @param i The position.
+     * @return The sort key.
+     */
+    long keyAt(int i) {
+        return keys[i];
+    }
+
+    /**
+     * Retrieves the extra integer operand of a draw.
+     * @param draw The draw's index.
+     * @return The operand.
+     */
+    int paramOf(int draw) {
+        return params[draw];
+    }
+
+    /**
+     * Retrieves the texture bound for a draw.
+     * @param draw The draw's index.
+     * @return The texture.
+     */
+    TextureInfo textureOf(int draw) {
+        return textures[draw];
+    }
+
+    /**
+     * Retrieves the state snapshot index of a draw.
+     * @param draw The draw's index.
+     * @return The state snapshot index.
+     */
+    int stateOf(int draw) {
+        return states[draw];
+    }
+
+    /**
+     * Retrieves the operand offset of a draw.
+     * @param draw The draw's index.
+     * @return The offset in the command stream's float storage.
+     */
+    int offsetOf(int draw) {
+        return offsets[draw];
+    }
+
+    /**
+     * Copies a state snapshot's kernel and colour out.
+     * @param state The state snapshot index.
+     * @param kernel The array to receive the kernel.
+     * @param colour The array to receive the colour.
+     */
+    void readState(int state, float[] kernel, float[] colour) {
+        int base = state * STATE_FLOATS;
+        System.arraycopy(stateStore, base, kernel, 0, 16);
+        System.arraycopy(stateStore, base + 16, colour, 0, 4);
+    }
+
+    /**
+     * Checks whether two state snapshots hold the same kernel, regardless of their colours.
+     * @param a The first snapshot index.
+     * @param b The second snapshot index.
+     * @return Whether the snapshots' kernels are equal.
+     */
+    boolean kernelEquals(int a, int b) {
+        if (a == b)
+            return true;
+        int baseA = a * STATE_FLOATS, baseB = b * STATE_FLOATS;
+        for (int i = 0; i < 16; i++) {
+            if (stateStore[baseA + i] != stateStore[baseB + i])
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * Checks whether two state snapshots hold the same colour, regardless of their kernels.
+     * @param a The first snapshot index.
+     * @param b The second snapshot index.
+     * @return Whether the snapshots' colours are equal.
+     */
+    boolean colourEquals(int a, int b) {
+        if (a == b)
+            return true;
+        int baseA = a * STATE_FLOATS + 16, baseB = b * STATE_FLOATS + 16;
+        for (int i = 0; i < 4; i++) {
+            if (stateStore[baseA + i] != stateStore[baseB + i])
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * Empties the queue while keeping its backing storage for reuse.
+     */
+    void clear() {
+        Arrays.fill(textures, 0, count, null);
+        count = 0;
+        stateCount = 0;
+    }
+
+}
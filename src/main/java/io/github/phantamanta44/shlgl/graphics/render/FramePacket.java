@@ -0,0 +1,98 @@
+package io.github.phantamanta44.shlgl.graphics.render;
+
+/**
+ * A frame handed from the logic thread to the render thread: the recorded commands along with a snapshot of the
+ * window state they were recorded against. A packet is only ever owned by one thread at a time.
+ * @author Evan Geng
+ */
+public class FramePacket {
+
+    /**
+     * The buffer holding the frame's commands.
+     */
+    private final RenderBuffer buffer;
+
+    /**
+     * The window width when the frame was recorded.
+     */
+    private int windowWidth;
+
+    /**
+     * The window height when the frame was recorded.
+     */
+    private int windowHeight;
+
+    /**
+     * The resolution width when the frame was recorded.
+     */
+    private int resWidth;
+
+    /**
+     * The resolution height when the frame was recorded.
+     */
+    private int resHeight;
+
+    /**
+     * Creates a frame packet recording into the given buffer.
+     * @param buffer The render buffer.
+     */
+    public FramePacket(RenderBuffer buffer) {
+        this.buffer = buffer;
+    }
+
+    /**
+     * Discards the previous frame's commands and records the current window state, ready to record a new frame.
+     * @param windowWidth The window width.
+     * @param windowHeight The window height.
+     * @param resWidth The resolution width.
+     * @param resHeight The resolution height.
+     */
+    public void begin(int windowWidth, int windowHeight, int resWidth, int resHeight) {
+        buffer.discard();
+        this.windowWidth = windowWidth;
+        this.windowHeight = windowHeight;
+        this.resWidth = resWidth;
+        this.resHeight = resHeight;
+    }
+
+    /**
+     * Retrieves the buffer holding the frame's commands.
+     * @return The render buffer.
+     */
+    public RenderBuffer getBuffer() {
+        return buffer;
+    }
+
+    /**
+     * Retrieves the window width when the frame was recorded.
+     * @return The window width.
+     */
+    public int getWindowWidth() {
+        return windowWidth;
+    }
+
+    /**
+     * Retrieves the window height when the frame was recorded.
+     * @return The window height.
+     */
+    public int getWindowHeight() {
+        return windowHeight;
+    }
+
+    /**
+     * Retrieves the resolution width when the frame was recorded.
+     * @return The resolution width.
+     */
+    public int getResWidth() {
+        return resWidth;
+    }
+
+    /**
+     * Retrieves the resolution height when the frame was recorded.
+     * @return The resolution height.
+     */
+    public int getResHeight() {
+        return resHeight;
+    }
+
+}
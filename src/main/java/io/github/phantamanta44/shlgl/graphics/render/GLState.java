@@ -0,0 +1,397 @@
+package io.github.phantamanta44.shlgl.graphics.render;
+
+import org.lwjgl.opengl.GL11;
+import org.lwjgl.opengl.GL13;
+import org.lwjgl.opengl.GL14;
+import org.lwjgl.opengl.GL15;
+import org.lwjgl.opengl.GL20;
+import org.lwjgl.opengl.GL21;
+import org.lwjgl.opengl.GL30;
+import org.lwjgl.opengl.GL31;
+
+import java.util.Arrays;
+
+/**
+ * Shadows the GL state that SHLGL changes, so that calls which wouldn't change anything never reach the driver. All GL
+ * state changes made by SHLGL go through this class. Must only be used on the thread owning the GL context; code
+ * that changes state behind its back should call {@link #invalidate()} afterwards.
+ * @author Evan Geng
+ */
+public class GLState {
+
+    /**
+     * The value of a tracked binding whose actual value is unknown.
+     */
+    private static final int UNKNOWN = -1;
+
+    /**
+     * The number of texture units tracked.
+     */
+    private static final int TEXTURE_UNITS = 16;
+
+    /**
+     * The buffer binding targets tracked, in slot order.
+     */
+    private static final int[] BUFFER_TARGETS = {
+            GL15.GL_ARRAY_BUFFER,
+            GL15.GL_ELEMENT_ARRAY_BUFFER,
+            GL31.GL_UNIFORM_BUFFER,
+            GL21.GL_PIXEL_UNPACK_BUFFER,
+            GL21.GL_PIXEL_PACK_BUFFER,
+            GL31.GL_COPY_READ_BUFFER,
+            GL31.GL_COPY_WRITE_BUFFER
+    };
+
+    /**
+     * The slot of the element array buffer binding, which belongs to the bound vertex array object.
+     */
+    private static final int ELEMENT_SLOT = 1;
+
+    /**
+     * The texture bound to each unit.
+     */
+    private static final int[] textures = new int[TEXTURE_UNITS];
+
+    /**
+     * The 2D array texture bound to each unit.
+     */
+    private static final int[] arrayTextures = new int[TEXTURE_UNITS];
+
+    /**
+     * The buffer bound to each tracked target.
+     */
+    private static final int[] buffers = new int[BUFFER_TARGETS.length];
+
+    /**
+     * The active texture unit.
+     */
+    private static int activeUnit;
+
+    /**
+     * The program in use.
+     */
+    private static int program;
+
+    /**
+     * The bound vertex array object.
+     */
+    private static int vertexArray;
+
+    /**
+     * The bound framebuffer.
+     */
+    private static int framebuffer;
+
+    /**
+     * The viewport rectangle: x, y, width, height.
+     */
+    private static final int[] viewport = new int[4];
+
+    /**
+     * Whether blending is enabled, or <code>null</code> if unknown.
+     */
+    private static Boolean blend;
+
+    /**
+     * The blend source factor for colour.
+     */
+    private static int blendSrc;
+
+    /**
+     * The blend destination factor for colour.
+     */
+    private static int blendDst;
+
+    /**
+     * The blend source factor for alpha.
+     */
+    private static int blendSrcAlpha;
+
+    /**
+     * The blend destination factor for alpha.
+     */
+    private static int blendDstAlpha;
+
+    /**
+     * The number of state changes passed to the driver this frame.
+     */
+    private static int issued;
+
+    /**
+     * The number of redundant state changes skipped this frame.
+     */
+    private static int elided;
+
+    /**
+     * The number of state changes passed to the driver in the last complete frame.
+     */
+    private static int lastIssued;
+
+    /**
+     * The number of redundant state changes skipped in the last complete frame.
+     */
+    private static int lastElided;
+
+    static {
+        invalidate();
+    }
+
+    /**
+     * Forgets all tracked state, so the next change of each kind is always issued.
+     */
+    public static void invalidate() {
+        Arrays.fill(textures, UNKNOWN);
+        Arrays.fill(arrayTextures, UNKNOWN);
+        Arrays.fill(buffers, UNKNOWN);
+        Arrays.fill(viewport, UNKNOWN);
+        activeUnit = UNKNOWN;
+        program = UNKNOWN;
+        vertexArray = UNKNOWN;
+        framebuffer = UNKNOWN;
+        blend = null;
+        blendSrc = blendDst = blendSrcAlpha = blendDstAlpha = UNKNOWN;
+    }
+
+    /**
+     * Records whether a state change was needed.
+     * @param changed Whether the change was issued.
+     * @return The same value.
+     */
+    private static boolean count(boolean changed) {
+        if (changed)
+            issued++;
+        else
+            elided++;
+        return changed;
+    }
+
+    /**
+     * Makes a texture unit active.
+     * @param unit The unit's index, starting at zero.
+     */
+    public static void activeTexture(int unit) {
+        if (count(activeUnit != unit)) {
+            GL13.glActiveTexture(GL13.GL_TEXTURE0 + unit);
+            activeUnit = unit;
+        }
+    }
+
+    /**
+     * Binds a 2D texture to the active texture unit.
+     * @param id The texture's ID.
+     */
+    public static void bindTexture(int id) {
+        int unit = activeUnit == UNKNOWN ? 0 : activeUnit;
+        if (count(textures[unit] != id)) {
+            GL11.glBindTexture(GL11.GL_TEXTURE_2D, id);
+            textures[unit] = id;
+        }
+    }
+
+    /**
+     * Binds a 2D array texture to the active texture unit. Array textures have their own binding, so this leaves the
+     * unit's 2D texture bound.
+     * @param id The texture's ID.
+     */
+    public static void bindTextureArray(int id) {
+        int unit = activeUnit == UNKNOWN ? 0 : activeUnit;
+        if (count(arrayTextures[unit] != id)) {
+            GL11.glBindTexture(GL30.GL_TEXTURE_2D_ARRAY, id);
+            arrayTextures[unit] = id;
+        }
+    }
+
+    /**
+     * Retrieves the 2D texture bound to the active texture unit.
+     * @return The texture's ID, or -1 if unknown.
+     */
+    public static int getBoundTexture() {
+        return textures[activeUnit == UNKNOWN ? 0 : activeUnit];
+    }
+
+    /**
+     * Forgets a deleted texture, so binding a new texture that reuses its ID isn't skipped.
+     * @param id The deleted texture's ID.
+     */
+    public static void forgetTexture(int id) {
+        for (int i = 0; i < TEXTURE_UNITS; i++) {
+            if (textures[i] == id)
+                textures[i] = UNKNOWN;
+            if (arrayTextures[i] == id)
+                arrayTextures[i] = UNKNOWN;
+        }
+    }
+
+    /**
+     * Makes a program current.
+     * @param id The program's handle.
+     */
+    public static void useProgram(int id) {
+        if (count(program != id)) {
+            GL20.glUseProgram(id);
+            program = id;
+        }
+    }
+
+    /**
+     * Binds a buffer to a target. Untracked targets are always bound.
+     * @param target The binding target.
+     * @param id The buffer's handle.
+     */
+    public static void bindBuffer(int target, int id) {
+        int slot = bufferSlot(target);
+        if (slot == -1) {
+            count(true);
+            GL15.glBindBuffer(target, id);
+        } else if (count(buffers[slot] != id)) {
+            GL15.glBindBuffer(target, id);
+            buffers[slot] = id;
+        }
+    }
+
+    /**
+     * Binds a vertex array object. The element array buffer binding follows the vertex array object, so it becomes
+     * unknown whenever the vertex array object changes.
+     * @param id The vertex array object's handle.
+     */
+    public static void bindVertexArray(int id) {
+        if (count(vertexArray != id)) {
+            GL30.glBindVertexArray(id);
+            vertexArray = id;
+            buffers[ELEMENT_SLOT] = UNKNOWN;
+        }
+    }
+
+    /**
+     * Binds a framebuffer for both drawing and reading.
+     * @param id The framebuffer's handle, or zero for the default framebuffer.
+     */
+    public static void bindFramebuffer(int id) {
+        if (count(framebuffer != id)) {
+            GL30.glBindFramebuffer(GL30.GL_FRAMEBUFFER, id);
+            framebuffer = id;
+        }
+    }
+
+    /**
+     * Retrieves the vertex array object that is bound.
+     * @return The vertex array object's handle, or -1 if unknown.
+     */
+    public static int getVertexArray() {
+        return vertexArray;
+    }
+
+    /**
+     * Retrieves the buffer bound to a tracked target.
+     * @param target The binding target.
+     * @return The buffer's handle, or -1 if unknown or untracked.
+     */
+    public static int getBoundBuffer(int target) {
+        int slot = bufferSlot(target);
+        return slot == -1 ? UNKNOWN : buffers[slot];
+    }
+
+    /**
+     * Finds the tracking slot of a buffer target.
+     * @param target The binding target.
+     * @return The slot, or -1 if the target isn't tracked.
+     */
+    private static int bufferSlot(int target) {
+        for (int i = 0; i < BUFFER_TARGETS.length; i++) {
+            if (BUFFER_TARGETS[i] == target)
+                return i;
+        }
+        return -1;
+    }
+
+    /**
+     * Sets the viewport.
+     * @param x The left edge, in pixels.
+     * @param y The bottom edge, in pixels.
+     * @param width The width, in pixels.
+     * @param height The height, in pixels.
+     */
+    public static void viewport(int x, int y, int width, int height) {
+        if (count(viewport[0] != x || viewport[1] != y || viewport[2] != width || viewport[3] != height)) {
+            GL11.glViewport(x, y, width, height);
+            viewport[0] = x;
+            viewport[1] = y;
+            viewport[2] = width;
+            viewport[3] = height;
+        }
+    }
+
+    /**
+     * Enables or disables blending.
+     * @param enabled Whether blending should be enabled.
+     */
+    public static void setBlend(boolean enabled) {
+        if (count(blend == null || blend != enabled)) {
+            if (enabled)
+                GL11.glEnable(GL11.GL_BLEND);
+            else
+                GL11.glDisable(GL11.GL_BLEND);
+            blend = enabled;
+        }
+    }
+
+    /**
+     * Checks whether blending is enabled, as far as the cache knows.
+     * @return Whether blending is enabled.
+     */
+    public static boolean isBlendEnabled() {
+        return blend != null && blend;
+    }
+
+    /**
+     * Sets the blend function.
+     * @param src The source factor.
+     * @param dst The destination factor.
+     */
+    public static void blendFunc(int src, int dst) {
+        blendFuncSeparate(src, dst, src, dst);
+    }
+
+    /**
+     * Sets the blend function, with separate factors for colour and alpha.
+     * @param src The source factor for colour.
+     * @param dst The destination factor for colour.
+     * @param srcAlpha The source factor for alpha.
+     * @param dstAlpha The destination factor for alpha.
+     */
+    public static void blendFuncSeparate(int src, int dst, int srcAlpha, int dstAlpha) {
+        if (count(blendSrc != src || blendDst != dst || blendSrcAlpha != srcAlpha || blendDstAlpha != dstAlpha)) {
+            GL14.glBlendFuncSeparate(src, dst, srcAlpha, dstAlpha);
+            blendSrc = src;
+            blendDst = dst;
+            blendSrcAlpha = srcAlpha;
+            blendDstAlpha = dstAlpha;
+        }
+    }
+
+    /**
+     * Ends the frame, making this frame's counts available and starting new ones.
+     */
+    public static void endFrame() {
+        lastIssued = issued;
+        lastElided = elided;
+        issued = elided = 0;
+    }
+
+    /**
+     * Retrieves the number of state changes passed to the driver in the last complete frame.
+     * @return The issued count.
+     */
+    public static int getIssued() {
+        return lastIssued;
+    }
+
+    /**
+     * Retrieves the number of redundant state changes skipped in the last complete frame.
+     * @return The elided count.
+     */
+    public static int getElided() {
+        return lastElided;
+    }
+
+}
@@ -1,7 +1,6 @@
 package io.github.phantamanta44.shlgl.graphics.render;
 
 import io.github.phantamanta44.shlgl.util.math.Vector2I;
-import org.lwjgl.opengl.GL11;
 
 /**
  * Handles margin creation to conserve resolution upon window size change.
@@ -29,6 +28,21 @@ public class MarginHandler {
      */
     private float resHeight;
 
+    /**
+     * The viewport rectangle fitting the resolution into the window: x, y, width, height.
+     */
+    private final int[] viewport = new int[4];
+
+    /**
+     * The row-major orthographic projection from resolution coordinates to device coordinates.
+     */
+    private final float[] projection = {
+            1F, 0F, 0F, 0F,
+            0F, 1F, 0F, 0F,
+            0F, 0F, 1F, 0F,
+            0F, 0F, 0F, 1F
+    };
+
     /**
      * Updates the cached width and height values.
      * @param winSize The new window size.
@@ -36,14 +50,29 @@ public class MarginHandler {
      * @param height The new resolution height.
      */
     public void update(Vector2I winSize, int width, int height) {
-        if (this.winWidth != winSize.x()
-                || this.winHeight != winSize.y()
+        update(winSize.x(), winSize.y(), width, height);
+    }
+
+    /**
+     * Updates the cached width and height values.
+     * @param winWidth The new window width.
+     * @param winHeight The new window height.
+     * @param width The new resolution width.
+     * @param height The new resolution height.
+     */
+    public void update(int winWidth, int winHeight, int width, int height) {
+        if (this.winWidth != winWidth
+                || this.winHeight != winHeight
                 || this.resWidth != width
                 || this.resHeight != height) {
-            this.winWidth = winSize.x();
-            this.winHeight = winSize.y();
+            this.winWidth = winWidth;
+            this.winHeight = winHeight;
             this.resWidth = width;
             this.resHeight = height;
+            projection[0] = 2F / resWidth;
+            projection[3] = -1F;
+            projection[5] = 2F / resHeight;
+            projection[7] = -1F;
             calculateMargin();
         }
     }
@@ -66,12 +95,43 @@ public class MarginHandler {
             idealWinHeight = winWidth * resHeight / resWidth;
             halfMarginVer = (winHeight - idealWinHeight) / 2;
         }
-        GL11.glViewport(
-                (int)Math.floor(halfMarginHor),
-                (int)Math.floor(halfMarginVer),
-                (int)Math.floor(idealWinWidth),
-                (int)Math.floor(idealWinHeight)
-        );
+        viewport[0] = (int)Math.floor(halfMarginHor);
+        viewport[1] = (int)Math.floor(halfMarginVer);
+        viewport[2] = (int)Math.floor(idealWinWidth);
+        viewport[3] = (int)Math.floor(idealWinHeight);
+        applyViewport();
+    }
+
+    /**
+     * Sets the viewport to the rectangle fitting the resolution into the window, such as after drawing offscreen.
+     */
+    public void applyViewport() {
+        GLState.viewport(viewport[0], viewport[1], viewport[2], viewport[3]);
+    }
+
+    /**
+     * Retrieves the resolution width.
+     * @return The width, in render coordinates.
+     */
+    public float getResolutionWidth() {
+        return resWidth;
+    }
+
+    /**
+     * Retrieves the resolution height.
+     * @return The height, in render coordinates.
+     */
+    public float getResolutionHeight() {
+        return resHeight;
+    }
+
+    /**
+     * Retrieves the orthographic projection mapping render coordinates to device coordinates. The returned array is
+     * shared and must not be modified.
+     * @return The row-major projection matrix.
+     */
+    public float[] getProjection() {
+        return projection;
     }
 
     /**
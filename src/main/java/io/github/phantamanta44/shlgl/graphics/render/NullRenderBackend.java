@@ -0,0 +1,122 @@
+package io.github.phantamanta44.shlgl.graphics.render;
+
+import io.github.phantamanta44.shlgl.graphics.texture.TextureInfo;
+
+import java.util.Arrays;
+
+/**
+ * A backend that draws nothing and only counts what it is given, for measuring CPU-side throughput without a GL
+ * context. Draws are counted as the batches the OpenGL path would issue: a new draw starts whenever the texture or
+ * colour modifier changes between quads, or a batch fills up.
+ * @author Evan Geng
+ */
+public class NullRenderBackend implements RenderBackend {
+
+    /**
+     * The maximum number of quads counted per draw.
+     */
+    private final int batchSize;
+
+    /**
+     * The number of quads received this frame.
+     */
+    private int quads;
+
+    /**
+     * The number of draws counted this frame.
+     */
+    private int draws;
+
+    /**
+     * The number of quads in the current draw.
+     */
+    private int pending;
+
+    /**
+     * The texture of the current draw.
+     */
+    private TextureInfo texture;
+
+    /**
+     * The colour modifier of the current draw.
+     */
+    private final float[] colour;
+
+    /**
+     * Creates a null backend counting draws of the given batch size.
+     * @param batchSize The maximum number of quads counted per draw.
+     */
+    public NullRenderBackend(int batchSize) {
+        if (batchSize < 1)
+            throw new IllegalArgumentException("Batch size must be positive!");
+        this.batchSize = batchSize;
+        this.colour = new float[4];
+    }
+
+    /**
+     * Creates a null backend counting draws of the default batch size.
+     */
+    public NullRenderBackend() {
+        this(RenderBuffer.DEFAULT_BATCH_SIZE);
+    }
+
+    @Override
+    public void beginFrame() {
+        quads = draws = pending = 0;
+        texture = null;
+    }
+
+    @Override
+    public void setTexture(TextureInfo texture) {
+        if (texture != this.texture) {
+            pending = 0;
+            this.texture = texture;
+        }
+    }
+
+    @Override
+    public void setColour(float[] colour) {
+        if (!Arrays.equals(colour, this.colour)) {
+            pending = 0;
+            System.arraycopy(colour, 0, this.colour, 0, 4);
+        }
+    }
+
+    @Override
+    public void drawQuad(float x1, float y1, float u1, float v1,
+                         float x2, float y2, float u2, float v2,
+                         float x3, float y3, float u3, float v3,
+                         float x4, float y4, float u4, float v4) {
+        if (pending == 0 || pending == batchSize) {
+            draws++;
+            pending = 0;
+        }
+        pending++;
+        quads++;
+    }
+
+    /**
+     * Retrieves the number of quads received since the last frame began.
+     * @return The quad count.
+     */
+    public int getQuads() {
+        return quads;
+    }
+
+    /**
+     * Retrieves the number of vertices received since the last frame began.
+     * @return The vertex count.
+     */
+    public int getVertices() {
+        return quads * QuadBatch.VERTICES_PER_QUAD;
+    }
+
+    /**
+     * Retrieves the number of draws counted since the last frame began.
+     * @return The draw count.
+     */
+    public int getDraws() {
+        return draws;
+    }
+
+}
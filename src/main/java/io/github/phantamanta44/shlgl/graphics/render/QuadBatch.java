@@ -0,0 +1,251 @@
+package io.github.phantamanta44.shlgl.graphics.render;
+
+import org.lwjgl.BufferUtils;
+import org.lwjgl.opengl.GL11;
+import org.lwjgl.opengl.GL15;
+import org.lwjgl.opengl.GL32;
+
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.nio.ShortBuffer;
+
+/**
+ * Accumulates textured quads into a single vertex buffer so they can be drawn with one draw call. Quads are drawn as
+ * indexed triangle pairs through a shared static index buffer.
+ * @author Evan Geng
+ */
+public class QuadBatch {
+
+    /**
+     * The number of floats describing a single vertex (x, y, u, v).
+     */
+    public static final int FLOATS_PER_VERTEX = 4;
+
+    /**
+     * The number of vertices making up a single quad.
+     */
+    public static final int VERTICES_PER_QUAD = 4;
+
+    /**
+     * The number of floats describing a single quad.
+     */
+    public static final int FLOATS_PER_QUAD = FLOATS_PER_VERTEX * VERTICES_PER_QUAD;
+
+    /**
+     * The number of bytes describing a single vertex.
+     */
+    public static final int BYTES_PER_VERTEX = FLOATS_PER_VERTEX * Float.BYTES;
+
+    /**
+     * The number of indices making up a single quad's two triangles.
+     */
+    public static final int INDICES_PER_QUAD = 6;
+
+    /**
+     * The handle of the static index buffer.
+     */
+    private final int indexBuffer;
+
+    /**
+     * The type of the indices in the index buffer.
+     */
+    private final int indexType;
+
+    /**
+     * The staging buffer that quads are written into.
+     */
+    private final ByteBuffer staging;
+
+    /**
+     * A float view of the staging buffer.
+     */
+    private final FloatBuffer vertices;
+
+    /**
+     * The streaming buffer that batches are uploaded into, or <code>null</code> to re-specify the bound buffer.
+     */
+    private final StreamingBuffer stream;
+
+    /**
+     * The maximum number of quads this batch can hold before it must be flushed.
+     */
+    private final int capacity;
+
+    /**
+     * The number of quads currently in the batch.
+     */
+    private int count;
+
+    /**
+     * The number of draw calls issued since the last call to {@link #resetDrawCalls()}.
+     */
+    private int drawCalls;
+
+    /**
+     * Creates a quad batch.
+     * @param capacity The maximum number of quads per draw call.
+     */
+    public QuadBatch(int capacity) {
+        this(capacity, null);
+    }
+
+    /**
+     * Creates a quad batch that uploads through a streaming buffer. The vertex array object that the batch will draw
+     * with must be bound, as the batch's index buffer is attached to it.
+     * @param capacity The maximum number of quads per draw call.
+     * @param stream The streaming buffer, whose segments must fit a full batch, or <code>null</code> to re-specify
+     *               the bound array buffer on every draw.
+     */
+    public QuadBatch(int capacity, StreamingBuffer stream) {
+        if (capacity < 1)
+            throw new IllegalArgumentException("Batch capacity must be positive!");
+        if (stream != null && stream.getSegmentSize() < capacity * FLOATS_PER_QUAD * Float.BYTES)
+            throw new IllegalArgumentException("Streaming buffer segments are too small for the batch!");
+        this.capacity = capacity;
+        this.staging = BufferUtils.createByteBuffer(capacity * FLOATS_PER_QUAD * Float.BYTES);
+        this.vertices = staging.asFloatBuffer();
+        this.stream = stream;
+        this.count = 0;
+        this.indexType = capacity * VERTICES_PER_QUAD <= 0x10000 ? GL11.GL_UNSIGNED_SHORT : GL11.GL_UNSIGNED_INT;
+        this.indexBuffer = createIndexBuffer(capacity, indexType);
+    }
+
+    /**
+     * Builds and binds a static index buffer splitting each quad into the triangles (0, 1, 2) and (2, 3, 0).
+     * @param capacity The number of quads to build indices for.
+     * @param type The index type, either {@link GL11#GL_UNSIGNED_SHORT} or {@link GL11#GL_UNSIGNED_INT}.
+     * @return The index buffer's handle.
+     */
+    private static int createIndexBuffer(int capacity, int type) {
+        int handle = GL15.glGenBuffers();
+        GLState.bindBuffer(GL15.GL_ELEMENT_ARRAY_BUFFER, handle);
+        int count = capacity * INDICES_PER_QUAD;
+        if (type == GL11.GL_UNSIGNED_SHORT) {
+            ShortBuffer indices = BufferUtils.createShortBuffer(count);
+            for (int i = 0; i < capacity * VERTICES_PER_QUAD; i += VERTICES_PER_QUAD) {
+                indices.put((short)i).put((short)(i + 1)).put((short)(i + 2))
+                        .put((short)(i + 2)).put((short)(i + 3)).put((short)i);
+            }
+            indices.flip();
+            GL15.glBufferData(GL15.GL_ELEMENT_ARRAY_BUFFER, indices, GL15.GL_STATIC_DRAW);
+        } else {
+            IntBuffer indices = BufferUtils.createIntBuffer(count);
+            for (int i = 0; i < capacity * VERTICES_PER_QUAD; i += VERTICES_PER_QUAD)
+                indices.put(i).put(i + 1).put(i + 2).put(i + 2).put(i + 3).put(i);
+            indices.flip();
+            GL15.glBufferData(GL15.GL_ELEMENT_ARRAY_BUFFER, indices, GL15.GL_STATIC_DRAW);
+        }
+        return handle;
+    }
+
+    /**
+     * Retrieves the handle of the static index buffer.
+     * @return The index buffer's handle.
+     */
+    public int getIndexBuffer() {
+        return indexBuffer;
+    }
+
+    /**
+     * Retrieves the type of the indices in the static index buffer.
+     * @return The index type, either {@link GL11#GL_UNSIGNED_SHORT} or {@link GL11#GL_UNSIGNED_INT}.
+     */
+    public int getIndexType() {
+        return indexType;
+    }
+
+    /**
+     * Retrieves the maximum number of quads per draw call, which is also the number of quads the index buffer covers.
+     * @return The capacity, in quads.
+     */
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * Appends a quad to the batch, flushing first if the batch is full. Vertices are given in drawing order.
+     * @param x1 The first vertex's x-coordinate.
+     * @param y1 The first vertex's y-coordinate.
+     * @param u1 The first vertex's x texture coordinate.
+     * @param v1 The first vertex's y texture coordinate.
+     * @param x2 The second vertex's x-coordinate.
+     * @param y2 The second vertex's y-coordinate.
+     * @param u2 The second vertex's x texture coordinate.
+     * @param v2 The second vertex's y texture coordinate.
+     * @param x3 The third vertex's x-coordinate.
+     * @param y3 The third vertex's y-coordinate.
+     * @param u3 The third vertex's x texture coordinate.
+     * @param v3 The third vertex's y texture coordinate.
+     * @param x4 The fourth vertex's x-coordinate.
+     * @param y4 The fourth vertex's y-coordinate.
+     * @param u4 The fourth vertex's x texture coordinate.
+     * @param v4 The fourth vertex's y texture coordinate.
+     */
+    public void put(float x1, float y1, float u1, float v1,
+                    float x2, float y2, float u2, float v2,
+                    float x3, float y3, float u3, float v3,
+                    float x4, float y4, float u4, float v4) {
+        if (count == capacity)
+            flush();
+        vertices.put(x1).put(y1).put(u1).put(v1)
+                .put(x2).put(y2).put(u2).put(v2)
+                .put(x3).put(y3).put(u3).put(v3)
+                .put(x4).put(y4).put(u4).put(v4);
+        count++;
+    }
+
+    /**
+     * Checks whether the batch has no pending quads.
+     * @return Whether the batch is empty.
+     */
+    public boolean isEmpty() {
+        return count == 0;
+    }
+
+    /**
+     * Uploads all pending quads and draws them in a single call. Must be called on the GL thread.
+     */
+    public void flush() {
+        if (count == 0)
+            return;
+        vertices.flip();
+        if (stream != null) {
+            staging.limit(vertices.limit() * Float.BYTES);
+            int offset = stream.upload(staging);
+            staging.clear();
+            GL32.glDrawElementsBaseVertex(GL11.GL_TRIANGLES, count * INDICES_PER_QUAD, indexType, 0L,
+                    offset / BYTES_PER_VERTEX);
+        } else {
+            GL15.glBufferData(GL15.GL_ARRAY_BUFFER, vertices, GL15.GL_STREAM_DRAW);
+            GL11.glDrawElements(GL11.GL_TRIANGLES, count * INDICES_PER_QUAD, indexType, 0L);
+        }
+        vertices.clear();
+        count = 0;
+        drawCalls++;
+    }
+
+    /**
+     * Ends the current frame, letting the streaming buffer retire the segment written this frame.
+     */
+    public void endFrame() {
+        if (stream != null)
+            stream.endFrame();
+    }
+
+    /**
+     * Retrieves the number of draw calls issued since the last reset.
+     * @return The draw call count.
+     */
+    public int getDrawCalls() {
+        return drawCalls;
+    }
+
+    /**
+     * Resets the draw call counter.
+     */
+    public void resetDrawCalls() {
+        drawCalls = 0;
+    }
+
+}
@@ -0,0 +1,64 @@
+package io.github.phantamanta44.shlgl.graphics.render;
+
+import io.github.phantamanta44.shlgl.graphics.texture.TextureInfo;
+
+/**
+ * A destination that a render buffer's commands can be flushed into on the CPU, through
+ * {@link RenderBuffer#flush(RenderBackend)}, in place of OpenGL. The buffer resolves transformations, sprites and
+ * shapes itself, so a backend only receives textured quads in render coordinates along with the texture and colour
+ * modifier to draw them with.
+ * @author Evan Geng
+ */
+public interface RenderBackend {
+
+    /**
+     * Called before a buffer's commands are flushed into the backend.
+     */
+    default void beginFrame() {
+        // NO-OP
+    }
+
+    /**
+     * Sets the texture that following quads are drawn with.
+     * @param texture The texture, or <code>null</code> if no texture is bound.
+     */
+    void setTexture(TextureInfo texture);
+
+    /**
+     * Sets the colour modifier that following quads are drawn with.
+     * @param colour The red, green, blue and alpha components. The array is reused, so it must be copied if kept.
+     */
+    void setColour(float[] colour);
+
+    /**
+     * Draws a quad as the triangles 1-2-3 and 3-4-1, with vertices in render coordinates.
+     * @param x1 The first vertex's x-coordinate.
+     * @param y1 The first vertex's y-coordinate.
+     * @param u1 The first vertex's x texture coordinate.
+     * @param v1 The first vertex's y texture coordinate.
+     * @param x2 The second vertex's x-coordinate.
+     * @param y2 The second vertex's y-coordinate.
+     * @param u2 The second vertex's x texture coordinate.
+     * @param v2 The second vertex's y texture coordinate.
+     * @param x3 The third vertex's x-coordinate.
+     * @param y3 The third vertex's y-coordinate.
+     * @param u3 The third vertex's x texture coordinate.
+     * @param v3 The third vertex's y texture coordinate.
+     * @param x4 The fourth vertex's x-coordinate.
+     * @param y4 The fourth vertex's y-coordinate.
+     * @param u4 The fourth vertex's x texture coordinate.
+     * @param v4 The fourth vertex's y texture coordinate.
+     */
+    void drawQuad(float x1, float y1, float u1, float v1,
+                  float x2, float y2, float u2, float v2,
+                  float x3, float y3, float u3, float v3,
+                  float x4, float y4, float u4, float v4);
+
+    /**
+     * Called after a buffer's commands have been flushed into the backend.
+     */
+    default void endFrame() {
+        // NO-OP
+    }
+
+}
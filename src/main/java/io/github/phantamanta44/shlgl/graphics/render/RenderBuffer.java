@@ -1,16 +1,20 @@
 package io.github.phantamanta44.shlgl.graphics.render;
 
+import io.github.phantamanta44.shlgl.graphics.texture.AtlasRegion;
+import io.github.phantamanta44.shlgl.graphics.texture.TextureArray;
 import io.github.phantamanta44.shlgl.graphics.texture.TextureInfo;
 import io.github.phantamanta44.shlgl.graphics.texture.TextureManager;
-import io.github.phantamanta44.shlgl.util.collection.StackNode;
 import io.github.phantamanta44.shlgl.util.math.Matrix4F;
 import io.github.phantamanta44.shlgl.util.memory.Pooled;
 import org.lwjgl.opengl.GL11;
 import org.lwjgl.opengl.GL15;
-import sun.reflect.generics.reflectiveObjects.NotImplementedException;
+import org.lwjgl.opengl.GL32;
 
-import java.util.LinkedList;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * A graphics buffer containing instructions for rendering a frame.
@@ -24,9 +28,206 @@ public class RenderBuffer {
     private static final float PI_FLOAT = 3.14159265F;
 
     /**
-     * The queue of actions to run upon buffer flush.
+     * The identity matrix, uploaded as the kernel when transforming on the CPU.
      */
-    private final List<Runnable> actions;
+    private static final float[] IDENTITY = {
+            1F, 0F, 0F, 0F,
+            0F, 1F, 0F, 0F,
+            0F, 0F, 1F, 0F,
+            0F, 0F, 0F, 1F
+    };
+
+    /**
+     * The default maximum number of quads drawn per batch.
+     */
+    public static final int DEFAULT_BATCH_SIZE = 4096;
+
+    /**
+     * Opcode binding a texture. Operands: texture reference.
+     */
+    private static final int OP_BIND = 0;
+
+    /**
+     * Opcode drawing a quad in render coordinates. Operands: x1, y1, x2, y2, u1, v1, u2, v2.
+     */
+    private static final int OP_RECT = 1;
+
+    /**
+     * Opcode pushing the kernel to the stack. No operands.
+     */
+    private static final int OP_PUSH = 2;
+
+    /**
+     * Opcode popping the kernel from the stack. No operands.
+     */
+    private static final int OP_POP = 3;
+
+    /**
+     * Opcode translating the kernel. Operands: x, y.
+     */
+    private static final int OP_TRANSLATE = 4;
+
+    /**
+     * Opcode scaling the kernel. Operands: x, y.
+     */
+    private static final int OP_SCALE = 5;
+
+    /**
+     * Opcode rotating the kernel. Operands: sine, cosine, axis x, axis y.
+     */
+    private static final int OP_ROTATE = 6;
+
+    /**
+     * Opcode setting the colour modifier. Operands: r, g, b, a.
+     */
+    private static final int OP_COLOUR = 7;
+
+    /**
+     * Opcode setting the sort layer. Operands: layer (int).
+     */
+    private static final int OP_LAYER = 8;
+
+    /**
+     * Opcode setting the sort depth. Operands: depth (int).
+     */
+    private static final int OP_DEPTH = 9;
+
+    /**
+     * Opcode drawing an instanced sprite. Operands: x, y, width, height, u1, v1, u2, v2, rotation (radians), colour
+     * (int).
+     */
+    private static final int OP_SPRITE = 10;
+
+    /**
+     * Opcode binding an array texture. Operands: array texture reference.
+     */
+    private static final int OP_BIND_ARRAY = 11;
+
+    /**
+     * Opcode drawing a layer of the bound array texture as an instanced sprite. Operands: x, y, width, height,
+     * rotation (radians), layer, colour (int).
+     */
+    private static final int OP_FRAME = 12;
+
+    /**
+     * Opcode drawing a retained mesh. Operands: mesh reference.
+     */
+    private static final int OP_MESH = 13;
+
+    /**
+     * Opcode rendering a child buffer into a cached layer. Operands: layer reference, child buffer reference.
+     */
+    private static final int OP_LAYER_PASS = 14;
+
+    /**
+     * Opcode drawing a range of tile map chunks. Operands: tile map reference, first column, first row, last column,
+     * last row (floats).
+     */
+    private static final int OP_TILES = 15;
+
+    /**
+     * Opcode drawing an arbitrary quad. Operands: x, y, u, v of each of the four vertices.
+     */
+    private static final int OP_QUAD = 16;
+
+    /**
+     * Opcode compositing a cached layer's texture. Operands: texture reference, left, bottom, right, top.
+     */
+    private static final int OP_COMPOSITE = 17;
+
+    /**
+     * Opcode drawing a quad in render coordinates with texture coordinates in texels, normalized against the texture
+     * bound when the command runs. Operands: as {@link #OP_RECT}.
+     */
+    private static final int OP_RECT_TEXELS = 18;
+
+    /**
+     * Opcode drawing an arbitrary quad with texture coordinates in texels, normalized against the texture bound when
+     * the command runs. Operands: as {@link #OP_QUAD}.
+     */
+    private static final int OP_QUAD_TEXELS = 19;
+
+    /**
+     * The number of float operands of a rectangle command.
+     */
+    private static final int RECT_FLOATS = 8;
+
+    /**
+     * The number of float operands of a sprite command.
+     */
+    private static final int SPRITE_FLOATS = 9;
+
+    /**
+     * The number of float operands of a frame command.
+     */
+    private static final int FRAME_FLOATS = 6;
+
+    /**
+     * The number of integer operands of a tile map command.
+     */
+    private static final int TILES_INTS = 4;
+
+    /**
+     * The number of float operands of a quad command.
+     */
+    private static final int QUAD_FLOATS = 16;
+
+    /**
+     * The number of float operands of a composite command.
+     */
+    private static final int COMPOSITE_FLOATS = 4;
+
+    /**
+     * Flag set on a queued quad's parameter when its texture coordinates are in texels.
+     */
+    private static final int TEXEL_UVS = 1;
+
+    /**
+     * The largest length a polyline join may extend to, as a multiple of half the line's thickness.
+     */
+    private static final float MITER_LIMIT = 4F;
+
+    /**
+     * Map of segment counts to unit circle tessellations, stored as the cosine and sine of each point, with the first
+     * point repeated at the end.
+     */
+    private static final Map<Integer, float[]> circles = new ConcurrentHashMap<>();
+
+    /**
+     * The shader index used in sort keys for the default shader.
+     */
+    private static final int SHADER_DEFAULT = 0;
+
+    /**
+     * The shader index used in sort keys for the instanced sprite shader.
+     */
+    private static final int SHADER_INSTANCED = 1;
+
+    /**
+     * The shader index used in sort keys for the array texture shader.
+     */
+    private static final int SHADER_ARRAY = 2;
+
+    /**
+     * The shader index used in sort keys for retained meshes, which use the default shader but draw themselves.
+     */
+    private static final int SHADER_MESH = 3;
+
+    /**
+     * The shader index used in sort keys for tile maps, which use the default shader but draw themselves.
+     */
+    private static final int SHADER_TILES = 4;
+
+    /**
+     * The shader index used in sort keys for cached layer composites, which use the default shader but change the
+     * blend function.
+     */
+    private static final int SHADER_COMPOSITE = 5;
+
+    /**
+     * The stream of commands to decode upon buffer flush.
+     */
+    private final RenderCommandStream commands;
 
     /**
      * The vertex transformation kernel property.
@@ -43,15 +244,186 @@ public class RenderBuffer {
      */
     private final MarginHandler margins;
 
+    /**
+     * The batch that quads are accumulated into between state changes.
+     */
+    private final QuadBatch batch;
+
+    /**
+     * The batch that instanced sprites are accumulated into, or <code>null</code> if instancing is unavailable.
+     */
+    private final SpriteInstanceBatch instances;
+
+    /**
+     * Scratch storage for colour uploads.
+     */
+    private final float[] colourValues;
+
+    /**
+     * The texture most recently bound by this buffer, as seen at record time.
+     */
+    private TextureInfo recordBound;
+
+    /**
+     * The array texture most recently bound by this buffer, as seen at record time.
+     */
+    private TextureArray recordArray;
+
+    /**
+     * The buffer this buffer was forked from, or <code>null</code> if this is a root buffer.
+     */
+    private RenderBuffer parent;
+
+    /**
+     * The child buffers forked from this buffer, kept for reuse across frames.
+     */
+    private final List<RenderBuffer> forks;
+
+    /**
+     * The number of child buffers handed out since the last flush.
+     */
+    private int forkCount;
+
     /**
      * The transformation kernel.
      */
-    private Pooled<Matrix4F> kernel;
+    private final Pooled<Matrix4F> kernel;
+
+    /**
+     * Scratch matrix used when multiplying the kernel.
+     */
+    private final Pooled<Matrix4F> multiplier;
+
+    /**
+     * Whether the kernel is applied to vertices on the CPU instead of being uploaded.
+     */
+    private boolean cpuTransform;
+
+    /**
+     * The transformation kernel state stack, stored as consecutive row-major matrices.
+     */
+    private float[] kernelStack;
+
+    /**
+     * The number of kernels on the stack.
+     */
+    private int kernelDepth;
+
+    /**
+     * Whether draws are reordered by sort key before being drawn.
+     */
+    private boolean sorted;
+
+    /**
+     * The queue of resolved draws used when sorting.
+     */
+    private final DrawQueue drawQueue;
+
+    /**
+     * Whether the command stream is being resolved into the draw queue rather than drawn directly.
+     */
+    private boolean resolving;
+
+    /**
+     * Whether this buffer is drawn into a cached layer, which accumulates premultiplied alpha when blending.
+     */
+    private boolean inLayerPass;
+
+    /**
+     * Whether the kernel or colour changed since the last state snapshot was taken.
+     */
+    private boolean stateDirty;
+
+    /**
+     * The most recent state snapshot index while resolving.
+     */
+    private int resolveState;
+
+    /**
+     * The texture bound at the current point of resolution.
+     */
+    private TextureInfo resolveTex;
 
     /**
-     * The transformation kernel state stack.
+     * The array texture bound at the current point of resolution.
      */
-    private StackNode<float[]> kernelStack;
+    private TextureArray resolveArray;
+
+    /**
+     * The meshes queued while resolving, referred to by index from the draw queue.
+     */
+    private final List<RetainedMesh> resolveMeshes;
+
+    /**
+     * The tile maps queued while resolving, referred to by index from the draw queue.
+     */
+    private final List<TileMap> resolveTileMaps;
+
+    /**
+     * The cached layers whose renders were recorded into this buffer but haven't been drawn yet.
+     */
+    private final List<CachedLayer> pendingPasses;
+
+    /**
+     * The backend decoded quads are written into while baking or flushing on the CPU, or <code>null</code> if drawing
+     * through OpenGL.
+     */
+    private RenderBackend backend;
+
+    /**
+     * The texture most recently set on the backend, restored after drawing a retained mesh into it.
+     */
+    private TextureInfo backendTex;
+
+    /**
+     * Scratch storage for the colour of a tinted sprite drawn as a quad.
+     */
+    private final float[] tintValues;
+
+    /**
+     * Scratch storage for the operands of a quad whose texture coordinates are in texels.
+     */
+    private final float[] texelValues;
+
+    /**
+     * Scratch storage for the colour modifier while a kept draw of a mesh is drawn with its own.
+     */
+    private final float[] passColour;
+
+    /**
+     * Scratch storage for the join offsets of a polyline, grown as needed.
+     */
+    private float[] polylineOffsets = new float[16];
+
+    /**
+     * The number of draw calls issued for retained meshes and tile maps by the most recent flush.
+     */
+    private int meshDrawCalls;
+
+    /**
+     * The vertex array object to restore after drawing from a dedicated vertex buffer.
+     */
+    private int restoreVao;
+
+    /**
+     * The vertex buffer to restore after drawing from a dedicated vertex buffer.
+     */
+    private int restoreVbo;
+
+    /**
+     * The texture to restore after drawing from a dedicated vertex buffer, or <code>null</code> if none.
+     */
+    private TextureInfo restoreTex;
+
+    /**
+     * The sort layer at the current point of decoding.
+     */
+    private int layer;
+
+    /**
+     * The sort depth at the current point of decoding.
+     */
+    private int depth;
 
     /**
      * Creates a render buffer.
@@ -60,12 +432,271 @@ public class RenderBuffer {
      * @param margins The margin calculator.
      */
     public RenderBuffer(ShaderProperty.Mat4 trans, ShaderProperty.Vec4 colour, MarginHandler margins) {
-        this.actions = new LinkedList<>();
+        this(trans, colour, margins, DEFAULT_BATCH_SIZE);
+    }
+
+    /**
+     * Creates a render buffer without an OpenGL context, such as for tests and benchmarks on headless machines. It
+     * can only be flushed into a {@link RenderBackend}, and sprites are drawn as ordinary quads.
+     */
+    public RenderBuffer() {
+        this(null, null, null, (QuadBatch)null, null);
+    }
+
+    /**
+     * Creates a render buffer with the given batch size.
+     * @param trans The transformation kernel uniform.
+     * @param colour The colour modifier uniform.
+     * @param margins The margin calculator.
+     * @param batchSize The maximum number of quads drawn per batch.
+     */
+    public RenderBuffer(ShaderProperty.Mat4 trans, ShaderProperty.Vec4 colour, MarginHandler margins, int batchSize) {
+        this(trans, colour, margins, batchSize, null);
+    }
+
+    /**
+     * Creates a render buffer with the given batch size and instanced sprite batch.
+     * @param trans The transformation kernel uniform.
+     * @param colour The colour modifier uniform.
+     * @param margins The margin calculator.
+     * @param batchSize The maximum number of quads drawn per batch.
+     * @param instances The instanced sprite batch, or <code>null</code> to draw sprites as ordinary quads.
+     */
+    public RenderBuffer(ShaderProperty.Mat4 trans, ShaderProperty.Vec4 colour, MarginHandler margins, int batchSize,
+                        SpriteInstanceBatch instances) {
+        this(trans, colour, margins, new QuadBatch(batchSize), instances);
+    }
+
+    /**
+     * Creates a render buffer drawing through the given batches.
+     * @param trans The transformation kernel uniform.
+     * @param colour The colour modifier uniform.
+     * @param margins The margin calculator.
+     * @param batch The quad batch.
+     * @param instances The instanced sprite batch, or <code>null</code> to draw sprites as ordinary quads.
+     */
+    public RenderBuffer(ShaderProperty.Mat4 trans, ShaderProperty.Vec4 colour, MarginHandler margins, QuadBatch batch,
+                        SpriteInstanceBatch instances) {
+        this.commands = new RenderCommandStream();
         this.trans = trans;
         this.colour = colour;
         this.margins = margins;
+        this.batch = batch;
+        this.instances = instances;
+        this.colourValues = new float[] {1F, 1F, 1F, 1F};
+        this.tintValues = new float[4];
+        this.texelValues = new float[QUAD_FLOATS];
+        this.passColour = new float[4];
         this.kernel = Matrix4F.ident();
-        this.kernelStack = new StackNode<>();
+        this.multiplier = Matrix4F.zeroes();
+        this.kernelStack = new float[16 * 16];
+        this.kernelDepth = 0;
+        this.sorted = false;
+        this.drawQueue = new DrawQueue();
+        this.forks = new ArrayList<>();
+        this.resolveMeshes = new ArrayList<>();
+        this.resolveTileMaps = new ArrayList<>();
+        this.pendingPasses = new ArrayList<>();
+    }
+
+    /**
+     * Creates a child buffer that can record commands on another thread. A child only records; its commands are
+     * drawn once they are {@link #join(RenderBuffer) joined} back into this buffer. Children are reused between
+     * frames, so a child must not be used after this buffer is flushed. Must be called on the thread that owns this
+     * buffer.
+     * @return The child buffer.
+     */
+    public RenderBuffer fork() {
+        RenderBuffer child;
+        if (forkCount < forks.size()) {
+            child = forks.get(forkCount);
+        } else {
+            child = new RenderBuffer(trans, colour, margins, batch, instances);
+            child.parent = this;
+            forks.add(child);
+        }
+        forkCount++;
+        return child;
+    }
+
+    /**
+     * Appends a child buffer's commands to this buffer and empties the child. The child's commands are run with the
+     * state in effect at the point of joining; transformations made by the child are undone afterwards, while colour,
+     * layer and depth changes carry over. Children should be joined in a deterministic order, since that is the order
+     * they are drawn in. Must be called on the thread that owns this buffer, once the child is no longer being
+     * written to.
+     * @param child The child buffer.
+     */
+    public void join(RenderBuffer child) {
+        if (child.parent != this)
+            throw new IllegalArgumentException("Can only join buffers forked from this buffer!");
+        if (child.commands.isEmpty())
+            return;
+        commands.putInt(OP_PUSH);
+        commands.append(child.commands);
+        commands.putInt(OP_POP);
+        if (child.recordBound != null)
+            recordBound = child.recordBound;
+        if (child.recordArray != null)
+            recordArray = child.recordArray;
+        pendingPasses.addAll(child.pendingPasses);
+        child.pendingPasses.clear();
+        child.commands.clear();
+        child.recordBound = null;
+        child.recordArray = null;
+    }
+
+    /**
+     * Captures everything drawn into a child buffer as a retained mesh and empties the child, instead of joining it.
+     * The mesh's coordinates are relative to the transformation in effect wherever it is drawn. Textures and colours
+     * set by the child are captured too, while quads drawn before the child sets them use whatever is in effect at
+     * draw time. Quads drawn with texel coordinates need a texture bound in the child. Sprites are captured as ordinary
+     * quads, and array texture frames and retained meshes can't be captured. Tile maps and cached layers are kept as
+     * commands drawn between the mesh's quads, with the chunk range picked while recording; a cached layer that needs
+     * rendering is rendered when this buffer is drawn. Doesn't touch GL state, so it may be called on any thread that
+     * owns the buffers.
+     * @param child The child buffer.
+     * @return The mesh.
+     */
+    public RetainedMesh bake(RenderBuffer child) {
+        if (child.parent != this)
+            throw new IllegalArgumentException("Can only bake buffers forked from this buffer!");
+        RetainedMesh.Builder builder = new RetainedMesh.Builder();
+        child.backend = builder;
+        try {
+            child.decode();
+        } finally {
+            child.backend = null;
+            child.backendTex = null;
+            pendingPasses.addAll(child.pendingPasses);
+            child.pendingPasses.clear();
+            child.commands.clear();
+            child.recordBound = null;
+            child.recordArray = null;
+            child.kernelDepth = 0;
+            child.layer = child.depth = 0;
+            child.kernel.get().identity();
+        }
+        return builder.build();
+    }
+
+    /**
+     * Renders everything drawn into a child buffer into a cached layer's texture when this buffer is drawn, ahead of
+     * any later draws of the layer. The child is drawn in the layer's coordinates, starting from the identity
+     * transformation and a white colour modifier. Usually called through {@link CachedLayer#draw(RenderBuffer, float,
+     * float)} rather than directly. If this buffer is discarded without being drawn, the layer is invalidated.
+     * @param target The layer to render into.
+     * @param child The child buffer holding the layer's contents.
+     */
+    public void renderLayer(CachedLayer target, RenderBuffer child) {
+        if (child.parent != this)
+            throw new IllegalArgumentException("Can only render buffers forked from this buffer into layers!");
+        commands.putInt(OP_LAYER_PASS);
+        commands.putRef(target);
+        commands.putRef(child);
+        pendingPasses.add(target);
+    }
+
+    /**
+     * Draws a cached layer's texture stretched over a rectangle. When blending is enabled, the layer holds
+     * premultiplied alpha and is composited with <code>GL_ONE, GL_ONE_MINUS_SRC_ALPHA</code>. The bound texture is
+     * left as it was. Called through {@link CachedLayer#draw(RenderBuffer, float, float, float, float)}.
+     * @param layer The layer.
+     * @param x The rectangle's x-coordinate.
+     * @param y The rectangle's y-coordinate.
+     * @param width The rectangle's width.
+     * @param height The rectangle's height.
+     */
+    void drawLayer(CachedLayer layer, float x, float y, float width, float height) {
+        commands.putInt(OP_COMPOSITE);
+        commands.putRef(layer.getTexture());
+        commands.putFloat(x);
+        commands.putFloat(y);
+        commands.putFloat(x + width);
+        commands.putFloat(y + height);
+    }
+
+    /**
+     * Draws a retained mesh under the current transformation. Each run of the mesh costs a single draw call, with no
+     * vertex uploads. The bound texture and colour modifier are left as they were.
+     * @param mesh The mesh.
+     */
+    public void drawMesh(RetainedMesh mesh) {
+        commands.putInt(OP_MESH);
+        commands.putRef(mesh);
+    }
+
+    /**
+     * Draws a range of a tile map's chunks under the current transformation, one draw call per non-empty chunk.
+     * Usually called through {@link TileMap#draw(RenderBuffer, float, float)}, which picks the chunks in view.
+     * @param map The tile map.
+     * @param x1 The first chunk column, inclusive.
+     * @param y1 The first chunk row, inclusive.
+     * @param x2 The last chunk column, inclusive.
+     * @param y2 The last chunk row, inclusive.
+     */
+    public void drawTiles(TileMap map, int x1, int y1, int x2, int y2) {
+        commands.putInt(OP_TILES);
+        commands.putRef(map);
+        commands.putInt(x1);
+        commands.putInt(y1);
+        commands.putInt(x2);
+        commands.putInt(y2);
+    }
+
+    /**
+     * Sets whether the transformation kernel is applied to vertices on the CPU as they are batched. The shader's kernel
+     * then stays at the identity, so transformations no longer split batches. Disabled by default.
+     * @param cpuTransform Whether to transform vertices on the CPU.
+     */
+    public void setCpuTransform(boolean cpuTransform) {
+        this.cpuTransform = cpuTransform;
+    }
+
+    /**
+     * Checks whether the transformation kernel is applied on the CPU.
+     * @return Whether CPU transformation is enabled.
+     */
+    public boolean isCpuTransform() {
+        return cpuTransform;
+    }
+
+    /**
+     * Sets whether draws are reordered by a sort key of layer, shader, texture and depth before being drawn. Sorting
+     * merges draws sharing a texture into the same batch; draws with equal keys are still drawn in submission order.
+     * Disabled by default.
+     * @param sorted Whether to sort draws.
+     */
+    public void setSorted(boolean sorted) {
+        this.sorted = sorted;
+    }
+
+    /**
+     * Checks whether draws are reordered by sort key.
+     * @return Whether sorting is enabled.
+     */
+    public boolean isSorted() {
+        return sorted;
+    }
+
+    /**
+     * Sets the layer of subsequent draws. When sorting, lower layers are always drawn before higher ones. Layers are
+     * clamped to the range of a short.
+     * @param layer The layer.
+     */
+    public void setLayer(int layer) {
+        commands.putInt(OP_LAYER);
+        commands.putInt(layer);
+    }
+
+    /**
+     * Sets the depth of subsequent draws. When sorting, draws in the same layer with the same texture are ordered
+     * by ascending depth. Depths are clamped to the range [0, 65535].
+     * @param depth The depth.
+     */
+    public void setDepth(int depth) {
+        commands.putInt(OP_DEPTH);
+        commands.putInt(depth);
     }
 
     /**
@@ -73,11 +704,16 @@ public class RenderBuffer {
      * @param tex The texture.
      */
     public void bind(TextureInfo tex) {
-        buffer(() -> TextureManager.bind(tex));
+        if (tex == recordBound)
+            return;
+        recordBound = tex;
+        commands.putInt(OP_BIND);
+        commands.putRef(tex);
     }
 
     /**
-     * Draws a textured rectangle.
+     * Draws a textured rectangle. The texel coordinates are converted against whichever texture is bound when the
+     * rectangle is drawn, so they work the same in forked buffers.
      * @param x The rectangle's x-coordinate.
      * @param y The rectangle's y-coordinate.
      * @param width The rectangle's width.
@@ -87,46 +723,166 @@ public class RenderBuffer {
      * @param texW The texture width.
      * @param texH The texture height.
      */
-    public void drawRect(float x, float y, float width, float height, float u, float v, float texW, float texH) {
-        float a = TextureManager.getBound().w, b = TextureManager.getBound().h;
-        float u1 = u / a, v1 = v / a;
-        float u2 = (u + texW) / a, v2 = (v + texH) / b;
-        float x1 = margins.computeX(x), y1 = margins.computeY(y);
-        float x2 = margins.computeX(x + width), y2 = margins.computeY(y + height);
-        buffer(() -> {
-            GL15.glBufferData(GL15.GL_ARRAY_BUFFER, new float[]{
-                    x2, y1, u2, v1,
-                    x1, y1, u1, v1,
-                    x2, y2, u2, v2,
-                    x1, y2, u1, v2
-            }, GL15.GL_STREAM_DRAW);
-            GL11.glDrawArrays(GL11.GL_QUADS, 0, 4);
-        });
+    public void drawRect(float x, float y, float width, float height, float u, float v, float texW, float texH) {
+        putRect(OP_RECT_TEXELS, x, y, width, height, u, v, u + texW, v + texH);
+    }
+
+    /**
+     * Draws a textured rectangle, assuming the entire texture is used.
+     * @param x The rectangle's x-coordinate.
+     * @param y The rectangle's y-coordinate.
+     * @param width The rectangle's width.
+     * @param height The rectangle's height.
+     */
+    public void drawRect(float x, float y, float width, float height) {
+        putRect(OP_RECT, x, y, width, height, 0F, 0F, 1F, 1F);
+    }
+
+    /**
+     * Draws an atlas region as a rectangle, binding its atlas page if it isn't already bound.
+     * @param region The atlas region.
+     * @param x The rectangle's x-coordinate.
+     * @param y The rectangle's y-coordinate.
+     * @param width The rectangle's width.
+     * @param height The rectangle's height.
+     */
+    public void drawRegion(AtlasRegion region, float x, float y, float width, float height) {
+        bind(region.page);
+        putRect(OP_RECT, x, y, width, height, region.u1, region.v1, region.u2, region.v2);
+    }
+
+    /**
+     * Draws an atlas region as a rectangle at its native size.
+     * @param region The atlas region.
+     * @param x The rectangle's x-coordinate.
+     * @param y The rectangle's y-coordinate.
+     */
+    public void drawRegion(AtlasRegion region, float x, float y) {
+        drawRegion(region, x, y, region.w, region.h);
+    }
+
+    /**
+     * Draws a sprite through the instanced path, where each sprite costs a single attribute record. On every path, the
+     * sprite is drawn with the colour modifier multiplied by the sprite's colour. Headless buffers and buffers flushed
+     * into a {@link RenderBackend} draw sprites as ordinary quads, and each tinted sprite then costs a draw of its own.
+     * @param x The sprite's x-coordinate.
+     * @param y The sprite's y-coordinate.
+     * @param width The sprite's width.
+     * @param height The sprite's height.
+     * @param u1 The left texture coordinate, normalized.
+     * @param v1 The bottom texture coordinate, normalized.
+     * @param u2 The right texture coordinate, normalized.
+     * @param v2 The top texture coordinate, normalized.
+     * @param degrees The rotation about the sprite's centre, in degrees.
+     * @param rgba The sprite's colour, packed as 0xRRGGBBAA.
+     */
+    public void drawSprite(float x, float y, float width, float height,
+                           float u1, float v1, float u2, float v2, float degrees, int rgba) {
+        commands.putInt(OP_SPRITE);
+        commands.putFloat(x);
+        commands.putFloat(y);
+        commands.putFloat(width);
+        commands.putFloat(height);
+        commands.putFloat(u1);
+        commands.putFloat(v1);
+        commands.putFloat(u2);
+        commands.putFloat(v2);
+        commands.putFloat(degrees * PI_FLOAT / 180F);
+        commands.putInt(rgba);
+    }
+
+    /**
+     * Draws an atlas region through the instanced sprite path.
+     * @param region The atlas region.
+     * @param x The sprite's x-coordinate.
+     * @param y The sprite's y-coordinate.
+     * @param width The sprite's width.
+     * @param height The sprite's height.
+     * @param degrees The rotation about the sprite's centre, in degrees.
+     * @param rgba The sprite's colour, packed as 0xRRGGBBAA.
+     */
+    public void drawSprite(AtlasRegion region, float x, float y, float width, float height, float degrees, int rgba) {
+        bind(region.page);
+        drawSprite(x, y, width, height, region.u1, region.v1, region.u2, region.v2, degrees, rgba);
+    }
+
+    /**
+     * Binds an array texture for frames to be drawn from. Array textures are bound separately from ordinary
+     * textures, so this doesn't affect other draws.
+     * @param array The array texture.
+     */
+    public void bindArray(TextureArray array) {
+        if (array == recordArray)
+            return;
+        recordArray = array;
+        commands.putInt(OP_BIND_ARRAY);
+        commands.putRef(array);
+    }
+
+    /**
+     * Draws a layer of the bound array texture, such as a tile or an animation frame, through the instanced sprite
+     * path. Switching frames costs no texture rebinds. Requires instancing support.
+     * @param x The sprite's x-coordinate.
+     * @param y The sprite's y-coordinate.
+     * @param width The sprite's width.
+     * @param height The sprite's height.
+     * @param layer The array layer.
+     * @param degrees The rotation about the sprite's centre, in degrees.
+     * @param rgba The sprite's colour, packed as 0xRRGGBBAA.
+     */
+    public void drawFrame(float x, float y, float width, float height, int layer, float degrees, int rgba) {
+        if (instances == null || !instances.supportsArrays())
+            throw new IllegalStateException("Array textures are unsupported!");
+        commands.putInt(OP_FRAME);
+        commands.putFloat(x);
+        commands.putFloat(y);
+        commands.putFloat(width);
+        commands.putFloat(height);
+        commands.putFloat(degrees * PI_FLOAT / 180F);
+        commands.putFloat(layer);
+        commands.putInt(rgba);
     }
 
     /**
-     * Draws a textured rectangle, assuming the entire texture is used.
+     * Draws a layer of an array texture at its native size, binding the array texture if it isn't already bound.
+     * @param array The array texture.
+     * @param layer The array layer.
+     * @param x The sprite's x-coordinate.
+     * @param y The sprite's y-coordinate.
+     */
+    public void drawFrame(TextureArray array, int layer, float x, float y) {
+        bindArray(array);
+        drawFrame(x, y, array.getWidth(), array.getHeight(), layer, 0F, 0xFFFFFFFF);
+    }
+
+    /**
+     * Writes a rectangle command.
+     * @param op The opcode, {@link #OP_RECT} for normalized texture coordinates or {@link #OP_RECT_TEXELS} for texels.
      * @param x The rectangle's x-coordinate.
      * @param y The rectangle's y-coordinate.
      * @param width The rectangle's width.
      * @param height The rectangle's height.
+     * @param u1 The left texture coordinate.
+     * @param v1 The bottom texture coordinate.
+     * @param u2 The right texture coordinate.
+     * @param v2 The top texture coordinate.
      */
-    public void drawRect(float x, float y, float width, float height) {
-        float x1 = margins.computeX(x), y1 = margins.computeY(y);
-        float x2 = margins.computeX(x + width), y2 = margins.computeY(y + height);
-        buffer(() -> {
-            GL15.glBufferData(GL15.GL_ARRAY_BUFFER, new float[]{
-                    x1, y1, 0F, 0F,
-                    x2, y1, 1F, 0F,
-                    x2, y2, 1F, 1F,
-                    x1, y2, 0F, 1F
-            }, GL15.GL_STREAM_DRAW);
-            GL11.glDrawArrays(GL11.GL_QUADS, 0, 4);
-        });
+    private void putRect(int op, float x, float y, float width, float height,
+                         float u1, float v1, float u2, float v2) {
+        commands.putInt(op);
+        commands.putFloat(x);
+        commands.putFloat(y);
+        commands.putFloat(x + width);
+        commands.putFloat(y + height);
+        commands.putFloat(u1);
+        commands.putFloat(v1);
+        commands.putFloat(u2);
+        commands.putFloat(v2);
     }
 
     /**
-     * Draws a textured line.
+     * Draws a textured line as a quad along the segment from A to B. The texture's x-axis runs along the line. The
+     * texel coordinates are converted against whichever texture is bound when the line is drawn.
      * @param x Point A's x-coordinate.
      * @param y Point A's y-coordinate.
      * @param x2 Point B's x-coordinate.
@@ -138,7 +894,7 @@ public class RenderBuffer {
      * @param texH The texture height.
      */
     public void drawLine(float x, float y, float x2, float y2, float width, float u, float v, float texW, float texH) {
-        throw new NotImplementedException(); // TODO Implement
+        putLine(OP_QUAD_TEXELS, x, y, x2, y2, width, u, v, u + texW, v + texH);
     }
 
     /**
@@ -150,26 +906,257 @@ public class RenderBuffer {
      * @param width The thickness of the line.
      */
     public void drawLine(float x, float y, float x2, float y2, float width) {
-        throw new NotImplementedException(); // TODO Implement
+        putLine(OP_QUAD, x, y, x2, y2, width, 0F, 0F, 1F, 1F);
+    }
+
+    /**
+     * Records a line as a quad.
+     * @param op The opcode, {@link #OP_QUAD} for normalized texture coordinates or {@link #OP_QUAD_TEXELS} for texels.
+     * @param x Point A's x-coordinate.
+     * @param y Point A's y-coordinate.
+     * @param x2 Point B's x-coordinate.
+     * @param y2 Point B's y-coordinate.
+     * @param width The thickness of the line.
+     * @param u1 The texture coordinate at point A.
+     * @param v1 The texture coordinate on the line's right side.
+     * @param u2 The texture coordinate at point B.
+     * @param v2 The texture coordinate on the line's left side.
+     */
+    private void putLine(int op, float x, float y, float x2, float y2, float width,
+                         float u1, float v1, float u2, float v2) {
+        float dx = x2 - x, dy = y2 - y;
+        float length = (float)Math.sqrt(dx * dx + dy * dy);
+        if (length == 0F)
+            return;
+        float nx = -dy / length * width / 2F, ny = dx / length * width / 2F;
+        putFreeQuad(op,
+                x - nx, y - ny, u1, v1,
+                x2 - nx, y2 - ny, u2, v1,
+                x2 + nx, y2 + ny, u2, v2,
+                x + nx, y + ny, u1, v2
+        );
+    }
+
+    /**
+     * Draws a thick line through a sequence of points, with mitered joins so that consecutive segments meet without
+     * gaps. Very sharp joins are clipped. Each segment spans the whole bound texture.
+     * @param points The points' coordinates, as x, y pairs.
+     * @param width The thickness of the line.
+     * @param closed Whether to join the last point back to the first.
+     */
+    public void drawPolyline(float[] points, float width, boolean closed) {
+        int count = points.length / 2;
+        if (count < 2)
+            return;
+        if (polylineOffsets.length < count * 2)
+            polylineOffsets = new float[Math.max(count * 2, polylineOffsets.length * 2)];
+        float[] offsets = polylineOffsets;
+        float half = width / 2F;
+        for (int i = 0; i < count; i++) {
+            boolean hasPrev = closed || i > 0, hasNext = closed || i < count - 1;
+            int prev = (i + count - 1) % count, next = (i + 1) % count;
+            float n1x = 0F, n1y = 0F, n2x = 0F, n2y = 0F;
+            if (hasPrev) {
+                float dx = points[i * 2] - points[prev * 2], dy = points[i * 2 + 1] - points[prev * 2 + 1];
+                float length = (float)Math.sqrt(dx * dx + dy * dy);
+                if (length != 0F) {
+                    n1x = -dy / length;
+                    n1y = dx / length;
+                }
+            }
+            if (hasNext) {
+                float dx = points[next * 2] - points[i * 2], dy = points[next * 2 + 1] - points[i * 2 + 1];
+                float length = (float)Math.sqrt(dx * dx + dy * dy);
+                if (length != 0F) {
+                    n2x = -dy / length;
+                    n2y = dx / length;
+                }
+            }
+            float mx = n1x + n2x, my = n1y + n2y;
+            float mLength = (float)Math.sqrt(mx * mx + my * my);
+            if (mLength < 1E-6F) {
+                offsets[i * 2] = n2x * half;
+                offsets[i * 2 + 1] = n2y * half;
+                continue;
+            }
+            mx /= mLength;
+            my /= mLength;
+            float along = hasPrev ? mx * n1x + my * n1y : mx * n2x + my * n2y;
+            float scale = half / Math.max(along, 1F / MITER_LIMIT);
+            offsets[i * 2] = mx * scale;
+            offsets[i * 2 + 1] = my * scale;
+        }
+        for (int i = 0, segments = closed ? count : count - 1; i < segments; i++) {
+            int j = (i + 1) % count;
+            float ax = points[i * 2], ay = points[i * 2 + 1], bx = points[j * 2], by = points[j * 2 + 1];
+            float aox = offsets[i * 2], aoy = offsets[i * 2 + 1], box = offsets[j * 2], boy = offsets[j * 2 + 1];
+            putFreeQuad(OP_QUAD,
+                    ax - aox, ay - aoy, 0F, 0F,
+                    bx - box, by - boy, 1F, 0F,
+                    bx + box, by + boy, 1F, 1F,
+                    ax + aox, ay + aoy, 0F, 1F
+            );
+        }
+    }
+
+    /**
+     * Draws a filled convex polygon as a fan of triangles, packed two to a quad. The bound texture is stretched over
+     * the polygon's bounding box.
+     * @param points The vertices' coordinates, as x, y pairs, in order around the polygon.
+     */
+    public void drawPolygon(float[] points) {
+        int count = points.length / 2;
+        if (count < 3)
+            return;
+        float minX = points[0], minY = points[1], maxX = minX, maxY = minY;
+        for (int i = 1; i < count; i++) {
+            minX = Math.min(minX, points[i * 2]);
+            maxX = Math.max(maxX, points[i * 2]);
+            minY = Math.min(minY, points[i * 2 + 1]);
+            maxY = Math.max(maxY, points[i * 2 + 1]);
+        }
+        float sx = maxX > minX ? 1F / (maxX - minX) : 0F, sy = maxY > minY ? 1F / (maxY - minY) : 0F;
+        float cx = points[0], cy = points[1];
+        float cu = (cx - minX) * sx, cv = (cy - minY) * sy;
+        for (int i = 1; i < count - 1; i += 2) {
+            int j = i + 1, k = Math.min(i + 2, count - 1);
+            float x1 = points[i * 2], y1 = points[i * 2 + 1];
+            float x2 = points[j * 2], y2 = points[j * 2 + 1];
+            float x3 = points[k * 2], y3 = points[k * 2 + 1];
+            putFreeQuad(OP_QUAD,
+                    cx, cy, cu, cv,
+                    x1, y1, (x1 - minX) * sx, (y1 - minY) * sy,
+                    x2, y2, (x2 - minX) * sx, (y2 - minY) * sy,
+                    x3, y3, (x3 - minX) * sx, (y3 - minY) * sy
+            );
+        }
+    }
+
+    /**
+     * Draws a filled circle as a fan of triangles, packed two to a quad. The bound texture is stretched over the
+     * circle's bounding box.
+     * @param x The centre's x-coordinate.
+     * @param y The centre's y-coordinate.
+     * @param radius The circle's radius.
+     * @param segments The number of segments approximating the circle.
+     */
+    public void drawCircle(float x, float y, float radius, int segments) {
+        float[] circle = unitCircle(segments);
+        for (int i = 0; i < segments; i += 2) {
+            int j = i + 1, k = Math.min(i + 2, segments);
+            putFreeQuad(OP_QUAD,
+                    x, y, 0.5F, 0.5F,
+                    x + circle[i * 2] * radius, y + circle[i * 2 + 1] * radius,
+                    0.5F + circle[i * 2] / 2F, 0.5F + circle[i * 2 + 1] / 2F,
+                    x + circle[j * 2] * radius, y + circle[j * 2 + 1] * radius,
+                    0.5F + circle[j * 2] / 2F, 0.5F + circle[j * 2 + 1] / 2F,
+                    x + circle[k * 2] * radius, y + circle[k * 2 + 1] * radius,
+                    0.5F + circle[k * 2] / 2F, 0.5F + circle[k * 2 + 1] / 2F
+            );
+        }
+    }
+
+    /**
+     * Draws the outline of a circle as a ring of quads. The texture's x-axis runs around the ring.
+     * @param x The centre's x-coordinate.
+     * @param y The centre's y-coordinate.
+     * @param radius The radius at the middle of the outline.
+     * @param width The thickness of the outline.
+     * @param segments The number of segments approximating the circle.
+     */
+    public void drawCircleOutline(float x, float y, float radius, float width, int segments) {
+        float[] circle = unitCircle(segments);
+        float inner = radius - width / 2F, outer = radius + width / 2F;
+        for (int i = 0; i < segments; i++) {
+            float c1 = circle[i * 2], s1 = circle[i * 2 + 1], c2 = circle[i * 2 + 2], s2 = circle[i * 2 + 3];
+            float u1 = (float)i / segments, u2 = (float)(i + 1) / segments;
+            putFreeQuad(OP_QUAD,
+                    x + c1 * inner, y + s1 * inner, u1, 0F,
+                    x + c2 * inner, y + s2 * inner, u2, 0F,
+                    x + c2 * outer, y + s2 * outer, u2, 1F,
+                    x + c1 * outer, y + s1 * outer, u1, 1F
+            );
+        }
+    }
+
+    /**
+     * Retrieves the unit circle tessellation for a segment count, computing it the first time.
+     * @param segments The number of segments.
+     * @return The cosine and sine of each point, with the first point repeated at the end.
+     */
+    private static float[] unitCircle(int segments) {
+        if (segments < 3)
+            throw new IllegalArgumentException("A circle needs at least three segments!");
+        return circles.computeIfAbsent(segments, n -> {
+            float[] circle = new float[(n + 1) * 2];
+            for (int i = 0; i < n; i++) {
+                double angle = 2D * Math.PI * i / n;
+                circle[i * 2] = (float)Math.cos(angle);
+                circle[i * 2 + 1] = (float)Math.sin(angle);
+            }
+            circle[n * 2] = circle[0];
+            circle[n * 2 + 1] = circle[1];
+            return circle;
+        });
+    }
+
+    /**
+     * Records an arbitrary quad, drawn as the triangles 1-2-3 and 3-4-1. A triangle can be drawn by repeating its last
+     * vertex.
+     * @param op The opcode, {@link #OP_QUAD} for normalized texture coordinates or {@link #OP_QUAD_TEXELS} for texels.
+     * @param x1 The first vertex's x-coordinate.
+     * @param y1 The first vertex's y-coordinate.
+     * @param u1 The first vertex's x texture coordinate.
+     * @param v1 The first vertex's y texture coordinate.
+     * @param x2 The second vertex's x-coordinate.
+     * @param y2 The second vertex's y-coordinate.
+     * @param u2 The second vertex's x texture coordinate.
+     * @param v2 The second vertex's y texture coordinate.
+     * @param x3 The third vertex's x-coordinate.
+     * @param y3 The third vertex's y-coordinate.
+     * @param u3 The third vertex's x texture coordinate.
+     * @param v3 The third vertex's y texture coordinate.
+     * @param x4 The fourth vertex's x-coordinate.
+     * @param y4 The fourth vertex's y-coordinate.
+     * @param u4 The fourth vertex's x texture coordinate.
+     * @param v4 The fourth vertex's y texture coordinate.
+     */
+    private void putFreeQuad(int op,
+                             float x1, float y1, float u1, float v1,
+                             float x2, float y2, float u2, float v2,
+                             float x3, float y3, float u3, float v3,
+                             float x4, float y4, float u4, float v4) {
+        commands.putInt(op);
+        commands.putFloat(x1);
+        commands.putFloat(y1);
+        commands.putFloat(u1);
+        commands.putFloat(v1);
+        commands.putFloat(x2);
+        commands.putFloat(y2);
+        commands.putFloat(u2);
+        commands.putFloat(v2);
+        commands.putFloat(x3);
+        commands.putFloat(y3);
+        commands.putFloat(u3);
+        commands.putFloat(v3);
+        commands.putFloat(x4);
+        commands.putFloat(y4);
+        commands.putFloat(u4);
+        commands.putFloat(v4);
     }
 
     /**
      * Pushes the current transformation kernel to the stack, storing its state.
      */
     public void pushMatrix() {
-        buffer(() -> kernelStack = kernelStack.extend(kernel.get().asArray()));
+        commands.putInt(OP_PUSH);
     }
 
     /**
      * Pops the topmost element of the transformation kernel stack and restores the stored state.
      */
     public void popMatrix() {
-        buffer(() -> {
-            if (kernelStack.hasParent()) {
-                kernel.get().readArray(kernelStack.getValue());
-                kernelStack = kernelStack.getParent();
-            }
-        });
+        commands.putInt(OP_POP);
     }
 
     /**
@@ -178,12 +1165,9 @@ public class RenderBuffer {
      * @param y The vertical scaling factor.
      */
     public void scale(float x, float y) {
-        multiply(
-                x, 0F, 0F, 0F,
-                0F, y, 0F, 0F,
-                0F, 0F, 1F, 0F,
-                0F, 0F, 0F, 1F
-        );
+        commands.putInt(OP_SCALE);
+        commands.putFloat(x);
+        commands.putFloat(y);
     }
 
     /**
@@ -192,12 +1176,9 @@ public class RenderBuffer {
      * @param y The y offset.
      */
     public void translate(float x, float y) {
-        multiply(
-                1F, 0F, 0F, x,
-                0F, 1F, 0F, y,
-                0F, 0F, 1F, 0F,
-                0F, 0F, 0F, 1F
-        );
+        commands.putInt(OP_TRANSLATE);
+        commands.putFloat(x);
+        commands.putFloat(y);
     }
 
     /**
@@ -208,26 +1189,11 @@ public class RenderBuffer {
      */
     public void rotate(float degrees, float x, float y) {
         float radians = degrees * PI_FLOAT / 180F;
-        float sin = (float)Math.sin(radians), cos = (float)Math.cos(radians);
-        multiply(
-                x * x * (1F - cos) + cos, y * x * (1F - cos), y * sin, 0F,
-                x * y * (1F - cos), y * y * (1F - cos) + cos, -x * sin, 0F,
-                -y * sin, x * sin, cos, 0F,
-                0F, 0F, 0F, 1F
-        );
-    }
-
-    /**
-     * Multiplies the transformation kernel by the given matrix.
-     * @param values The values of the multiplier matrix.
-     */
-    private void multiply(float... values) {
-        buffer(() -> {
-            try (Pooled<Matrix4F> mat = Matrix4F.of(values)) {
-                kernel.get().multiply(mat.get());
-            }
-            trans.set(kernel.get().asArray());
-        });
+        commands.putInt(OP_ROTATE);
+        commands.putFloat((float)Math.sin(radians));
+        commands.putFloat((float)Math.cos(radians));
+        commands.putFloat(x);
+        commands.putFloat(y);
     }
 
     /**
@@ -238,26 +1204,1049 @@ public class RenderBuffer {
      * @param a The alpha component.
      */
     public void colour4F(float r, float g, float b, float a) {
-        buffer(() -> colour.set(r, g, b, a));
+        commands.putInt(OP_COLOUR);
+        commands.putFloat(r);
+        commands.putFloat(g);
+        commands.putFloat(b);
+        commands.putFloat(a);
     }
 
     /**
-     * Buffers an action for the next render tick.
-     * @param action The action to buffer.
+     * Decodes and runs all the buffered commands.
      */
-    private void buffer(Runnable action) {
-        actions.add(action);
+    public void flush() {
+        if (parent != null)
+            throw new IllegalStateException("Forked render buffers must be joined, not flushed!");
+        if (batch == null)
+            throw new IllegalStateException("Render buffer has no OpenGL context to flush into!");
+        batch.resetDrawCalls();
+        if (instances != null)
+            instances.resetDrawCalls();
+        meshDrawCalls = 0;
+        draw();
+        batch.endFrame();
+        pendingPasses.clear();
+        commands.clear();
+        recordBound = null;
+        recordArray = null;
+        for (int i = 0; i < forkCount; i++)
+            forks.get(i).discard();
+        forkCount = 0;
     }
 
     /**
-     * Runs all the buffered actions.
+     * Writes the buffered commands into a backend on the CPU instead of drawing them through OpenGL, then clears the
+     * buffer as {@link #flush()} does. Draws are written in the order they were recorded, even if the buffer is sorted.
+     * Retained meshes that haven't been uploaded are written quad by quad, cached layers are skipped and invalidated,
+     * and tile maps and array texture frames aren't supported. Doesn't touch GL state, so it may be called on any
+     * thread that owns the buffer.
+     * @param target The backend.
      */
-    public void flush() {
+    public void flush(RenderBackend target) {
+        if (parent != null)
+            throw new IllegalStateException("Forked render buffers must be joined, not flushed!");
+        backend = target;
+        try {
+            Arrays.fill(colourValues, 1F);
+            backendTex = null;
+            target.beginFrame();
+            target.setTexture(null);
+            target.setColour(colourValues);
+            decode();
+            target.endFrame();
+        } finally {
+            backend = null;
+            backendTex = null;
+            kernelDepth = 0;
+            layer = depth = 0;
+            kernel.get().identity();
+            pendingPasses.clear();
+            commands.clear();
+            recordBound = null;
+            recordArray = null;
+            for (int i = 0; i < forkCount; i++)
+                forks.get(i).discard();
+            forkCount = 0;
+        }
+    }
+
+    /**
+     * Draws the buffered commands into the bound framebuffer, then resets the decoding state.
+     */
+    private void draw() {
+        if (cpuTransform)
+            trans.set(IDENTITY);
+        else
+            uploadKernel();
+        if (sorted) {
+            resolving = true;
+            resolveTex = TextureManager.getBound();
+            resolveArray = TextureManager.getBoundArray();
+            resolveState = drawQueue.pushState(kernel.get().asArray(), colourValues);
+            stateDirty = false;
+            decode();
+            resolving = false;
+            drawSorted();
+            drawQueue.clear();
+            resolveMeshes.clear();
+            resolveTileMaps.clear();
+            resolveTex = null;
+            resolveArray = null;
+        } else {
+            decode();
+        }
+        flushBatches();
+        kernelDepth = 0;
+        layer = depth = 0;
+        kernel.get().identity();
+    }
+
+    /**
+     * Discards anything recorded into this buffer and its children without drawing it. Does not touch GL state, so
+     * it may be called on any thread that owns the buffer.
+     */
+    public void discard() {
+        for (CachedLayer pass : pendingPasses)
+            pass.invalidate();
+        pendingPasses.clear();
+        commands.clear();
+        recordBound = null;
+        recordArray = null;
+        for (int i = 0; i < forkCount; i++)
+            forks.get(i).discard();
+        forkCount = 0;
+    }
+
+    /**
+     * Decodes the command stream, either drawing directly or resolving draws into the draw queue.
+     */
+    private void decode() {
+        commands.rewind();
+        while (commands.hasRemaining()) {
+            switch (commands.nextInt()) {
+                case OP_BIND:
+                    execBind(commands.nextRef());
+                    break;
+                case OP_RECT:
+                    execRect(false);
+                    break;
+                case OP_RECT_TEXELS:
+                    execRect(true);
+                    break;
+                case OP_QUAD:
+                    execQuad(false);
+                    break;
+                case OP_QUAD_TEXELS:
+                    execQuad(true);
+                    break;
+                case OP_SPRITE:
+                    execSprite();
+                    break;
+                case OP_BIND_ARRAY:
+                    execBindArray(commands.nextRef());
+                    break;
+                case OP_FRAME:
+                    execFrame();
+                    break;
+                case OP_MESH:
+                    execMesh(commands.nextRef());
+                    break;
+                case OP_LAYER_PASS:
+                    execLayerPass(commands.nextRef(), commands.nextRef());
+                    break;
+                case OP_TILES:
+                    execTiles(commands.nextRef());
+                    break;
+                case OP_COMPOSITE:
+                    execComposite(commands.nextRef());
+                    break;
+                case OP_PUSH:
+                    execPush();
+                    break;
+                case OP_POP:
+                    execPop();
+                    break;
+                case OP_TRANSLATE:
+                    execTranslate(commands.nextFloat(), commands.nextFloat());
+                    break;
+                case OP_SCALE:
+                    execScale(commands.nextFloat(), commands.nextFloat());
+                    break;
+                case OP_ROTATE:
+                    execRotate(commands.nextFloat(), commands.nextFloat(), commands.nextFloat(), commands.nextFloat());
+                    break;
+                case OP_COLOUR:
+                    execColour(commands.nextFloat(), commands.nextFloat(), commands.nextFloat(), commands.nextFloat());
+                    break;
+                case OP_LAYER:
+                    layer = commands.nextInt();
+                    break;
+                case OP_DEPTH:
+                    depth = commands.nextInt();
+                    break;
+                default:
+                    throw new IllegalStateException("Corrupt render command stream!");
+            }
+        }
+    }
+
+    /**
+     * Sorts the resolved draws and draws them, changing state only where consecutive draws differ.
+     */
+    private void drawSorted() {
+        drawQueue.sort();
+        TextureInfo tex = TextureManager.getBound();
+        TextureInfo array = TextureManager.getBoundArray();
+        int state = -1;
+        float[] k = kernel.get().asArray();
+        for (int i = 0; i < drawQueue.size(); i++) {
+            int draw = drawQueue.drawAt(i);
+            int shader = (int)(drawQueue.keyAt(i) >>> 40 & 0xFF);
+            TextureInfo drawTex = drawQueue.textureOf(draw);
+            if (shader == SHADER_ARRAY) {
+                if (drawTex != array && drawTex != null) {
+                    instances.flush();
+                    TextureManager.bindArray((TextureArray)drawTex);
+                    array = drawTex;
+                }
+            } else if (drawTex != tex && drawTex != null) {
+                flushBatches();
+                TextureManager.bind(drawTex);
+                tex = drawTex;
+            }
+            int drawState = drawQueue.stateOf(draw);
+            if (drawState != state) {
+                boolean colourSplit = state == -1 || !drawQueue.colourEquals(state, drawState);
+                boolean kernelSplit = state == -1 || !drawQueue.kernelEquals(state, drawState);
+                if (colourSplit || (kernelSplit && !cpuTransform))
+                    batch.flush();
+                if ((kernelSplit || colourSplit) && instances != null)
+                    instances.flush();
+                drawQueue.readState(drawState, k, colourValues);
+                if (kernelSplit && !cpuTransform)
+                    uploadKernel();
+                if (colourSplit)
+                    colour.set(colourValues);
+                state = drawState;
+            }
+            int offset = drawQueue.offsetOf(draw);
+            if (shader == SHADER_MESH) {
+                drawRetained(resolveMeshes.get(drawQueue.paramOf(draw)));
+            } else if (shader == SHADER_COMPOSITE) {
+                drawComposite(drawTex, commands.floatAt(offset), commands.floatAt(offset + 1),
+                        commands.floatAt(offset + 2), commands.floatAt(offset + 3));
+            } else if (shader == SHADER_TILES) {
+                drawTileChunks(resolveTileMaps.get(drawQueue.paramOf(draw)), commands.intAt(offset),
+                        commands.intAt(offset + 1), commands.intAt(offset + 2), commands.intAt(offset + 3));
+            } else if (shader == SHADER_ARRAY) {
+                putFrame(commands.floatAt(offset), commands.floatAt(offset + 1),
+                        commands.floatAt(offset + 2), commands.floatAt(offset + 3),
+                        commands.floatAt(offset + 4), (int)commands.floatAt(offset + 5), drawQueue.paramOf(draw));
+            } else if (shader == SHADER_INSTANCED) {
+                putSprite(commands.floatAt(offset), commands.floatAt(offset + 1),
+                        commands.floatAt(offset + 2), commands.floatAt(offset + 3),
+                        commands.floatAt(offset + 4), commands.floatAt(offset + 5),
+                        commands.floatAt(offset + 6), commands.floatAt(offset + 7),
+                        commands.floatAt(offset + 8), drawQueue.paramOf(draw));
+            } else {
+                int param = drawQueue.paramOf(draw);
+                int count = (param & ~TEXEL_UVS) == QUAD_FLOATS ? QUAD_FLOATS : RECT_FLOATS;
+                float[] q = texelValues;
+                for (int j = 0; j < count; j++)
+                    q[j] = commands.floatAt(offset + j);
+                if ((param & TEXEL_UVS) != 0)
+                    normalizeTexels(q, count, tex);
+                if (count == QUAD_FLOATS) {
+                    putVertices(q[0], q[1], q[2], q[3], q[4], q[5], q[6], q[7],
+                            q[8], q[9], q[10], q[11], q[12], q[13], q[14], q[15]);
+                } else {
+                    putQuad(q[0], q[1], q[2], q[3], q[4], q[5], q[6], q[7]);
+                }
+            }
+        }
+    }
+
+    /**
+     * Binds a decoded texture.
+     * @param tex The texture.
+     */
+    private void execBind(TextureInfo tex) {
+        if (backend != null) {
+            backend.setTexture(tex);
+            backendTex = tex;
+        } else if (resolving) {
+            resolveTex = tex;
+        } else {
+            flushBatches();
+            TextureManager.bind(tex);
+        }
+    }
+
+    /**
+     * Binds a decoded array texture.
+     * @param array The array texture.
+     */
+    private void execBindArray(TextureArray array) {
+        if (backend != null)
+            return;
+        if (resolving) {
+            resolveArray = array;
+        } else {
+            instances.flush();
+            TextureManager.bindArray(array);
+        }
+    }
+
+    /**
+     * Appends a decoded rectangle to the batch, or queues it when resolving.
+     * @param texels Whether the rectangle's texture coordinates are in texels.
+     */
+    private void execRect(boolean texels) {
+        if (resolving) {
+            if (stateDirty) {
+                resolveState = drawQueue.pushState(kernel.get().asArray(), colourValues);
+                stateDirty = false;
+            }
+            int texId = resolveTex != null ? resolveTex.getId() : 0;
+            drawQueue.add(DrawQueue.key(layer, SHADER_DEFAULT, texId, depth),
+                    resolveTex, resolveState, commands.floatPosition(), texels ? TEXEL_UVS : 0);
+            commands.skipFloats(RECT_FLOATS);
+            return;
+        }
+        if (!texels) {
+            putQuad(commands.nextFloat(), commands.nextFloat(), commands.nextFloat(), commands.nextFloat(),
+                    commands.nextFloat(), commands.nextFloat(), commands.nextFloat(), commands.nextFloat());
+            return;
+        }
+        float[] q = texelValues;
+        for (int i = 0; i < RECT_FLOATS; i++)
+            q[i] = commands.nextFloat();
+        normalizeTexels(q, RECT_FLOATS, backend != null ? backendTex : TextureManager.getBound());
+        putQuad(q[0], q[1], q[2], q[3], q[4], q[5], q[6], q[7]);
+    }
+
+    /**
+     * Appends a decoded arbitrary quad to the batch, or queues it when resolving.
+     * @param texels Whether the quad's texture coordinates are in texels.
+     */
+    private void execQuad(boolean texels) {
+        if (resolving) {
+            if (stateDirty) {
+                resolveState = drawQueue.pushState(kernel.get().asArray(), colourValues);
+                stateDirty = false;
+            }
+            int texId = resolveTex != null ? resolveTex.getId() : 0;
+            drawQueue.add(DrawQueue.key(layer, SHADER_DEFAULT, texId, depth),
+                    resolveTex, resolveState, commands.floatPosition(), texels ? QUAD_FLOATS | TEXEL_UVS : QUAD_FLOATS);
+            commands.skipFloats(QUAD_FLOATS);
+            return;
+        }
+        if (!texels) {
+            putVertices(commands.nextFloat(), commands.nextFloat(), commands.nextFloat(), commands.nextFloat(),
+                    commands.nextFloat(), commands.nextFloat(), commands.nextFloat(), commands.nextFloat(),
+                    commands.nextFloat(), commands.nextFloat(), commands.nextFloat(), commands.nextFloat(),
+                    commands.nextFloat(), commands.nextFloat(), commands.nextFloat(), commands.nextFloat());
+            return;
+        }
+        float[] q = texelValues;
+        for (int i = 0; i < QUAD_FLOATS; i++)
+            q[i] = commands.nextFloat();
+        normalizeTexels(q, QUAD_FLOATS, backend != null ? backendTex : TextureManager.getBound());
+        putVertices(q[0], q[1], q[2], q[3], q[4], q[5], q[6], q[7],
+                q[8], q[9], q[10], q[11], q[12], q[13], q[14], q[15]);
+    }
+
+    /**
+     * Converts the texture coordinates of a decoded rectangle or quad from texels to normalized coordinates, against
+     * the texture that is bound as the command runs.
+     * @param values The command's operands.
+     * @param count The number of operands, {@link #RECT_FLOATS} or {@link #QUAD_FLOATS}.
+     * @param tex The bound texture.
+     */
+    private void normalizeTexels(float[] values, int count, TextureInfo tex) {
+        if (tex == null) {
+            throw new IllegalStateException(backend instanceof RetainedMesh.Builder
+                    ? "Texel coordinates need a texture bound in the baked buffer!"
+                    : "Texel coordinates need a bound texture!");
+        }
+        int first = count == RECT_FLOATS ? 4 : 2, stride = count == RECT_FLOATS ? 2 : 4;
+        for (int i = first; i < count; i += stride) {
+            values[i] /= tex.getWidth();
+            values[i + 1] /= tex.getHeight();
+        }
+    }
+
+    /**
+     * Appends a decoded sprite to the instance batch, or queues it when resolving.
+     */
+    private void execSprite() {
+        if (resolving) {
+            if (stateDirty) {
+                resolveState = drawQueue.pushState(kernel.get().asArray(), colourValues);
+                stateDirty = false;
+            }
+            int texId = resolveTex != null ? resolveTex.getId() : 0;
+            drawQueue.add(DrawQueue.key(layer, SHADER_INSTANCED, texId, depth),
+                    resolveTex, resolveState, commands.floatPosition(), commands.nextInt());
+            commands.skipFloats(SPRITE_FLOATS);
+            return;
+        }
+        putSprite(commands.nextFloat(), commands.nextFloat(), commands.nextFloat(), commands.nextFloat(),
+                commands.nextFloat(), commands.nextFloat(), commands.nextFloat(), commands.nextFloat(),
+                commands.nextFloat(), commands.nextInt());
+    }
+
+    /**
+     * Appends a decoded frame to the instance batch, or queues it when resolving.
+     */
+    private void execFrame() {
+        if (resolving) {
+            if (stateDirty) {
+                resolveState = drawQueue.pushState(kernel.get().asArray(), colourValues);
+                stateDirty = false;
+            }
+            int texId = resolveArray != null ? resolveArray.getId() : 0;
+            drawQueue.add(DrawQueue.key(layer, SHADER_ARRAY, texId, depth),
+                    resolveArray, resolveState, commands.floatPosition(), commands.nextInt());
+            commands.skipFloats(FRAME_FLOATS);
+            return;
+        }
+        putFrame(commands.nextFloat(), commands.nextFloat(), commands.nextFloat(), commands.nextFloat(),
+                commands.nextFloat(), (int)commands.nextFloat(), commands.nextInt());
+    }
+
+    /**
+     * Appends a layer of the bound array texture to the instance batch.
+     * @param x The sprite's x-coordinate.
+     * @param y The sprite's y-coordinate.
+     * @param width The sprite's width.
+     * @param height The sprite's height.
+     * @param rotation The rotation about the sprite's centre, in radians.
+     * @param arrayLayer The array layer.
+     * @param rgba The sprite's colour, packed as 0xRRGGBBAA.
+     */
+    private void putFrame(float x, float y, float width, float height, float rotation, int arrayLayer, int rgba) {
+        if (backend != null)
+            throw unsupported("Array texture frames");
+        batch.flush();
+        if (instances.isEmpty()) {
+            instances.setTransform(kernel.get().asArray());
+            instances.setColour(colourValues);
+        }
+        instances.putLayer(x, y, width, height, arrayLayer, rotation, rgba);
+    }
+
+    /**
+     * Appends a sprite to the instance batch, or expands it into a quad if instancing is unavailable. Either way, the
+     * sprite's colour multiplies the colour modifier.
+     * @param x The sprite's x-coordinate.
+     * @param y The sprite's y-coordinate.
+     * @param width The sprite's width.
+     * @param height The sprite's height.
+     * @param u1 The left texture coordinate.
+     * @param v1 The bottom texture coordinate.
+     * @param u2 The right texture coordinate.
+     * @param v2 The top texture coordinate.
+     * @param rotation The rotation about the sprite's centre, in radians.
+     * @param rgba The sprite's colour, packed as 0xRRGGBBAA.
+     */
+    private void putSprite(float x, float y, float width, float height,
+                           float u1, float v1, float u2, float v2, float rotation, int rgba) {
+        if (instances == null || backend != null) {
+            float cx = x + width / 2F, cy = y + height / 2F;
+            float sin = (float)Math.sin(rotation), cos = (float)Math.cos(rotation);
+            float hx = width / 2F, hy = height / 2F;
+            float ax = hx * cos, ay = hx * sin, bx = -hy * sin, by = hy * cos;
+            boolean tinted = rgba != 0xFFFFFFFF;
+            if (tinted) {
+                tintValues[0] = colourValues[0] * (rgba >>> 24) / 255F;
+                tintValues[1] = colourValues[1] * (rgba >>> 16 & 0xFF) / 255F;
+                tintValues[2] = colourValues[2] * (rgba >>> 8 & 0xFF) / 255F;
+                tintValues[3] = colourValues[3] * (rgba & 0xFF) / 255F;
+                applyTint(tintValues);
+            }
+            putVertices(
+                    cx - ax - bx, cy - ay - by, u1, v1,
+                    cx + ax - bx, cy + ay - by, u2, v1,
+                    cx + ax + bx, cy + ay + by, u2, v2,
+                    cx - ax + bx, cy - ay + by, u1, v2
+            );
+            if (tinted)
+                applyTint(colourValues);
+            return;
+        }
+        batch.flush();
+        if (instances.isEmpty()) {
+            instances.setTransform(kernel.get().asArray());
+            instances.setColour(colourValues);
+        }
+        instances.put(x, y, width, height, u1, v1, u2, v2, rotation, rgba);
+    }
+
+    /**
+     * Sets the colour quads are drawn with without touching the colour modifier, for drawing a tinted sprite as a quad.
+     * @param values The red, green, blue and alpha components.
+     */
+    private void applyTint(float[] values) {
+        if (backend != null) {
+            backend.setColour(values);
+        } else {
+            batch.flush();
+            colour.set(values);
+        }
+    }
+
+    /**
+     * Appends an axis-aligned quad to the batch.
+     * @param x1 The left edge.
+     * @param y1 The bottom edge.
+     * @param x2 The right edge.
+     * @param y2 The top edge.
+     * @param u1 The left texture coordinate.
+     * @param v1 The bottom texture coordinate.
+     * @param u2 The right texture coordinate.
+     * @param v2 The top texture coordinate.
+     */
+    private void putQuad(float x1, float y1, float x2, float y2, float u1, float v1, float u2, float v2) {
+        putVertices(
+                x1, y1, u1, v1,
+                x2, y1, u2, v1,
+                x2, y2, u2, v2,
+                x1, y2, u1, v2
+        );
+    }
+
+    /**
+     * Appends an arbitrary quad to the batch, applying the kernel first if transforming on the CPU.
+     * @param x1 The first vertex's x-coordinate.
+     * @param y1 The first vertex's y-coordinate.
+     * @param u1 The first vertex's x texture coordinate.
+     * @param v1 The first vertex's y texture coordinate.
+     * @param x2 The second vertex's x-coordinate.
+     * @param y2 The second vertex's y-coordinate.
+     * @param u2 The second vertex's x texture coordinate.
+     * @param v2 The second vertex's y texture coordinate.
+     * @param x3 The third vertex's x-coordinate.
+     * @param y3 The third vertex's y-coordinate.
+     * @param u3 The third vertex's x texture coordinate.
+     * @param v3 The third vertex's y texture coordinate.
+     * @param x4 The fourth vertex's x-coordinate.
+     * @param y4 The fourth vertex's y-coordinate.
+     * @param u4 The fourth vertex's x texture coordinate.
+     * @param v4 The fourth vertex's y texture coordinate.
+     */
+    private void putVertices(float x1, float y1, float u1, float v1,
+                             float x2, float y2, float u2, float v2,
+                             float x3, float y3, float u3, float v3,
+                             float x4, float y4, float u4, float v4) {
+        if (backend != null) {
+            float[] k = kernel.get().asArray();
+            backend.drawQuad(
+                    k[0] * x1 + k[1] * y1 + k[3], k[4] * x1 + k[5] * y1 + k[7], u1, v1,
+                    k[0] * x2 + k[1] * y2 + k[3], k[4] * x2 + k[5] * y2 + k[7], u2, v2,
+                    k[0] * x3 + k[1] * y3 + k[3], k[4] * x3 + k[5] * y3 + k[7], u3, v3,
+                    k[0] * x4 + k[1] * y4 + k[3], k[4] * x4 + k[5] * y4 + k[7], u4, v4
+            );
+            return;
+        }
+        if (instances != null)
+            instances.flush();
+        if (cpuTransform) {
+            float[] k = kernel.get().asArray();
+            batch.put(
+                    k[0] * x1 + k[1] * y1 + k[3], k[4] * x1 + k[5] * y1 + k[7], u1, v1,
+                    k[0] * x2 + k[1] * y2 + k[3], k[4] * x2 + k[5] * y2 + k[7], u2, v2,
+                    k[0] * x3 + k[1] * y3 + k[3], k[4] * x3 + k[5] * y3 + k[7], u3, v3,
+                    k[0] * x4 + k[1] * y4 + k[3], k[4] * x4 + k[5] * y4 + k[7], u4, v4
+            );
+        } else {
+            batch.put(
+                    x1, y1, u1, v1,
+                    x2, y2, u2, v2,
+                    x3, y3, u3, v3,
+                    x4, y4, u4, v4
+            );
+        }
+    }
+
+    /**
+     * Draws a decoded mesh, or queues it when resolving.
+     * @param mesh The mesh.
+     */
+    private void execMesh(RetainedMesh mesh) {
+        if (backend != null) {
+            if (backend instanceof RetainedMesh.Builder)
+                throw unsupported("Retained meshes");
+            emitRetained(mesh);
+            return;
+        }
+        if (resolving) {
+            if (stateDirty) {
+                resolveState = drawQueue.pushState(kernel.get().asArray(), colourValues);
+                stateDirty = false;
+            }
+            drawQueue.add(DrawQueue.key(layer, SHADER_MESH, 0, depth),
+                    null, resolveState, commands.floatPosition(), resolveMeshes.size());
+            resolveMeshes.add(mesh);
+            return;
+        }
+        drawRetained(mesh);
+    }
+
+    /**
+     * Draws a mesh run by run under the current kernel and colour modifier, with its kept tile map and cached layer
+     * draws in between.
+     * @param mesh The mesh.
+     */
+    private void drawRetained(RetainedMesh mesh) {
+        int run = 0;
+        for (int i = 0; i < mesh.getPassthroughCount(); i++) {
+            RetainedMesh.Passthrough pass = mesh.passthroughOf(i);
+            if (run < pass.run)
+                drawRuns(mesh, run, pass.run);
+            run = pass.run;
+            drawPassthrough(pass);
+        }
+        if (run < mesh.getRunCount())
+            drawRuns(mesh, run, mesh.getRunCount());
+    }
+
+    /**
+     * Draws a range of a mesh's runs under the current kernel and colour modifier, then restores the state the batches
+     * rely on.
+     * @param mesh The mesh.
+     * @param from The first run, inclusive.
+     * @param to The last run, exclusive.
+     */
+    private void drawRuns(RetainedMesh mesh, int from, int to) {
+        beginRetained();
+        mesh.bind(trans.shaderProg, batch.getIndexBuffer());
+        int perCall = batch.getCapacity();
+        for (int run = from; run < to; run++) {
+            TextureInfo tex = mesh.textureOf(run);
+            if (tex != null)
+                TextureManager.bind(tex);
+            float[] runColour = mesh.colourOf(run);
+            colour.set(runColour != null ? runColour : colourValues);
+            for (int start = mesh.startOf(run), end = start + mesh.lengthOf(run); start < end; start += perCall) {
+                GL32.glDrawElementsBaseVertex(GL11.GL_TRIANGLES,
+                        Math.min(perCall, end - start) * QuadBatch.INDICES_PER_QUAD, batch.getIndexType(), 0L,
+                        start * QuadBatch.VERTICES_PER_QUAD);
+                meshDrawCalls++;
+            }
+        }
+        endRetained();
+    }
+
+    /**
+     * Draws a tile map or cached layer kept in a mesh, under its captured kernel and colour modifier applied on top of
+     * the current ones.
+     * @param pass The kept draw.
+     */
+    private void drawPassthrough(RetainedMesh.Passthrough pass) {
+        execPush();
+        multiplier.get().readArray(pass.kernel);
+        kernel.get().multiply(multiplier.get());
+        kernelChanged();
+        if (pass.colour != null) {
+            System.arraycopy(colourValues, 0, passColour, 0, 4);
+            System.arraycopy(pass.colour, 0, colourValues, 0, 4);
+            colour.set(colourValues);
+        }
+        if (pass.map != null) {
+            drawTileChunks(pass.map, pass.chunks[0], pass.chunks[1], pass.chunks[2], pass.chunks[3]);
+        } else {
+            drawComposite(pass.layer, pass.rect[0], pass.rect[1], pass.rect[2], pass.rect[3]);
+        }
+        if (pass.colour != null) {
+            System.arraycopy(passColour, 0, colourValues, 0, 4);
+            colour.set(colourValues);
+        }
+        execPop();
+    }
+
+    /**
+     * Writes a mesh's quads into the backend under the current kernel and colour modifier. Kept cached layer draws are
+     * skipped, as backends skip cached layers.
+     * @param mesh The mesh.
+     */
+    private void emitRetained(RetainedMesh mesh) {
+        float[] v = mesh.getVertices();
+        if (v == null)
+            throw new IllegalStateException("Mesh has already been uploaded to OpenGL!");
+        for (int i = 0; i < mesh.getPassthroughCount(); i++) {
+            if (mesh.passthroughOf(i).map != null)
+                throw unsupported("Tile maps");
+        }
+        for (int run = 0; run < mesh.getRunCount(); run++) {
+            TextureInfo tex = mesh.textureOf(run);
+            if (tex != null)
+                backend.setTexture(tex);
+            float[] runColour = mesh.colourOf(run);
+            backend.setColour(runColour != null ? runColour : colourValues);
+            for (int i = mesh.startOf(run), end = i + mesh.lengthOf(run); i < end; i++) {
+                int b = i * QuadBatch.FLOATS_PER_QUAD;
+                putVertices(v[b], v[b + 1], v[b + 2], v[b + 3], v[b + 4], v[b + 5], v[b + 6], v[b + 7],
+                        v[b + 8], v[b + 9], v[b + 10], v[b + 11], v[b + 12], v[b + 13], v[b + 14], v[b + 15]);
+            }
+        }
+        backend.setTexture(backendTex);
+        backend.setColour(colourValues);
+    }
+
+    /**
+     * Creates the exception thrown when a command can't be written into the current backend.
+     * @param what The kind of thing that can't be drawn.
+     * @return The exception.
+     */
+    private IllegalStateException unsupported(String what) {
+        return new IllegalStateException(what + (backend instanceof RetainedMesh.Builder
+                ? " cannot be baked!" : " can only be drawn through OpenGL!"));
+    }
+
+    /**
+     * Draws a decoded range of tile map chunks, or queues it when resolving. The chunk range is read from the integer
+     * stream, so a queued draw's offset points into that stream rather than the float stream.
+     * @param map The tile map.
+     */
+    private void execTiles(TileMap map) {
+        if (backend instanceof RetainedMesh.Builder) {
+            ((RetainedMesh.Builder)backend).retainTiles(map, commands.nextInt(), commands.nextInt(), commands.nextInt(),
+                    commands.nextInt(), kernel.get().asArray());
+            return;
+        }
+        if (backend != null)
+            throw unsupported("Tile maps");
+        if (resolving) {
+            if (stateDirty) {
+                resolveState = drawQueue.pushState(kernel.get().asArray(), colourValues);
+                stateDirty = false;
+            }
+            drawQueue.add(DrawQueue.key(layer, SHADER_TILES, map.getTileset().getId(), depth),
+                    null, resolveState, commands.intPosition(), resolveTileMaps.size());
+            resolveTileMaps.add(map);
+            commands.skipInts(TILES_INTS);
+            return;
+        }
+        drawTileChunks(map, commands.nextInt(), commands.nextInt(), commands.nextInt(), commands.nextInt());
+    }
+
+    /**
+     * Draws a range of tile map chunks with the map's tileset under the current kernel and colour modifier, then
+     * restores the state the batches rely on.
+     * @param map The tile map.
+     * @param x1 The first chunk column, inclusive.
+     * @param y1 The first chunk row, inclusive.
+     * @param x2 The last chunk column, inclusive.
+     * @param y2 The last chunk row, inclusive.
+     */
+    private void drawTileChunks(TileMap map, int x1, int y1, int x2, int y2) {
+        beginRetained();
+        TextureManager.bind(map.getTileset());
+        colour.set(colourValues);
+        meshDrawCalls += map.drawChunks(trans.shaderProg, batch, x1, y1, x2, y2);
+        endRetained();
+    }
+
+    /**
+     * Flushes the batches and saves the state they rely on before drawing from a dedicated vertex buffer.
+     */
+    private void beginRetained() {
+        flushBatches();
+        if (cpuTransform)
+            uploadKernel();
+        restoreVao = GLState.getVertexArray();
+        restoreVbo = GLState.getBoundBuffer(GL15.GL_ARRAY_BUFFER);
+        restoreTex = TextureManager.getBound();
+    }
+
+    /**
+     * Restores the state saved by {@link #beginRetained()}.
+     */
+    private void endRetained() {
+        if (restoreVao != -1)
+            GLState.bindVertexArray(restoreVao);
+        if (restoreVbo != -1)
+            GLState.bindBuffer(GL15.GL_ARRAY_BUFFER, restoreVbo);
+        if (restoreTex != null)
+            TextureManager.bind(restoreTex);
+        restoreTex = null;
+        colour.set(colourValues);
+        if (cpuTransform)
+            trans.set(IDENTITY);
+    }
+
+    /**
+     * Renders a child buffer into a cached layer, then restores the state this buffer was drawing with. Runs
+     * immediately even when resolving, so the layer is ready before any sorted draw of it.
+     * @param target The layer to render into.
+     * @param child The child buffer holding the layer's contents.
+     */
+    private void execLayerPass(CachedLayer target, RenderBuffer child) {
+        if (backend instanceof RetainedMesh.Builder) {
+            parent.commands.putInt(OP_LAYER_PASS);
+            parent.commands.putRef(target);
+            parent.commands.putRef(child);
+            return;
+        }
+        if (backend != null) {
+            target.invalidate();
+            child.commands.clear();
+            return;
+        }
+        if (!resolving)
+            flushBatches();
+        TextureInfo restoreTex = TextureManager.getBound();
+        target.beginPass();
+        child.inLayerPass = true;
+        child.applyBlendFunc();
+        child.sorted = sorted;
+        child.cpuTransform = cpuTransform;
+        child.kernel.get().identity();
+        float[] k = child.kernel.get().asArray();
+        k[0] = margins.getResolutionWidth() / target.getWidth();
+        k[5] = margins.getResolutionHeight() / target.getHeight();
+        Arrays.fill(child.colourValues, 1F);
+        colour.set(child.colourValues);
+        child.meshDrawCalls = 0;
+        child.draw();
+        child.pendingPasses.clear();
+        meshDrawCalls += child.meshDrawCalls;
+        applyBlendFunc();
+        GLState.bindFramebuffer(0);
+        margins.applyViewport();
+        if (restoreTex != null)
+            TextureManager.bind(restoreTex);
+        colour.set(colourValues);
+        if (cpuTransform)
+            trans.set(IDENTITY);
+        else
+            uploadKernel();
+    }
+
+    /**
+     * Draws a decoded cached layer composite, or queues it when resolving. Backends skip it, as they skip the layer's
+     * passes.
+     * @param tex The layer's texture.
+     */
+    private void execComposite(TextureInfo tex) {
+        if (backend instanceof RetainedMesh.Builder) {
+            ((RetainedMesh.Builder)backend).retainComposite(tex, commands.nextFloat(), commands.nextFloat(),
+                    commands.nextFloat(), commands.nextFloat(), kernel.get().asArray());
+            return;
+        }
+        if (backend != null) {
+            commands.skipFloats(COMPOSITE_FLOATS);
+            return;
+        }
+        if (resolving) {
+            if (stateDirty) {
+                resolveState = drawQueue.pushState(kernel.get().asArray(), colourValues);
+                stateDirty = false;
+            }
+            drawQueue.add(DrawQueue.key(layer, SHADER_COMPOSITE, tex.getId(), depth),
+                    tex, resolveState, commands.floatPosition(), 0);
+            commands.skipFloats(COMPOSITE_FLOATS);
+            return;
+        }
+        drawComposite(tex, commands.nextFloat(), commands.nextFloat(), commands.nextFloat(), commands.nextFloat());
+    }
+
+    /**
+     * Draws a cached layer's texture under the current kernel and colour modifier. When blending, the layer's
+     * premultiplied colour is composited with <code>GL_ONE, GL_ONE_MINUS_SRC_ALPHA</code>, with the colour modifier
+     * premultiplied to match. Restores the bound texture, colour and blend function afterwards.
+     * @param tex The layer's texture.
+     * @param x1 The left edge.
+     * @param y1 The bottom edge.
+     * @param x2 The right edge.
+     * @param y2 The top edge.
+     */
+    private void drawComposite(TextureInfo tex, float x1, float y1, float x2, float y2) {
+        TextureInfo restoreTex = TextureManager.getBound();
+        flushBatches();
+        TextureManager.bind(tex);
+        boolean blending = GLState.isBlendEnabled();
+        if (blending) {
+            GLState.blendFunc(GL11.GL_ONE, GL11.GL_ONE_MINUS_SRC_ALPHA);
+            float a = colourValues[3];
+            tintValues[0] = colourValues[0] * a;
+            tintValues[1] = colourValues[1] * a;
+            tintValues[2] = colourValues[2] * a;
+            tintValues[3] = a;
+            colour.set(tintValues);
+        }
+        putQuad(x1, y1, x2, y2, 0F, 0F, 1F, 1F);
+        batch.flush();
+        if (blending) {
+            applyBlendFunc();
+            colour.set(colourValues);
+        }
+        if (restoreTex != null)
+            TextureManager.bind(restoreTex);
+    }
+
+    /**
+     * Sets the blend function draws into this buffer's target use, if blending is enabled. Layer passes keep
+     * premultiplied alpha, so their alpha accumulates with <code>GL_ONE, GL_ONE_MINUS_SRC_ALPHA</code>.
+     */
+    private void applyBlendFunc() {
+        if (!GLState.isBlendEnabled())
+            return;
+        if (inLayerPass)
+            GLState.blendFuncSeparate(GL11.GL_SRC_ALPHA, GL11.GL_ONE_MINUS_SRC_ALPHA,
+                    GL11.GL_ONE, GL11.GL_ONE_MINUS_SRC_ALPHA);
+        else
+            GLState.blendFunc(GL11.GL_SRC_ALPHA, GL11.GL_ONE_MINUS_SRC_ALPHA);
+    }
+
+    /**
+     * Draws all pending quads and sprites.
+     */
+    private void flushBatches() {
+        batch.flush();
+        if (instances != null)
+            instances.flush();
+    }
+
+    /**
+     * Uploads the current kernel. The projection is supplied separately through the frame constants block.
+     */
+    private void uploadKernel() {
         trans.set(kernel.get().asArray());
-        actions.forEach(Runnable::run);
-        actions.clear();
-        kernel.free();
-        kernel = Matrix4F.ident();
+    }
+
+    /**
+     * Reacts to a change of the colour modifier, uploading it or marking the state as changed when resolving.
+     */
+    private void colourChanged() {
+        if (backend != null)
+            backend.setColour(colourValues);
+        else if (resolving)
+            stateDirty = true;
+        else
+            colour.set(colourValues);
+    }
+
+    /**
+     * Reacts to a change of the kernel, uploading it or marking the state as changed when resolving.
+     */
+    private void kernelChanged() {
+        if (backend != null)
+            return;
+        if (resolving) {
+            stateDirty = true;
+            return;
+        }
+        if (instances != null)
+            instances.flush();
+        if (!cpuTransform) {
+            batch.flush();
+            uploadKernel();
+        }
+    }
+
+    /**
+     * Copies the current kernel onto the stack.
+     */
+    private void execPush() {
+        if ((kernelDepth + 1) * 16 > kernelStack.length)
+            kernelStack = Arrays.copyOf(kernelStack, kernelStack.length * 2);
+        System.arraycopy(kernel.get().asArray(), 0, kernelStack, kernelDepth * 16, 16);
+        kernelDepth++;
+    }
+
+    /**
+     * Restores the topmost kernel from the stack.
+     */
+    private void execPop() {
+        if (kernelDepth > 0) {
+            kernelDepth--;
+            System.arraycopy(kernelStack, kernelDepth * 16, kernel.get().asArray(), 0, 16);
+            kernelChanged();
+        }
+    }
+
+    /**
+     * Post-multiplies the kernel by a translation.
+     * @param x The x offset.
+     * @param y The y offset.
+     */
+    private void execTranslate(float x, float y) {
+        float[] k = kernel.get().asArray();
+        for (int r = 0; r < 16; r += 4)
+            k[r + 3] += k[r] * x + k[r + 1] * y;
+        kernelChanged();
+    }
+
+    /**
+     * Post-multiplies the kernel by a scale.
+     * @param x The horizontal scaling factor.
+     * @param y The vertical scaling factor.
+     */
+    private void execScale(float x, float y) {
+        float[] k = kernel.get().asArray();
+        for (int r = 0; r < 16; r += 4) {
+            k[r] *= x;
+            k[r + 1] *= y;
+        }
+        kernelChanged();
+    }
+
+    /**
+     * Post-multiplies the kernel by a rotation.
+     * @param sin The sine of the rotation angle.
+     * @param cos The cosine of the rotation angle.
+     * @param x The x component of the rotation axis vector.
+     * @param y The y component of the rotation axis vector.
+     */
+    private void execRotate(float sin, float cos, float x, float y) {
+        Matrix4F mat = multiplier.get();
+        mat.put(0, 0, x * x * (1F - cos) + cos);
+        mat.put(0, 1, y * x * (1F - cos));
+        mat.put(0, 2, y * sin);
+        mat.put(0, 3, 0F);
+        mat.put(1, 0, x * y * (1F - cos));
+        mat.put(1, 1, y * y * (1F - cos) + cos);
+        mat.put(1, 2, -x * sin);
+        mat.put(1, 3, 0F);
+        mat.put(2, 0, -y * sin);
+        mat.put(2, 1, x * sin);
+        mat.put(2, 2, cos);
+        mat.put(2, 3, 0F);
+        mat.put(3, 0, 0F);
+        mat.put(3, 1, 0F);
+        mat.put(3, 2, 0F);
+        mat.put(3, 3, 1F);
+        kernel.get().multiply(mat);
+        kernelChanged();
+    }
+
+    /**
+     * Uploads a new colour modifier.
+     * @param r The red component.
+     * @param g The green component.
+     * @param b The blue component.
+     * @param a The alpha component.
+     */
+    private void execColour(float r, float g, float b, float a) {
+        if (!resolving && backend == null)
+            flushBatches();
+        colourValues[0] = r;
+        colourValues[1] = g;
+        colourValues[2] = b;
+        colourValues[3] = a;
+        colourChanged();
+    }
+
+    /**
+     * Retrieves the number of draw calls issued by the most recent flush.
+     * @return The draw call count.
+     */
+    public int getDrawCalls() {
+        if (batch == null)
+            return 0;
+        return batch.getDrawCalls() + (instances != null ? instances.getDrawCalls() : 0) + meshDrawCalls;
     }
 
 }
@@ -0,0 +1,256 @@
+package io.github.phantamanta44.shlgl.graphics.render;
+
+import java.util.Arrays;
+
+/**
+ * A reusable stream of primitive-encoded render commands. Commands are written as opcodes followed by their operands,
+ * which are stored in growable primitive arrays so that a steady-state frame produces no garbage.
+ * @author Evan Geng
+ */
+public class RenderCommandStream {
+
+    /**
+     * The default initial capacity of the backing arrays.
+     */
+    private static final int DEFAULT_CAPACITY = 1024;
+
+    /**
+     * The integer stream, holding opcodes and integer operands.
+     */
+    private int[] ints;
+
+    /**
+     * The number of integers written.
+     */
+    private int intCount;
+
+    /**
+     * The float stream, holding floating-point operands.
+     */
+    private float[] floats;
+
+    /**
+     * The number of floats written.
+     */
+    private int floatCount;
+
+    /**
+     * The reference table, holding object operands such as textures.
+     */
+    private Object[] refs;
+
+    /**
+     * The number of references written.
+     */
+    private int refCount;
+
+    /**
+     * The read position in the integer stream.
+     */
+    private int intCursor;
+
+    /**
+     * The read position in the float stream.
+     */
+    private int floatCursor;
+
+    /**
+     * The read position in the reference table.
+     */
+    private int refCursor;
+
+    /**
+     * Creates a command stream with the default initial capacity.
+     */
+    public RenderCommandStream() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Creates a command stream with the given initial capacity.
+     * @param capacity The initial number of operands of each kind to allocate room for.
+     */
+    public RenderCommandStream(int capacity) {
+        this.ints = new int[capacity];
+        this.floats = new float[capacity * 4];
+        this.refs = new Object[Math.max(capacity / 16, 16)];
+    }
+
+    /**
+     * Writes an integer, such as an opcode, to the stream.
+     * @param value The value to write.
+     */
+    public void putInt(int value) {
+        if (intCount == ints.length)
+            ints = Arrays.copyOf(ints, ints.length * 2);
+        ints[intCount++] = value;
+    }
+
+    /**
+     * Writes a float to the stream.
+     * @param value The value to write.
+     */
+    public void putFloat(float value) {
+        if (floatCount == floats.length)
+            floats = Arrays.copyOf(floats, floats.length * 2);
+        floats[floatCount++] = value;
+    }
+
+    /**
+     * Writes an object reference to the stream. References are read back in the order they were written.
+     * @param value The object to write.
+     */
+    public void putRef(Object value) {
+        if (refCount == refs.length)
+            refs = Arrays.copyOf(refs, refs.length * 2);
+        refs[refCount++] = value;
+    }
+
+    /**
+     * Appends everything written to another stream onto the end of this one.
+     * @param other The stream to append.
+     */
+    public void append(RenderCommandStream other) {
+        ints = ensureCapacity(ints, intCount + other.intCount);
+        System.arraycopy(other.ints, 0, ints, intCount, other.intCount);
+        intCount += other.intCount;
+        floats = ensureCapacity(floats, floatCount + other.floatCount);
+        System.arraycopy(other.floats, 0, floats, floatCount, other.floatCount);
+        floatCount += other.floatCount;
+        if (refCount + other.refCount > refs.length)
+            refs = Arrays.copyOf(refs, Math.max(refs.length * 2, refCount + other.refCount));
+        System.arraycopy(other.refs, 0, refs, refCount, other.refCount);
+        refCount += other.refCount;
+    }
+
+    /**
+     * Grows an integer array to hold at least the given number of elements.
+     * @param array The array.
+     * @param size The required size.
+     * @return The array, or a larger copy of it.
+     */
+    private static int[] ensureCapacity(int[] array, int size) {
+        return size > array.length ? Arrays.copyOf(array, Math.max(array.length * 2, size)) : array;
+    }
+
+    /**
+     * Grows a float array to hold at least the given number of elements.
+     * @param array The array.
+     * @param size The required size.
+     * @return The array, or a larger copy of it.
+     */
+    private static float[] ensureCapacity(float[] array, int size) {
+        return size > array.length ? Arrays.copyOf(array, Math.max(array.length * 2, size)) : array;
+    }
+
+    /**
+     * Checks whether there are unread integers left in the stream.
+     * @return Whether there are more commands to read.
+     */
+    public boolean hasRemaining() {
+        return intCursor < intCount;
+    }
+
+    /**
+     * Reads the next integer from the stream.
+     * @return The integer.
+     */
+    public int nextInt() {
+        return ints[intCursor++];
+    }
+
+    /**
+     * Reads the next float from the stream.
+     * @return The float.
+     */
+    public float nextFloat() {
+        return floats[floatCursor++];
+    }
+
+    /**
+     * Reads the next object reference from the stream.
+     * @param <T> The type of the object.
+     * @return The object.
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T nextRef() {
+        return (T)refs[refCursor++];
+    }
+
+    /**
+     * Retrieves the current read position in the integer stream.
+     * @return The index of the next integer to be read.
+     */
+    public int intPosition() {
+        return intCursor;
+    }
+
+    /**
+     * Advances the integer read position without reading.
+     * @param count The number of integers to skip.
+     */
+    public void skipInts(int count) {
+        intCursor += count;
+    }
+
+    /**
+     * Reads an integer at an absolute position, without moving the read position.
+     * @param index The index of the integer.
+     * @return The integer.
+     */
+    public int intAt(int index) {
+        return ints[index];
+    }
+
+    /**
+     * Retrieves the current read position in the float stream.
+     * @return The index of the next float to be read.
+     */
+    public int floatPosition() {
+        return floatCursor;
+    }
+
+    /**
+     * Advances the float read position without reading.
+     * @param count The number of floats to skip.
+     */
+    public void skipFloats(int count) {
+        floatCursor += count;
+    }
+
+    /**
+     * Reads a float at an absolute position, without moving the read position.
+     * @param index The index of the float.
+     * @return The float.
+     */
+    public float floatAt(int index) {
+        return floats[index];
+    }
+
+    /**
+     * Checks whether nothing has been written to this stream.
+     * @return Whether the stream is empty.
+     */
+    public boolean isEmpty() {
+        return intCount == 0;
+    }
+
+    /**
+     * Moves the read position back to the start of the stream.
+     */
+    public void rewind() {
+        intCursor = 0;
+        floatCursor = 0;
+        refCursor = 0;
+    }
+
+    /**
+     * Empties the stream while keeping its backing storage for reuse.
+     */
+    public void clear() {
+        Arrays.fill(refs, 0, refCount, null);
+        intCount = floatCount = refCount = 0;
+        rewind();
+    }
+
+}
@@ -0,0 +1,458 @@
+package io.github.phantamanta44.shlgl.graphics.render;
+
+import io.github.phantamanta44.shlgl.graphics.texture.TextureInfo;
+import org.lwjgl.opengl.GL11;
+import org.lwjgl.opengl.GL15;
+import org.lwjgl.opengl.GL20;
+import org.lwjgl.opengl.GL30;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Quads captured once from a render buffer and kept in a dedicated vertex buffer, so that geometry which never changes
+ * can be redrawn each frame without being recorded or uploaded again. Tile maps and cached layers drawn into the
+ * captured buffer already keep their data on the GPU, so they are kept as commands between the mesh's runs instead.
+ * Meshes are made by {@link RenderBuffer#bake(RenderBuffer)} and are immutable; the vertex buffer is created on the GL
+ * thread the first time the mesh is drawn.
+ * @author Evan Geng
+ */
+public class RetainedMesh {
+
+    /**
+     * Disposed meshes whose GL objects are waiting to be deleted on the GL thread.
+     */
+    private static final Queue<RetainedMesh> released = new ConcurrentLinkedQueue<>();
+
+    /**
+     * Disposed meshes given one more frame before deletion, since a frame recorded before they were disposed may not
+     * have been drawn yet. Only touched on the GL thread.
+     */
+    private static final List<RetainedMesh> retiring = new ArrayList<>();
+
+    /**
+     * The vertex data, in the quad batch's layout, or <code>null</code> once uploaded.
+     */
+    private float[] vertices;
+
+    /**
+     * The number of quads in the mesh.
+     */
+    private final int quads;
+
+    /**
+     * The texture of each run, or <code>null</code> for the texture bound when the mesh is drawn.
+     */
+    private final TextureInfo[] textures;
+
+    /**
+     * The colour modifier of each run, or <code>null</code> for the modifier in effect when the mesh is drawn.
+     */
+    private final float[][] colours;
+
+    /**
+     * The index of the first quad of each run, followed by the total number of quads.
+     */
+    private final int[] starts;
+
+    /**
+     * The tile map and cached layer draws kept between the runs, in drawing order.
+     */
+    private final Passthrough[] passthroughs;
+
+    /**
+     * The vertex array object, or zero if not yet created.
+     */
+    private int vao;
+
+    /**
+     * The vertex buffer, or zero if not yet created.
+     */
+    private int vbo;
+
+    /**
+     * Whether the mesh has been disposed.
+     */
+    private volatile boolean disposed;
+
+    /**
+     * Whether the mesh's GL objects have been deleted.
+     */
+    private boolean deleted;
+
+    /**
+     * Creates a mesh from captured runs.
+     * @param vertices The vertex data.
+     * @param quads The number of quads.
+     * @param textures The texture of each run.
+     * @param colours The colour modifier of each run.
+     * @param starts The index of the first quad of each run, followed by the total number of quads.
+     * @param passthroughs The draws kept between the runs.
+     */
+    private RetainedMesh(float[] vertices, int quads, TextureInfo[] textures, float[][] colours, int[] starts,
+                         Passthrough[] passthroughs) {
+        this.vertices = vertices;
+        this.quads = quads;
+        this.textures = textures;
+        this.colours = colours;
+        this.starts = starts;
+        this.passthroughs = passthroughs;
+    }
+
+    /**
+     * Retrieves the number of quads in the mesh.
+     * @return The quad count.
+     */
+    public int getQuadCount() {
+        return quads;
+    }
+
+    /**
+     * Retrieves the number of runs of quads sharing a texture and colour modifier, each of which is drawn with a
+     * single call.
+     * @return The run count.
+     */
+    public int getRunCount() {
+        return textures.length;
+    }
+
+    /**
+     * Retrieves the mesh's vertex data.
+     * @return The vertex data, in the quad batch's layout, or <code>null</code> once uploaded.
+     */
+    float[] getVertices() {
+        return vertices;
+    }
+
+    /**
+     * Retrieves the texture of a run.
+     * @param run The run's index.
+     * @return The texture, or <code>null</code> to use the bound texture.
+     */
+    TextureInfo textureOf(int run) {
+        return textures[run];
+    }
+
+    /**
+     * Retrieves the colour modifier of a run.
+     * @param run The run's index.
+     * @return The colour modifier, or <code>null</code> to use the modifier in effect.
+     */
+    float[] colourOf(int run) {
+        return colours[run];
+    }
+
+    /**
+     * Retrieves the index of the first quad of a run.
+     * @param run The run's index.
+     * @return The quad index.
+     */
+    int startOf(int run) {
+        return starts[run];
+    }
+
+    /**
+     * Retrieves the number of quads in a run.
+     * @param run The run's index.
+     * @return The quad count.
+     */
+    int lengthOf(int run) {
+        return starts[run + 1] - starts[run];
+    }
+
+    /**
+     * Retrieves the number of tile map and cached layer draws kept between the mesh's runs.
+     * @return The draw count.
+     */
+    int getPassthroughCount() {
+        return passthroughs.length;
+    }
+
+    /**
+     * Retrieves a tile map or cached layer draw kept between the mesh's runs.
+     * @param index The draw's index, in drawing order.
+     * @return The draw.
+     */
+    Passthrough passthroughOf(int index) {
+        return passthroughs[index];
+    }
+
+    /**
+     * Binds the mesh's vertex array object, uploading the mesh first if this is its first draw. Must be called on the
+     * GL thread.
+     * @param program The program the mesh is drawn with.
+     * @param indexBuffer The quad index buffer to draw with.
+     */
+    void bind(int program, int indexBuffer) {
+        if (deleted)
+            throw new IllegalStateException("Mesh has been disposed!");
+        if (vao != 0) {
+            GLState.bindVertexArray(vao);
+            return;
+        }
+        vao = GL30.glGenVertexArrays();
+        GLState.bindVertexArray(vao);
+        vbo = GL15.glGenBuffers();
+        GLState.bindBuffer(GL15.GL_ARRAY_BUFFER, vbo);
+        GL15.glBufferData(GL15.GL_ARRAY_BUFFER, vertices, GL15.GL_STATIC_DRAW);
+        vertices = null;
+        int loc = GL20.glGetAttribLocation(program, "posXY");
+        GL20.glVertexAttribPointer(loc, 2, GL11.GL_FLOAT, false, QuadBatch.BYTES_PER_VERTEX, 0);
+        GL20.glEnableVertexAttribArray(loc);
+        loc = GL20.glGetAttribLocation(program, "posUV");
+        GL20.glVertexAttribPointer(loc, 2, GL11.GL_FLOAT, false, QuadBatch.BYTES_PER_VERTEX, 2 * Float.BYTES);
+        GL20.glEnableVertexAttribArray(loc);
+        GLState.bindBuffer(GL15.GL_ELEMENT_ARRAY_BUFFER, indexBuffer);
+    }
+
+    /**
+     * Disposes the mesh. Its GL objects are deleted on the GL thread a frame later, so a mesh may be disposed from any
+     * thread, even while frames that draw it are still in flight.
+     */
+    public void dispose() {
+        if (disposed)
+            return;
+        disposed = true;
+        released.add(this);
+    }
+
+    /**
+     * Deletes the GL objects of meshes disposed before the previous frame. Called by SHLGL on the GL thread before
+     * drawing each frame.
+     */
+    public static void releaseDisposed() {
+        for (RetainedMesh mesh : retiring) {
+            if (mesh.vao != 0) {
+                if (GLState.getVertexArray() == mesh.vao)
+                    GLState.bindVertexArray(0);
+                GL30.glDeleteVertexArrays(mesh.vao);
+                GL15.glDeleteBuffers(mesh.vbo);
+                mesh.vao = mesh.vbo = 0;
+            }
+            mesh.vertices = null;
+            mesh.deleted = true;
+        }
+        retiring.clear();
+        RetainedMesh mesh;
+        while ((mesh = released.poll()) != null)
+            retiring.add(mesh);
+    }
+
+    /**
+     * A tile map or cached layer draw kept in a mesh as a command, since its vertices are already on the GPU.
+     */
+    static final class Passthrough {
+
+        /**
+         * The index of the run this draw comes before, or the run count if it comes after every run.
+         */
+        final int run;
+
+        /**
+         * The tile map to draw, or <code>null</code> if compositing a cached layer.
+         */
+        final TileMap map;
+
+        /**
+         * The tile map's chunk range as first column, first row, last column and last row, all inclusive.
+         */
+        final int[] chunks;
+
+        /**
+         * The cached layer's texture, or <code>null</code> if drawing a tile map.
+         */
+        final TextureInfo layer;
+
+        /**
+         * The cached layer's rectangle as left, bottom, right and top edges.
+         */
+        final float[] rect;
+
+        /**
+         * The transformation kernel in effect when the draw was captured, relative to the mesh's coordinates.
+         */
+        final float[] kernel;
+
+        /**
+         * The colour modifier in effect when the draw was captured, or <code>null</code> for the modifier in effect
+         * when the mesh is drawn.
+         */
+        final float[] colour;
+
+        /**
+         * Creates a kept draw.
+         * @param run The index of the run the draw comes before.
+         * @param map The tile map, or <code>null</code>.
+         * @param chunks The tile map's chunk range, or <code>null</code>.
+         * @param layer The cached layer's texture, or <code>null</code>.
+         * @param rect The cached layer's rectangle, or <code>null</code>.
+         * @param kernel The captured transformation kernel.
+         * @param colour The captured colour modifier, or <code>null</code>.
+         */
+        private Passthrough(int run, TileMap map, int[] chunks, TextureInfo layer, float[] rect, float[] kernel,
+                            float[] colour) {
+            this.run = run;
+            this.map = map;
+            this.chunks = chunks;
+            this.layer = layer;
+            this.rect = rect;
+            this.kernel = kernel;
+            this.colour = colour;
+        }
+
+    }
+
+    /**
+     * Accumulates captured quads into runs and builds a mesh from them.
+     */
+    static class Builder implements RenderBackend {
+
+        /**
+         * The captured vertex data.
+         */
+        private float[] vertices = new float[QuadBatch.FLOATS_PER_QUAD * 64];
+
+        /**
+         * The number of quads captured.
+         */
+        private int quads;
+
+        /**
+         * The texture of each run.
+         */
+        private final List<TextureInfo> textures = new ArrayList<>();
+
+        /**
+         * The colour modifier of each run.
+         */
+        private final List<float[]> colours = new ArrayList<>();
+
+        /**
+         * The index of the first quad of each run.
+         */
+        private final List<Integer> starts = new ArrayList<>();
+
+        /**
+         * The tile map and cached layer draws captured so far.
+         */
+        private final List<Passthrough> passthroughs = new ArrayList<>();
+
+        /**
+         * Whether the next quad must start a new run, since a kept draw comes between it and the previous quad.
+         */
+        private boolean split;
+
+        /**
+         * The texture that following quads are drawn with.
+         */
+        private TextureInfo texture;
+
+        /**
+         * The colour modifier that following quads are drawn with.
+         */
+        private float[] colour;
+
+        @Override
+        public void setTexture(TextureInfo texture) {
+            this.texture = texture;
+        }
+
+        /**
+         * {@inheritDoc} The values are only copied if they differ from the current modifier.
+         */
+        @Override
+        public void setColour(float[] colour) {
+            if (!Arrays.equals(this.colour, colour))
+                this.colour = colour.clone();
+        }
+
+        /**
+         * {@inheritDoc} Starts a new run if the texture or colour modifier changed, or a kept draw was captured since
+         * the previous quad.
+         */
+        @Override
+        public void drawQuad(float x1, float y1, float u1, float v1,
+                             float x2, float y2, float u2, float v2,
+                             float x3, float y3, float u3, float v3,
+                             float x4, float y4, float u4, float v4) {
+            int last = textures.size() - 1;
+            if (last == -1 || split || textures.get(last) != texture || !Arrays.equals(colours.get(last), colour)) {
+                textures.add(texture);
+                colours.add(colour);
+                starts.add(quads);
+                split = false;
+            }
+            int base = quads * QuadBatch.FLOATS_PER_QUAD;
+            if (base + QuadBatch.FLOATS_PER_QUAD > vertices.length)
+                vertices = Arrays.copyOf(vertices, vertices.length * 2);
+            float[] v = vertices;
+            v[base] = x1;
+            v[base + 1] = y1;
+            v[base + 2] = u1;
+            v[base + 3] = v1;
+            v[base + 4] = x2;
+            v[base + 5] = y2;
+            v[base + 6] = u2;
+            v[base + 7] = v2;
+            v[base + 8] = x3;
+            v[base + 9] = y3;
+            v[base + 10] = u3;
+            v[base + 11] = v3;
+            v[base + 12] = x4;
+            v[base + 13] = y4;
+            v[base + 14] = u4;
+            v[base + 15] = v4;
+            quads++;
+        }
+
+        /**
+         * Keeps a tile map draw as a command after the quads captured so far.
+         * @param map The tile map.
+         * @param x1 The first chunk column, inclusive.
+         * @param y1 The first chunk row, inclusive.
+         * @param x2 The last chunk column, inclusive.
+         * @param y2 The last chunk row, inclusive.
+         * @param kernel The transformation kernel in effect, relative to the mesh's coordinates.
+         */
+        void retainTiles(TileMap map, int x1, int y1, int x2, int y2, float[] kernel) {
+            passthroughs.add(new Passthrough(textures.size(), map, new int[] {x1, y1, x2, y2}, null, null,
+                    kernel.clone(), colour));
+            split = true;
+        }
+
+        /**
+         * Keeps a cached layer composite as a command after the quads captured so far.
+         * @param layer The layer's texture.
+         * @param x1 The left edge.
+         * @param y1 The bottom edge.
+         * @param x2 The right edge.
+         * @param y2 The top edge.
+         * @param kernel The transformation kernel in effect, relative to the mesh's coordinates.
+         */
+        void retainComposite(TextureInfo layer, float x1, float y1, float x2, float y2, float[] kernel) {
+            passthroughs.add(new Passthrough(textures.size(), null, null, layer, new float[] {x1, y1, x2, y2},
+                    kernel.clone(), colour));
+            split = true;
+        }
+
+        /**
+         * Builds a mesh from the captured quads and kept draws.
+         * @return The mesh.
+         */
+        RetainedMesh build() {
+            int runs = textures.size();
+            int[] runStarts = new int[runs + 1];
+            for (int i = 0; i < runs; i++)
+                runStarts[i] = starts.get(i);
+            runStarts[runs] = quads;
+            return new RetainedMesh(Arrays.copyOf(vertices, quads * QuadBatch.FLOATS_PER_QUAD), quads,
+                    textures.toArray(new TextureInfo[runs]), colours.toArray(new float[runs][]), runStarts,
+                    passthroughs.toArray(new Passthrough[passthroughs.size()]));
+        }
+
+    }
+
+}
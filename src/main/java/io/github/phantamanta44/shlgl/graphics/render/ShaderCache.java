@@ -0,0 +1,233 @@
+package io.github.phantamanta44.shlgl.graphics.render;
+
+import org.lwjgl.BufferUtils;
+import org.lwjgl.opengl.ARBParallelShaderCompile;
+import org.lwjgl.opengl.GL;
+import org.lwjgl.opengl.GL11;
+import org.lwjgl.opengl.GL20;
+import org.lwjgl.opengl.GL41;
+import org.lwjgl.opengl.GLCapabilities;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * Builds shader programs, keeping their linked binaries on disk so later launches can skip compilation. Binaries are
+ * keyed by a hash of the sources and the driver's identity, and anything that can't be loaded is transparently
+ * rebuilt from source. Programs are built in batches so that drivers supporting parallel compilation can compile
+ * them all at once.
+ * @author Evan Geng
+ */
+public class ShaderCache {
+
+    /**
+     * The file extension of cached binaries.
+     */
+    private static final String EXTENSION = ".bin";
+
+    /**
+     * The directory binaries are stored in.
+     */
+    private final Path directory;
+
+    /**
+     * Whether the driver supports program binaries.
+     */
+    private final boolean binaries;
+
+    /**
+     * Whether the driver supports parallel shader compilation. Only the ARB extension is checked, since LWJGL 3.1.1 has
+     * no binding for KHR_parallel_shader_compile.
+     */
+    private final boolean parallel;
+
+    /**
+     * The driver's identity, mixed into every key.
+     */
+    private final String driver;
+
+    /**
+     * Creates a shader cache storing binaries in a directory. Must be called on the GL thread.
+     * @param directory The cache directory, created if it doesn't exist.
+     */
+    public ShaderCache(Path directory) {
+        this.directory = directory;
+        GLCapabilities caps = GL.getCapabilities();
+        this.binaries = caps.OpenGL41 || caps.GL_ARB_get_program_binary;
+        this.parallel = caps.GL_ARB_parallel_shader_compile;
+        this.driver = GL11.glGetString(GL11.GL_VENDOR) + '\0' + GL11.glGetString(GL11.GL_RENDERER) + '\0'
+                + GL11.glGetString(GL11.GL_VERSION);
+        if (parallel)
+            ARBParallelShaderCompile.glMaxShaderCompilerThreadsARB(0xFFFFFFFF);
+    }
+
+    /**
+     * Builds a batch of programs, loading cached binaries where possible and compiling the rest together.
+     * @param sources The programs' sources.
+     * @return The programs' handles, in the same order as the sources.
+     */
+    public int[] load(Source... sources) {
+        int[] programs = new int[sources.length];
+        String[] keys = new String[sources.length];
+        int[][] shaders = new int[sources.length][];
+        for (int i = 0; i < sources.length; i++) {
+            keys[i] = key(sources[i]);
+            programs[i] = loadBinary(keys[i]);
+        }
+        for (int i = 0; i < sources.length; i++) {
+            if (programs[i] == 0) {
+                shaders[i] = new int[] {
+                        ShaderUtils.compileShader(GL20.GL_VERTEX_SHADER, sources[i].vertex),
+                        ShaderUtils.compileShader(GL20.GL_FRAGMENT_SHADER, sources[i].fragment)
+                };
+            }
+        }
+        for (int i = 0; i < sources.length; i++) {
+            if (shaders[i] != null) {
+                programs[i] = GL20.glCreateProgram();
+                if (binaries)
+                    GL41.glProgramParameteri(programs[i], GL41.GL_PROGRAM_BINARY_RETRIEVABLE_HINT, GL11.GL_TRUE);
+                for (int shader : shaders[i])
+                    GL20.glAttachShader(programs[i], shader);
+                GL20.glLinkProgram(programs[i]);
+            }
+        }
+        for (int i = 0; i < sources.length; i++) {
+            if (shaders[i] != null) {
+                for (int shader : shaders[i]) {
+                    GL20.glDetachShader(programs[i], shader);
+                    GL20.glDeleteShader(shader);
+                }
+                if (GL20.glGetProgrami(programs[i], GL20.GL_LINK_STATUS) != GL11.GL_TRUE) {
+                    throw new IllegalStateException("Failed to link shader program " + sources[i].name + "!\n"
+                            + GL20.glGetProgramInfoLog(programs[i]));
+                }
+                storeBinary(keys[i], programs[i]);
+            }
+        }
+        return programs;
+    }
+
+    /**
+     * Computes the cache key of a program.
+     * @param source The program's sources.
+     * @return The key, as a file name without extension.
+     */
+    private String key(Source source) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(driver.getBytes(StandardCharsets.UTF_8));
+            digest.update((byte)0);
+            digest.update(source.vertex.getBytes(StandardCharsets.UTF_8));
+            digest.update((byte)0);
+            digest.update(source.fragment.getBytes(StandardCharsets.UTF_8));
+            StringBuilder key = new StringBuilder(source.name).append('-');
+            for (byte b : digest.digest())
+                key.append(Character.forDigit((b >>> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+            return key.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 unavailable!", e);
+        }
+    }
+
+    /**
+     * Creates a program from a cached binary.
+     * @param key The program's cache key.
+     * @return The program's handle, or zero if there was no usable binary.
+     */
+    private int loadBinary(String key) {
+        if (!binaries)
+            return 0;
+        Path file = directory.resolve(key + EXTENSION);
+        if (!Files.isRegularFile(file))
+            return 0;
+        byte[] bytes;
+        try {
+            bytes = Files.readAllBytes(file);
+        } catch (IOException e) {
+            return 0;
+        }
+        if (bytes.length <= Integer.BYTES)
+            return 0;
+        int format = ByteBuffer.wrap(bytes).getInt();
+        ByteBuffer data = BufferUtils.createByteBuffer(bytes.length - Integer.BYTES);
+        data.put(bytes, Integer.BYTES, bytes.length - Integer.BYTES).flip();
+        int program = GL20.glCreateProgram();
+        GL41.glProgramBinary(program, format, data);
+        if (GL20.glGetProgrami(program, GL20.GL_LINK_STATUS) == GL11.GL_TRUE)
+            return program;
+        GL20.glDeleteProgram(program);
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException ignored) {
+            // a stale binary that can't be deleted is simply rebuilt again next time
+        }
+        return 0;
+    }
+
+    /**
+     * Writes a linked program's binary to the cache. Failures are reported but otherwise ignored.
+     * @param key The program's cache key.
+     * @param program The program's handle.
+     */
+    private void storeBinary(String key, int program) {
+        if (!binaries)
+            return;
+        int length = GL20.glGetProgrami(program, GL41.GL_PROGRAM_BINARY_LENGTH);
+        if (length <= 0)
+            return;
+        ByteBuffer data = BufferUtils.createByteBuffer(length);
+        int[] written = new int[1];
+        int[] format = new int[1];
+        GL41.glGetProgramBinary(program, written, format, data);
+        byte[] bytes = new byte[Integer.BYTES + written[0]];
+        ByteBuffer.wrap(bytes).putInt(format[0]);
+        data.get(bytes, Integer.BYTES, written[0]);
+        try {
+            Files.createDirectories(directory);
+            Files.write(directory.resolve(key + EXTENSION), bytes);
+        } catch (IOException e) {
+            System.err.println("Failed to write shader cache entry " + key + "!");
+        }
+    }
+
+    /**
+     * The sources of a shader program.
+     */
+    public static class Source {
+
+        /**
+         * The program's name, used in cache file names and error messages.
+         */
+        public final String name;
+
+        /**
+         * The vertex shader source.
+         */
+        public final String vertex;
+
+        /**
+         * The fragment shader source.
+         */
+        public final String fragment;
+
+        /**
+         * Creates a program source.
+         * @param name The program's name.
+         * @param vertex The vertex shader source.
+         * @param fragment The fragment shader source.
+         */
+        public Source(String name, String vertex, String fragment) {
+            this.name = name;
+            this.vertex = vertex;
+            this.fragment = fragment;
+        }
+
+    }
+
+}
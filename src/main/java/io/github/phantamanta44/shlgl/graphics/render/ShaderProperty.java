@@ -1,9 +1,15 @@
 package io.github.phantamanta44.shlgl.graphics.render;
 
+import org.lwjgl.BufferUtils;
 import org.lwjgl.opengl.GL20;
+import org.lwjgl.opengl.GL21;
+
+import java.nio.FloatBuffer;
 
 /**
- * Represents a <code>uniform</code> property of a shader.
+ * Represents a <code>uniform</code> property of a shader. Each property remembers the last value it uploaded and skips
+ * uploads that wouldn't change anything. Values are only uploaded to the program that is current, so a property
+ * should only be set while its program is in use.
  * @author Evan Geng
  */
 public abstract class ShaderProperty {
@@ -18,6 +24,11 @@ public abstract class ShaderProperty {
      */
     protected final int propInd;
 
+    /**
+     * Whether the cached value matches what was last uploaded.
+     */
+    protected boolean valid;
+
     /**
      * Creates a ShaderProperty for the given shader and property index.
      * @param shaderProg The shader program comtaining the property.
@@ -26,19 +37,110 @@ public abstract class ShaderProperty {
     public ShaderProperty(int shaderProg, int propInd) {
         this.shaderProg = shaderProg;
         this.propInd = propInd;
+        this.valid = false;
+    }
+
+    /**
+     * Forgets the cached value, so the next set always uploads. Needed if the program is relinked.
+     */
+    public void invalidate() {
+        valid = false;
+    }
+
+    /**
+     * Copies values into a cache, reporting whether anything changed.
+     * @param cache The cached values.
+     * @param values The new values.
+     * @param valid Whether the cache holds a previously uploaded value.
+     * @return Whether the new values differ from the cache.
+     */
+    protected static boolean update(float[] cache, float[] values, boolean valid) {
+        boolean changed = !valid;
+        for (int i = 0; i < cache.length; i++) {
+            if (cache[i] != values[i]) {
+                cache[i] = values[i];
+                changed = true;
+            }
+        }
+        return changed;
     }
 
     /**
-     * Sets the value of this shader property.
-     * @param values The new values to populate the property with.
+     * Represents a <code>float</code> uniform.
      */
-    public abstract void set(float... values);
+    public static class Float1 extends ShaderProperty {
+
+        /**
+         * The last uploaded value.
+         */
+        private float value;
+
+        /**
+         * Creates a float property for the given shader and property index.
+         * @param shaderProg The shader program comtaining the property.
+         * @param propInd The property's location.
+         */
+        public Float1(int shaderProg, int propInd) {
+            super(shaderProg, propInd);
+        }
+
+        /**
+         * Sets the value of this shader property.
+         * @param value The new value.
+         */
+        public void set(float value) {
+            if (valid && this.value == value)
+                return;
+            this.value = value;
+            valid = true;
+            GL20.glUniform1f(propInd, value);
+        }
+
+    }
+
+    /**
+     * Represents an <code>int</code> or sampler uniform.
+     */
+    public static class Int1 extends ShaderProperty {
+
+        /**
+         * The last uploaded value.
+         */
+        private int value;
+
+        /**
+         * Creates an int property for the given shader and property index.
+         * @param shaderProg The shader program comtaining the property.
+         * @param propInd The property's location.
+         */
+        public Int1(int shaderProg, int propInd) {
+            super(shaderProg, propInd);
+        }
+
+        /**
+         * Sets the value of this shader property.
+         * @param value The new value.
+         */
+        public void set(int value) {
+            if (valid && this.value == value)
+                return;
+            this.value = value;
+            valid = true;
+            GL20.glUniform1i(propInd, value);
+        }
+
+    }
 
     /**
      * Represents a <code>vec4</code> uniform.
      */
     public static class Vec4 extends ShaderProperty {
 
+        /**
+         * The last uploaded value.
+         */
+        private final float[] cache = new float[4];
+
         /**
          * Creates a vec4 property for the given shader and property index.
          * @param shaderProg The shader program comtaining the property.
@@ -48,9 +150,68 @@ public abstract class ShaderProperty {
             super(shaderProg, propInd);
         }
 
-        @Override
-        public void set(float... values) {
-            GL20.glUniform4fv(propInd, values);
+        /**
+         * Sets the value of this shader property.
+         * @param x The first component.
+         * @param y The second component.
+         * @param z The third component.
+         * @param w The fourth component.
+         */
+        public void set(float x, float y, float z, float w) {
+            if (valid && cache[0] == x && cache[1] == y && cache[2] == z && cache[3] == w)
+                return;
+            cache[0] = x;
+            cache[1] = y;
+            cache[2] = z;
+            cache[3] = w;
+            valid = true;
+            GL20.glUniform4f(propInd, x, y, z, w);
+        }
+
+        /**
+         * Sets the value of this shader property.
+         * @param values An array holding the four components.
+         */
+        public void set(float[] values) {
+            set(values[0], values[1], values[2], values[3]);
+        }
+
+    }
+
+    /**
+     * Represents a <code>mat3x2</code> uniform, such as a 2D affine transformation.
+     */
+    public static class Mat3x2 extends ShaderProperty {
+
+        /**
+         * The last uploaded value.
+         */
+        private final float[] cache = new float[6];
+
+        /**
+         * The off-heap buffer values are uploaded from.
+         */
+        private final FloatBuffer upload = BufferUtils.createFloatBuffer(6);
+
+        /**
+         * Creates a mat3x2 property for the given shader and property index.
+         * @param shaderProg The shader program comtaining the property.
+         * @param propInd The property's location.
+         */
+        public Mat3x2(int shaderProg, int propInd) {
+            super(shaderProg, propInd);
+        }
+
+        /**
+         * Sets the value of this shader property.
+         * @param values The row-major matrix, as two rows of three.
+         */
+        public void set(float[] values) {
+            if (!update(cache, values, valid))
+                return;
+            valid = true;
+            upload.put(cache).flip();
+            GL21.glUniformMatrix3x2fv(propInd, true, upload);
         }
 
     }
@@ -60,6 +221,16 @@ public abstract class ShaderProperty {
      */
     public static class Mat4 extends ShaderProperty {
 
+        /**
+         * The last uploaded value.
+         */
+        private final float[] cache = new float[16];
+
+        /**
+         * The off-heap buffer values are uploaded from.
+         */
+        private final FloatBuffer upload = BufferUtils.createFloatBuffer(16);
+
         /**
          * Creates a mat4 property for the given shader and property index.
          * @param shaderProg The shader program comtaining the property.
@@ -69,9 +240,16 @@ public abstract class ShaderProperty {
             super(shaderProg, propInd);
         }
 
-        @Override
-        public void set(float... values) {
-            GL20.glUniformMatrix4fv(propInd, true, values);
+        /**
+         * Sets the value of this shader property.
+         * @param values The row-major matrix.
+         */
+        public void set(float[] values) {
+            if (!update(cache, values, valid))
+                return;
+            valid = true;
+            upload.put(cache).flip();
+            GL20.glUniformMatrix4fv(propInd, true, upload);
         }
 
     }
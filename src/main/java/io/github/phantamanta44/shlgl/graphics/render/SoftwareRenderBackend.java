@@ -0,0 +1,315 @@
+package io.github.phantamanta44.shlgl.graphics.render;
+
+import io.github.phantamanta44.shlgl.graphics.texture.TextureInfo;
+import io.github.phantamanta44.shlgl.graphics.texture.TextureManager;
+import io.github.phantamanta44.shlgl.util.io.ResourceUtils;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+/**
+ * A backend that rasterizes quads in pure Java into an ARGB framebuffer, for comparing frames against reference images
+ * on machines without a GPU. Render coordinates map one to one onto pixels, with the origin at the bottom left. Quads
+ * are filled by pixel centres and sampled with nearest-neighbour filtering, matching the OpenGL path closely but not
+ * bit for bit. Like the OpenGL path, quads overwrite the pixels behind them unless blending is enabled, in which case
+ * <code>GL_SRC_ALPHA, GL_ONE_MINUS_SRC_ALPHA</code> applies to all four channels and the framebuffer's alpha becomes
+ * <code>a * a + dstA * (1 - a)</code>. Textures must be registered with the backend to be sampled; unregistered
+ * textures and untextured quads are sampled as opaque white.
+ * @author Evan Geng
+ */
+public class SoftwareRenderBackend implements RenderBackend {
+
+    /**
+     * The framebuffer's width, in pixels.
+     */
+    private final int width;
+
+    /**
+     * The framebuffer's height, in pixels.
+     */
+    private final int height;
+
+    /**
+     * The framebuffer's pixels, packed as 0xAARRGGBB, row by row from the top.
+     */
+    private final int[] pixels;
+
+    /**
+     * The colour the framebuffer is cleared to at the start of each frame, packed as 0xAARRGGBB.
+     */
+    private int clearColour;
+
+    /**
+     * Map of registered textures to their pixels, packed as 0xAARRGGBB, row by row from the bottom.
+     */
+    private final Map<TextureInfo, int[]> textures;
+
+    /**
+     * The pixels of the texture being sampled, or <code>null</code> to sample white.
+     */
+    private int[] texels;
+
+    /**
+     * The width of the texture being sampled.
+     */
+    private int texW;
+
+    /**
+     * The height of the texture being sampled.
+     */
+    private int texH;
+
+    /**
+     * The colour modifier.
+     */
+    private final float[] colour;
+
+    /**
+     * Whether quads are alpha blended over the framebuffer rather than overwriting it.
+     */
+    private boolean blending;
+
+    /**
+     * Creates a software backend with a framebuffer of the given size, cleared to transparent black.
+     * @param width The framebuffer's width.
+     * @param height The framebuffer's height.
+     */
+    public SoftwareRenderBackend(int width, int height) {
+        if (width < 1 || height < 1)
+            throw new IllegalArgumentException("Framebuffer size must be positive!");
+        this.width = width;
+        this.height = height;
+        this.pixels = new int[width * height];
+        this.textures = new IdentityHashMap<>();
+        this.colour = new float[] {1F, 1F, 1F, 1F};
+    }
+
+    /**
+     * Registers an image as a texture's pixels.
+     * @param info The texture's info, as drawn with.
+     * @param image The texture's image, which should match the info's size.
+     */
+    public void putTexture(TextureInfo info, BufferedImage image) {
+        int w = image.getWidth(), h = image.getHeight();
+        int[] argb = image.getRGB(0, 0, w, h, null, 0, w);
+        int[] flipped = new int[w * h];
+        for (int row = 0; row < h; row++)
+            System.arraycopy(argb, row * w, flipped, (h - 1 - row) * w, w);
+        textures.put(info, flipped);
+    }
+
+    /**
+     * Loads a PNG image from the classpath as a texture for this backend. The returned info has no OpenGL storage and
+     * is only meant for drawing into software backends.
+     * @param path The path to the image.
+     * @return The texture's info.
+     * @throws IOException If the image could not be read.
+     */
+    public TextureInfo loadTexture(String path) throws IOException {
+        BufferedImage image;
+        try (InputStream in = ResourceUtils.getStream(path)) {
+            image = ImageIO.read(in);
+        }
+        if (image == null)
+            throw new IOException("Unreadable image: " + path);
+        TextureInfo info = TextureManager.createRenderTarget(image.getWidth(), image.getHeight());
+        putTexture(info, image);
+        return info;
+    }
+
+    /**
+     * Sets the colour the framebuffer is cleared to at the start of each frame.
+     * @param argb The colour, packed as 0xAARRGGBB.
+     */
+    public void setClearColour(int argb) {
+        this.clearColour = argb;
+    }
+
+    /**
+     * Sets whether quads are alpha blended, as {@link io.github.phantamanta44.shlgl.SHLGL#setBlending(boolean)} does
+     * for the OpenGL path. Disabled by default.
+     * @param blending Whether to blend quads.
+     */
+    public void setBlending(boolean blending) {
+        this.blending = blending;
+    }
+
+    @Override
+    public void beginFrame() {
+        Arrays.fill(pixels, clearColour);
+    }
+
+    @Override
+    public void setTexture(TextureInfo texture) {
+        texels = texture != null ? textures.get(texture) : null;
+        if (texels != null) {
+            texW = texture.getWidth();
+            texH = texture.getHeight();
+        }
+    }
+
+    @Override
+    public void setColour(float[] colour) {
+        System.arraycopy(colour, 0, this.colour, 0, 4);
+    }
+
+    @Override
+    public void drawQuad(float x1, float y1, float u1, float v1,
+                         float x2, float y2, float u2, float v2,
+                         float x3, float y3, float u3, float v3,
+                         float x4, float y4, float u4, float v4) {
+        fillTriangle(x1, y1, u1, v1, x2, y2, u2, v2, x3, y3, u3, v3);
+        fillTriangle(x3, y3, u3, v3, x4, y4, u4, v4, x1, y1, u1, v1);
+    }
+
+    /**
+     * Fills a triangle, covering the pixels whose centres lie inside it. Pixels on a shared edge are only filled by
+     * one of the triangles sharing it, so adjacent triangles don't blend twice.
+     * @param x1 The first vertex's x-coordinate.
+     * @param y1 The first vertex's y-coordinate.
+     * @param u1 The first vertex's x texture coordinate.
+     * @param v1 The first vertex's y texture coordinate.
+     * @param x2 The second vertex's x-coordinate.
+     * @param y2 The second vertex's y-coordinate.
+     * @param u2 The second vertex's x texture coordinate.
+     * @param v2 The second vertex's y texture coordinate.
+     * @param x3 The third vertex's x-coordinate.
+     * @param y3 The third vertex's y-coordinate.
+     * @param u3 The third vertex's x texture coordinate.
+     * @param v3 The third vertex's y texture coordinate.
+     */
+    private void fillTriangle(float x1, float y1, float u1, float v1,
+                              float x2, float y2, float u2, float v2,
+                              float x3, float y3, float u3, float v3) {
+        float area = (x2 - x1) * (y3 - y1) - (y2 - y1) * (x3 - x1);
+        if (area == 0F)
+            return;
+        if (area < 0F) {
+            fillTriangle(x1, y1, u1, v1, x3, y3, u3, v3, x2, y2, u2, v2);
+            return;
+        }
+        int minX = Math.max(0, (int)Math.floor(Math.min(x1, Math.min(x2, x3))));
+        int maxX = Math.min(width - 1, (int)Math.ceil(Math.max(x1, Math.max(x2, x3))));
+        int minY = Math.max(0, (int)Math.floor(Math.min(y1, Math.min(y2, y3))));
+        int maxY = Math.min(height - 1, (int)Math.ceil(Math.max(y1, Math.max(y2, y3))));
+        boolean tl1 = isTopLeft(x2, y2, x3, y3), tl2 = isTopLeft(x3, y3, x1, y1), tl3 = isTopLeft(x1, y1, x2, y2);
+        for (int py = minY; py <= maxY; py++) {
+            float cy = py + 0.5F;
+            for (int px = minX; px <= maxX; px++) {
+                float cx = px + 0.5F;
+                float w1 = (x3 - x2) * (cy - y2) - (y3 - y2) * (cx - x2);
+                float w2 = (x1 - x3) * (cy - y3) - (y1 - y3) * (cx - x3);
+                float w3 = (x2 - x1) * (cy - y1) - (y2 - y1) * (cx - x1);
+                if (w1 < 0F || w2 < 0F || w3 < 0F
+                        || (w1 == 0F && !tl1) || (w2 == 0F && !tl2) || (w3 == 0F && !tl3))
+                    continue;
+                float u = (w1 * u1 + w2 * u2 + w3 * u3) / area, v = (w1 * v1 + w2 * v2 + w3 * v3) / area;
+                blend(px, py, sample(u, v));
+            }
+        }
+    }
+
+    /**
+     * Checks whether an edge of a counter-clockwise triangle is a top or left edge, which own the pixels on them.
+     * @param ax The edge's start x-coordinate.
+     * @param ay The edge's start y-coordinate.
+     * @param bx The edge's end x-coordinate.
+     * @param by The edge's end y-coordinate.
+     * @return Whether the edge is a top or left edge.
+     */
+    private static boolean isTopLeft(float ax, float ay, float bx, float by) {
+        return (ay == by && bx < ax) || by < ay;
+    }
+
+    /**
+     * Samples the current texture with nearest-neighbour filtering, clamping to its edges.
+     * @param u The x texture coordinate, normalized.
+     * @param v The y texture coordinate, normalized.
+     * @return The texel, packed as 0xAARRGGBB.
+     */
+    private int sample(float u, float v) {
+        if (texels == null)
+            return 0xFFFFFFFF;
+        int tx = Math.min(texW - 1, Math.max(0, (int)Math.floor(u * texW)));
+        int ty = Math.min(texH - 1, Math.max(0, (int)Math.floor(v * texH)));
+        return texels[ty * texW + tx];
+    }
+
+    /**
+     * Modulates a texel by the colour modifier and writes it into a pixel, blending it over the pixel by its alpha
+     * with the same factors for every channel as the OpenGL path if blending is enabled.
+     * @param px The pixel's x-coordinate.
+     * @param py The pixel's y-coordinate, counting from the bottom.
+     * @param texel The texel, packed as 0xAARRGGBB.
+     */
+    private void blend(int px, int py, int texel) {
+        float a = (texel >>> 24) / 255F * colour[3];
+        float r = (texel >>> 16 & 0xFF) * colour[0];
+        float g = (texel >>> 8 & 0xFF) * colour[1];
+        float b = (texel & 0xFF) * colour[2];
+        int index = (height - 1 - py) * width + px;
+        if (!blending) {
+            pixels[index] = Math.round(a * 255F) << 24 | Math.round(r) << 16 | Math.round(g) << 8 | Math.round(b);
+            return;
+        }
+        if (a <= 0F)
+            return;
+        int dst = pixels[index];
+        float inv = 1F - a;
+        int outA = Math.round(Math.min(255F, a * a * 255F + (dst >>> 24) * inv));
+        int outR = Math.round(Math.min(255F, r * a + (dst >>> 16 & 0xFF) * inv));
+        int outG = Math.round(Math.min(255F, g * a + (dst >>> 8 & 0xFF) * inv));
+        int outB = Math.round(Math.min(255F, b * a + (dst & 0xFF) * inv));
+        pixels[index] = outA << 24 | outR << 16 | outG << 8 | outB;
+    }
+
+    /**
+     * Retrieves the framebuffer's pixels. The array is live and is overwritten by the next frame.
+     * @return The pixels, packed as 0xAARRGGBB, row by row from the top.
+     */
+    public int[] getPixels() {
+        return pixels;
+    }
+
+    /**
+     * Retrieves a pixel of the framebuffer.
+     * @param x The pixel's x-coordinate.
+     * @param y The pixel's y-coordinate, counting from the bottom.
+     * @return The pixel, packed as 0xAARRGGBB.
+     */
+    public int getPixel(int x, int y) {
+        return pixels[(height - 1 - y) * width + x];
+    }
+
+    /**
+     * Copies the framebuffer into an image, such as for saving or comparing against a reference image.
+     * @return The image.
+     */
+    public BufferedImage toImage() {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+        image.setRGB(0, 0, width, height, pixels, 0, width);
+        return image;
+    }
+
+    /**
+     * Retrieves the framebuffer's width.
+     * @return The width.
+     */
+    public int getWidth() {
+        return width;
+    }
+
+    /**
+     * Retrieves the framebuffer's height.
+     * @return The height.
+     */
+    public int getHeight() {
+        return height;
+    }
+
+}
@@ -0,0 +1,361 @@
+package io.github.phantamanta44.shlgl.graphics.render;
+
+import org.lwjgl.BufferUtils;
+import org.lwjgl.opengl.GL11;
+import org.lwjgl.opengl.GL15;
+import org.lwjgl.opengl.GL20;
+import org.lwjgl.opengl.GL30;
+import org.lwjgl.opengl.GL31;
+import org.lwjgl.opengl.GL33;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Accumulates sprites as per-instance attribute records and draws them as instances of a single shared unit quad.
+ * Sprites can either sample the bound texture or a layer of the bound array texture; switching between the two
+ * splits the batch.
+ * @author Evan Geng
+ */
+public class SpriteInstanceBatch {
+
+    /**
+     * The size of a single instance record, in bytes: rectangle, UV rectangle, rotation and array layer as floats,
+     * then a colour as four normalized bytes.
+     */
+    public static final int BYTES_PER_INSTANCE = 10 * Float.BYTES + 4;
+
+    /**
+     * The shader program used to draw instances.
+     */
+    private final int program;
+
+    /**
+     * The shader program used to draw instances sampling array textures, or zero if unavailable.
+     */
+    private final int arrayProgram;
+
+    /**
+     * The program to restore after drawing.
+     */
+    private final int restoreProgram;
+
+    /**
+     * The vertex array object to restore after drawing.
+     */
+    private final int restoreVao;
+
+    /**
+     * The array buffer to restore after drawing.
+     */
+    private final int restoreVbo;
+
+    /**
+     * The vertex array object holding the instanced attribute layout.
+     */
+    private final int vao;
+
+    /**
+     * The vertex array object holding the attribute layout of the array program, or zero if unavailable.
+     */
+    private final int arrayVao;
+
+    /**
+     * The buffer holding the instance records.
+     */
+    private final int instanceVbo;
+
+    /**
+     * The transformation kernel uniform of the instanced program.
+     */
+    private final ShaderProperty.Mat4 trans;
+
+    /**
+     * The transformation kernel uniform of the array program, or <code>null</code> if unavailable.
+     */
+    private final ShaderProperty.Mat4 arrayTrans;
+
+    /**
+     * The colour modifier uniform of the instanced program.
+     */
+    private final ShaderProperty.Vec4 colourTrans;
+
+    /**
+     * The colour modifier uniform of the array program, or <code>null</code> if unavailable.
+     */
+    private final ShaderProperty.Vec4 arrayColourTrans;
+
+    /**
+     * The staging buffer that instance records are written into.
+     */
+    private final ByteBuffer instances;
+
+    /**
+     * The maximum number of instances this batch can hold before it must be flushed.
+     */
+    private final int capacity;
+
+    /**
+     * The transformation applied to the pending instances.
+     */
+    private final float[] transform;
+
+    /**
+     * The colour modifier applied to the pending instances, on top of their own colours.
+     */
+    private final float[] colour;
+
+    /**
+     * The number of instances currently in the batch.
+     */
+    private int count;
+
+    /**
+     * Whether the pending instances sample the bound array texture.
+     */
+    private boolean layered;
+
+    /**
+     * The number of draw calls issued since the last call to {@link #resetDrawCalls()}.
+     */
+    private int drawCalls;
+
+    /**
+     * Creates an instance batch and its GL objects. Must be called on the GL thread with OpenGL 3.3 available.
+     * @param capacity The maximum number of instances per draw call.
+     * @param program The instanced shader program.
+     * @param restoreProgram The program to make current again after drawing.
+     * @param restoreVao The vertex array object to bind again after drawing.
+     * @param restoreVbo The array buffer to bind again after drawing.
+     */
+    public SpriteInstanceBatch(int capacity, int program, int restoreProgram, int restoreVao, int restoreVbo) {
+        this(capacity, program, 0, restoreProgram, restoreVao, restoreVbo);
+    }
+
+    /**
+     * Creates an instance batch that can also draw layers of array textures. Must be called on the GL thread with
+     * OpenGL 3.3 available.
+     * @param capacity The maximum number of instances per draw call.
+     * @param program The instanced shader program.
+     * @param arrayProgram The instanced shader program sampling array textures, or zero if unavailable.
+     * @param restoreProgram The program to make current again after drawing.
+     * @param restoreVao The vertex array object to bind again after drawing.
+     * @param restoreVbo The array buffer to bind again after drawing.
+     */
+    public SpriteInstanceBatch(int capacity, int program, int arrayProgram,
+                               int restoreProgram, int restoreVao, int restoreVbo) {
+        if (capacity < 1)
+            throw new IllegalArgumentException("Batch capacity must be positive!");
+        this.capacity = capacity;
+        this.program = program;
+        this.arrayProgram = arrayProgram;
+        this.restoreProgram = restoreProgram;
+        this.restoreVao = restoreVao;
+        this.restoreVbo = restoreVbo;
+        this.instances = BufferUtils.createByteBuffer(capacity * BYTES_PER_INSTANCE);
+        this.transform = new float[16];
+        this.colour = new float[] {1F, 1F, 1F, 1F};
+        this.trans = new ShaderProperty.Mat4(program, GL20.glGetUniformLocation(program, "transformKernel"));
+        this.colourTrans = new ShaderProperty.Vec4(program, GL20.glGetUniformLocation(program, "colourTransform"));
+        if (arrayProgram != 0) {
+            this.arrayTrans = new ShaderProperty.Mat4(arrayProgram,
+                    GL20.glGetUniformLocation(arrayProgram, "transformKernel"));
+            this.arrayColourTrans = new ShaderProperty.Vec4(arrayProgram,
+                    GL20.glGetUniformLocation(arrayProgram, "colourTransform"));
+        } else {
+            this.arrayTrans = null;
+            this.arrayColourTrans = null;
+        }
+        int quadVbo = GL15.glGenBuffers();
+        GLState.bindBuffer(GL15.GL_ARRAY_BUFFER, quadVbo);
+        GL15.glBufferData(GL15.GL_ARRAY_BUFFER, new float[] {0F, 0F, 1F, 0F, 0F, 1F, 1F, 1F}, GL15.GL_STATIC_DRAW);
+        this.instanceVbo = GL15.glGenBuffers();
+        GLState.bindBuffer(GL15.GL_ARRAY_BUFFER, instanceVbo);
+        GL15.glBufferData(GL15.GL_ARRAY_BUFFER, instances.capacity(), GL15.GL_STREAM_DRAW);
+        this.vao = createVertexArray(program, quadVbo);
+        this.arrayVao = arrayProgram != 0 ? createVertexArray(arrayProgram, quadVbo) : 0;
+        GLState.bindVertexArray(restoreVao);
+        GLState.bindBuffer(GL15.GL_ARRAY_BUFFER, restoreVbo);
+    }
+
+    /**
+     * Creates a vertex array object describing the shared quad and instance buffers to a program.
+     * @param prog The program.
+     * @param quadVbo The buffer holding the unit quad.
+     * @return The vertex array object's handle.
+     */
+    private int createVertexArray(int prog, int quadVbo) {
+        int handle = GL30.glGenVertexArrays();
+        GLState.bindVertexArray(handle);
+        GLState.bindBuffer(GL15.GL_ARRAY_BUFFER, quadVbo);
+        attrib(prog, "corner", 2, GL11.GL_FLOAT, false, 0, 0, 0);
+        GLState.bindBuffer(GL15.GL_ARRAY_BUFFER, instanceVbo);
+        attrib(prog, "instRect", 4, GL11.GL_FLOAT, false, BYTES_PER_INSTANCE, 0, 1);
+        attrib(prog, "instUV", 4, GL11.GL_FLOAT, false, BYTES_PER_INSTANCE, 4 * Float.BYTES, 1);
+        attrib(prog, "instRotation", 1, GL11.GL_FLOAT, false, BYTES_PER_INSTANCE, 8 * Float.BYTES, 1);
+        attrib(prog, "instLayer", 1, GL11.GL_FLOAT, false, BYTES_PER_INSTANCE, 9 * Float.BYTES, 1);
+        attrib(prog, "instColour", 4, GL11.GL_UNSIGNED_BYTE, true, BYTES_PER_INSTANCE, 10 * Float.BYTES, 1);
+        return handle;
+    }
+
+    /**
+     * Enables and describes a vertex attribute of an instanced program. Attributes the program doesn't use are
+     * skipped.
+     * @param prog The program.
+     * @param name The attribute's name.
+     * @param size The number of components.
+     * @param type The component type.
+     * @param normalized Whether integer components are normalized.
+     * @param stride The byte stride between records.
+     * @param offset The byte offset within a record.
+     * @param divisor The number of instances per attribute advance, or zero for per-vertex attributes.
+     */
+    private static void attrib(int prog, String name, int size, int type, boolean normalized,
+                               int stride, int offset, int divisor) {
+        int loc = GL20.glGetAttribLocation(prog, name);
+        if (loc == -1)
+            return;
+        GL20.glVertexAttribPointer(loc, size, type, normalized, stride, offset);
+        GL20.glEnableVertexAttribArray(loc);
+        GL33.glVertexAttribDivisor(loc, divisor);
+    }
+
+    /**
+     * Sets the transformation applied to the pending instances. Should only be changed while the batch is empty.
+     * @param matrix The row-major transformation matrix, excluding the projection.
+     */
+    public void setTransform(float[] matrix) {
+        System.arraycopy(matrix, 0, transform, 0, 16);
+    }
+
+    /**
+     * Sets the colour modifier applied to the pending instances, which multiplies each instance's own colour. Should
+     * only be changed while the batch is empty.
+     * @param values The red, green, blue and alpha components.
+     */
+    public void setColour(float[] values) {
+        System.arraycopy(values, 0, colour, 0, 4);
+    }
+
+    /**
+     * Appends a sprite instance, flushing first if the batch is full.
+     * @param x The sprite's x-coordinate.
+     * @param y The sprite's y-coordinate.
+     * @param width The sprite's width.
+     * @param height The sprite's height.
+     * @param u1 The left texture coordinate.
+     * @param v1 The bottom texture coordinate.
+     * @param u2 The right texture coordinate.
+     * @param v2 The top texture coordinate.
+     * @param rotation The rotation about the sprite's centre, in radians.
+     * @param rgba The sprite's colour, packed as 0xRRGGBBAA.
+     */
+    public void put(float x, float y, float width, float height,
+                    float u1, float v1, float u2, float v2, float rotation, int rgba) {
+        append(false, x, y, width, height, u1, v1, u2, v2, rotation, 0F, rgba);
+    }
+
+    /**
+     * Appends a sprite instance showing a whole layer of the bound array texture, flushing first if the batch is full
+     * or holds ordinary sprites.
+     * @param x The sprite's x-coordinate.
+     * @param y The sprite's y-coordinate.
+     * @param width The sprite's width.
+     * @param height The sprite's height.
+     * @param layer The array layer.
+     * @param rotation The rotation about the sprite's centre, in radians.
+     * @param rgba The sprite's colour, packed as 0xRRGGBBAA.
+     */
+    public void putLayer(float x, float y, float width, float height, int layer, float rotation, int rgba) {
+        if (arrayProgram == 0)
+            throw new IllegalStateException("Array textures are unsupported by this batch!");
+        append(true, x, y, width, height, 0F, 0F, 1F, 1F, rotation, layer, rgba);
+    }
+
+    /**
+     * Appends an instance record, flushing first if the batch is full or holds the other kind of sprite.
+     * @param layered Whether the instance samples the bound array texture.
+     * @param x The sprite's x-coordinate.
+     * @param y The sprite's y-coordinate.
+     * @param width The sprite's width.
+     * @param height The sprite's height.
+     * @param u1 The left texture coordinate.
+     * @param v1 The bottom texture coordinate.
+     * @param u2 The right texture coordinate.
+     * @param v2 The top texture coordinate.
+     * @param rotation The rotation about the sprite's centre, in radians.
+     * @param layer The array layer.
+     * @param rgba The sprite's colour, packed as 0xRRGGBBAA.
+     */
+    private void append(boolean layered, float x, float y, float width, float height,
+                        float u1, float v1, float u2, float v2, float rotation, float layer, int rgba) {
+        if (count == capacity || (count > 0 && this.layered != layered))
+            flush();
+        this.layered = layered;
+        instances.putFloat(x).putFloat(y).putFloat(width).putFloat(height)
+                .putFloat(u1).putFloat(v1).putFloat(u2).putFloat(v2)
+                .putFloat(rotation).putFloat(layer)
+                .put((byte)(rgba >>> 24)).put((byte)(rgba >>> 16)).put((byte)(rgba >>> 8)).put((byte)rgba);
+        count++;
+    }
+
+    /**
+     * Checks whether the batch can draw layers of array textures.
+     * @return Whether array textures are supported.
+     */
+    public boolean supportsArrays() {
+        return arrayProgram != 0;
+    }
+
+    /**
+     * Checks whether the batch has no pending instances.
+     * @return Whether the batch is empty.
+     */
+    public boolean isEmpty() {
+        return count == 0;
+    }
+
+    /**
+     * Uploads all pending instances and draws them in a single call. Must be called on the GL thread.
+     */
+    public void flush() {
+        if (count == 0)
+            return;
+        instances.flip();
+        if (layered) {
+            GLState.useProgram(arrayProgram);
+            arrayTrans.set(transform);
+            arrayColourTrans.set(colour);
+            GLState.bindVertexArray(arrayVao);
+        } else {
+            GLState.useProgram(program);
+            trans.set(transform);
+            colourTrans.set(colour);
+            GLState.bindVertexArray(vao);
+        }
+        GLState.bindBuffer(GL15.GL_ARRAY_BUFFER, instanceVbo);
+        GL15.glBufferData(GL15.GL_ARRAY_BUFFER, instances, GL15.GL_STREAM_DRAW);
+        GL31.glDrawArraysInstanced(GL11.GL_TRIANGLE_STRIP, 0, 4, count);
+        GLState.bindVertexArray(restoreVao);
+        GLState.bindBuffer(GL15.GL_ARRAY_BUFFER, restoreVbo);
+        GLState.useProgram(restoreProgram);
+        instances.clear();
+        count = 0;
+        drawCalls++;
+    }
+
+    /**
+     * Retrieves the number of draw calls issued since the last reset.
+     * @return The draw call count.
+     */
+    public int getDrawCalls() {
+        return drawCalls;
+    }
+
+    /**
+     * Resets the draw call counter.
+     */
+    public void resetDrawCalls() {
+        drawCalls = 0;
+    }
+
+}
@@ -0,0 +1,202 @@
+package io.github.phantamanta44.shlgl.graphics.render;
+
+import org.lwjgl.opengl.ARBBufferStorage;
+import org.lwjgl.opengl.GL;
+import org.lwjgl.opengl.GL15;
+import org.lwjgl.opengl.GL30;
+import org.lwjgl.opengl.GL32;
+import org.lwjgl.opengl.GL44;
+import org.lwjgl.opengl.GLCapabilities;
+import org.lwjgl.system.MemoryUtil;
+
+import java.nio.ByteBuffer;
+
+import static org.lwjgl.system.MemoryUtil.NULL;
+
+/**
+ * A GPU buffer for data that is rewritten every frame, split into a ring of segments so the CPU can write one segment
+ * while the GPU still reads the others. Uses a persistently mapped buffer where <code>ARB_buffer_storage</code> is
+ * available and otherwise falls back to unsynchronized mapping with orphaning.
+ * @author Evan Geng
+ */
+public class StreamingBuffer {
+
+    /**
+     * How long to wait on a fence per attempt, in nanoseconds.
+     */
+    private static final long FENCE_TIMEOUT = 1000000000L;
+
+    /**
+     * The buffer binding target.
+     */
+    private final int target;
+
+    /**
+     * The buffer's handle.
+     */
+    private final int handle;
+
+    /**
+     * The size of each segment, in bytes.
+     */
+    private final int segmentSize;
+
+    /**
+     * The number of segments in the ring.
+     */
+    private final int segmentCount;
+
+    /**
+     * Whether the buffer is persistently mapped.
+     */
+    private final boolean persistent;
+
+    /**
+     * The address of the persistent mapping, or {@link org.lwjgl.system.MemoryUtil#NULL} if not persistent.
+     */
+    private final long mapping;
+
+    /**
+     * The fence guarding each segment, or zero if the segment is not in flight.
+     */
+    private final long[] fences;
+
+    /**
+     * The segment currently being written.
+     */
+    private int segment;
+
+    /**
+     * The write position within the current segment.
+     */
+    private int cursor;
+
+    /**
+     * Creates a streaming buffer and binds it to its target. Must be called on the GL thread.
+     * @param target The buffer binding target, e.g. {@link GL15#GL_ARRAY_BUFFER}.
+     * @param segmentSize The size of each segment, in bytes.
+     * @param segmentCount The number of segments in the ring.
+     */
+    public StreamingBuffer(int target, int segmentSize, int segmentCount) {
+        if (segmentSize < 1 || segmentCount < 1)
+            throw new IllegalArgumentException("Segment size and count must be positive!");
+        this.target = target;
+        this.segmentSize = segmentSize;
+        this.segmentCount = segmentCount;
+        this.fences = new long[segmentCount];
+        this.handle = GL15.glGenBuffers();
+        GLState.bindBuffer(target, handle);
+        long size = (long)segmentSize * segmentCount;
+        GLCapabilities caps = GL.getCapabilities();
+        this.persistent = caps.OpenGL44 || caps.GL_ARB_buffer_storage;
+        if (persistent) {
+            int flags = GL30.GL_MAP_WRITE_BIT | GL44.GL_MAP_PERSISTENT_BIT | GL44.GL_MAP_COHERENT_BIT;
+            if (caps.OpenGL44)
+                GL44.glBufferStorage(target, size, flags);
+            else
+                ARBBufferStorage.glBufferStorage(target, size, flags);
+            this.mapping = GL30.nglMapBufferRange(target, 0, size, flags);
+            if (mapping == NULL)
+                throw new IllegalStateException("Failed to map streaming buffer!");
+        } else {
+            GL15.glBufferData(target, size, GL15.GL_STREAM_DRAW);
+            this.mapping = NULL;
+        }
+    }
+
+    /**
+     * Retrieves the buffer's handle.
+     * @return The handle.
+     */
+    public int getHandle() {
+        return handle;
+    }
+
+    /**
+     * Checks whether the buffer is persistently mapped.
+     * @return Whether persistent mapping is in use.
+     */
+    public boolean isPersistent() {
+        return persistent;
+    }
+
+    /**
+     * Retrieves the size of each segment.
+     * @return The segment size, in bytes.
+     */
+    public int getSegmentSize() {
+        return segmentSize;
+    }
+
+    /**
+     * Copies data into the current segment, moving to the next segment first if it doesn't fit. Without persistent
+     * mapping, this binds the buffer to its target.
+     * @param data The data to copy, between its position and limit.
+     * @return The byte offset of the copied data within the buffer.
+     */
+    public int upload(ByteBuffer data) {
+        int size = data.remaining();
+        if (size > segmentSize)
+            throw new IllegalArgumentException("Upload larger than a streaming buffer segment!");
+        if (cursor + size > segmentSize)
+            advance();
+        int offset = segment * segmentSize + cursor;
+        if (persistent) {
+            MemoryUtil.memCopy(MemoryUtil.memAddress(data), mapping + offset, size);
+        } else {
+            GLState.bindBuffer(target, handle);
+            long dst = GL30.nglMapBufferRange(target, offset, size, GL30.GL_MAP_WRITE_BIT
+                    | GL30.GL_MAP_UNSYNCHRONIZED_BIT | GL30.GL_MAP_INVALIDATE_RANGE_BIT);
+            if (dst == NULL)
+                throw new IllegalStateException("Failed to map streaming buffer!");
+            MemoryUtil.memCopy(MemoryUtil.memAddress(data), dst, size);
+            GL15.glUnmapBuffer(target);
+        }
+        cursor += size;
+        return offset;
+    }
+
+    /**
+     * Ends the current frame, retiring the current segment if anything was written to it.
+     */
+    public void endFrame() {
+        if (cursor > 0)
+            advance();
+    }
+
+    /**
+     * Fences the current segment and moves to the next one, waiting for the GPU to release it if necessary.
+     */
+    private void advance() {
+        if (persistent)
+            fences[segment] = GL32.glFenceSync(GL32.GL_SYNC_GPU_COMMANDS_COMPLETE, 0);
+        segment = (segment + 1) % segmentCount;
+        cursor = 0;
+        if (persistent) {
+            awaitFence(segment);
+        } else if (segment == 0) {
+            GLState.bindBuffer(target, handle);
+            GL15.glBufferData(target, (long)segmentSize * segmentCount, GL15.GL_STREAM_DRAW);
+        }
+    }
+
+    /**
+     * Blocks until the GPU has finished reading a segment.
+     * @param index The segment's index.
+     */
+    private void awaitFence(int index) {
+        long fence = fences[index];
+        if (fence == 0)
+            return;
+        while (true) {
+            int result = GL32.glClientWaitSync(fence, GL32.GL_SYNC_FLUSH_COMMANDS_BIT, FENCE_TIMEOUT);
+            if (result == GL32.GL_ALREADY_SIGNALED || result == GL32.GL_CONDITION_SATISFIED)
+                break;
+            if (result == GL32.GL_WAIT_FAILED)
+                throw new IllegalStateException("Failed to wait on streaming buffer fence!");
+        }
+        GL32.glDeleteSync(fence);
+        fences[index] = 0;
+    }
+
+}
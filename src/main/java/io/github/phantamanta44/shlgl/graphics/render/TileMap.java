@@ -0,0 +1,442 @@
+package io.github.phantamanta44.shlgl.graphics.render;
+
+import io.github.phantamanta44.shlgl.SHLGL;
+import io.github.phantamanta44.shlgl.graphics.texture.TextureInfo;
+import org.lwjgl.BufferUtils;
+import org.lwjgl.opengl.GL11;
+import org.lwjgl.opengl.GL15;
+import org.lwjgl.opengl.GL20;
+import org.lwjgl.opengl.GL30;
+import org.lwjgl.opengl.GL32;
+
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+import java.util.Arrays;
+
+/**
+ * A grid of tiles drawn from a tileset texture, split into square chunks that each keep their quads in a dedicated
+ * vertex buffer. Only chunks in view are drawn, each with a single call, and editing a tile only re-uploads the part
+ * of its chunk that changed. Tile (0, 0) is at the bottom left of the map.
+ * @author Evan Geng
+ */
+public class TileMap {
+
+    /**
+     * The width and height of a chunk, in tiles.
+     */
+    public static final int CHUNK_SIZE = 32;
+
+    /**
+     * The number of tiles in a chunk.
+     */
+    private static final int CHUNK_TILES = CHUNK_SIZE * CHUNK_SIZE;
+
+    /**
+     * The tile ID of an empty tile.
+     */
+    public static final int EMPTY = -1;
+
+    /**
+     * The map's width, in tiles.
+     */
+    private final int width;
+
+    /**
+     * The map's height, in tiles.
+     */
+    private final int height;
+
+    /**
+     * The width of a tile, in render coordinates.
+     */
+    private final float tileWidth;
+
+    /**
+     * The height of a tile, in render coordinates.
+     */
+    private final float tileHeight;
+
+    /**
+     * The texture tiles are drawn from.
+     */
+    private final TextureInfo tileset;
+
+    /**
+     * The width of a tile in the tileset, in texture pixels.
+     */
+    private final int tilesetTileWidth;
+
+    /**
+     * The height of a tile in the tileset, in texture pixels.
+     */
+    private final int tilesetTileHeight;
+
+    /**
+     * The number of chunks across the map.
+     */
+    private final int chunksX;
+
+    /**
+     * The number of chunks up the map.
+     */
+    private final int chunksY;
+
+    /**
+     * The tile IDs, row by row from the bottom.
+     */
+    private final int[] tiles;
+
+    /**
+     * The chunks, row by row from the bottom.
+     */
+    private final Chunk[] chunks;
+
+    /**
+     * The staging buffer chunk vertices are built in before being uploaded, or <code>null</code> if not yet created.
+     */
+    private ByteBuffer staging;
+
+    /**
+     * The IDs of the dirty tiles being uploaded, indexed by slot and copied while holding the chunk's lock.
+     */
+    private final int[] uploadIds = new int[CHUNK_TILES];
+
+    /**
+     * The tileset size the uploaded texture coordinates were computed for: width, height.
+     */
+    private final int[] uploadedTilesetSize = new int[2];
+
+    /**
+     * Creates an empty tile map.
+     * @param width The map's width, in tiles.
+     * @param height The map's height, in tiles.
+     * @param tileWidth The width of a tile, in render coordinates.
+     * @param tileHeight The height of a tile, in render coordinates.
+     * @param tileset The texture tiles are drawn from, laid out as a grid of tiles numbered left to right, then top
+     *                to bottom.
+     * @param tilesetTileWidth The width of a tile in the tileset, in texture pixels.
+     * @param tilesetTileHeight The height of a tile in the tileset, in texture pixels.
+     */
+    public TileMap(int width, int height, float tileWidth, float tileHeight,
+                   TextureInfo tileset, int tilesetTileWidth, int tilesetTileHeight) {
+        if (width < 1 || height < 1)
+            throw new IllegalArgumentException("Tile map size must be positive!");
+        if (tilesetTileWidth < 1 || tilesetTileHeight < 1)
+            throw new IllegalArgumentException("Tileset tile size must be positive!");
+        this.width = width;
+        this.height = height;
+        this.tileWidth = tileWidth;
+        this.tileHeight = tileHeight;
+        this.tileset = tileset;
+        this.tilesetTileWidth = tilesetTileWidth;
+        this.tilesetTileHeight = tilesetTileHeight;
+        this.chunksX = (width + CHUNK_SIZE - 1) / CHUNK_SIZE;
+        this.chunksY = (height + CHUNK_SIZE - 1) / CHUNK_SIZE;
+        this.tiles = new int[width * height];
+        Arrays.fill(tiles, EMPTY);
+        this.chunks = new Chunk[chunksX * chunksY];
+        for (int i = 0; i < chunks.length; i++)
+            chunks[i] = new Chunk();
+    }
+
+    /**
+     * Sets a tile. Safe to call from any thread; only the changed part of the tile's chunk is uploaded again.
+     * @param x The tile's column.
+     * @param y The tile's row, counting from the bottom.
+     * @param id The tile's ID in the tileset, or {@link #EMPTY}.
+     */
+    public void setTile(int x, int y, int id) {
+        checkBounds(x, y);
+        Chunk chunk = chunks[(y / CHUNK_SIZE) * chunksX + x / CHUNK_SIZE];
+        int slot = (y % CHUNK_SIZE) * CHUNK_SIZE + x % CHUNK_SIZE;
+        synchronized (chunk) {
+            int old = tiles[y * width + x];
+            if (old == id)
+                return;
+            tiles[y * width + x] = id;
+            if (old == EMPTY)
+                chunk.filled++;
+            else if (id == EMPTY)
+                chunk.filled--;
+            chunk.markDirty(slot, slot);
+        }
+    }
+
+    /**
+     * Retrieves a tile. Safe to call from any thread.
+     * @param x The tile's column.
+     * @param y The tile's row, counting from the bottom.
+     * @return The tile's ID in the tileset, or {@link #EMPTY}.
+     */
+    public int getTile(int x, int y) {
+        checkBounds(x, y);
+        synchronized (chunks[(y / CHUNK_SIZE) * chunksX + x / CHUNK_SIZE]) {
+            return tiles[y * width + x];
+        }
+    }
+
+    /**
+     * Checks that a tile lies within the map.
+     * @param x The tile's column.
+     * @param y The tile's row.
+     */
+    private void checkBounds(int x, int y) {
+        if (x < 0 || y < 0 || x >= width || y >= height)
+            throw new IndexOutOfBoundsException("Tile " + x + ", " + y + " is outside the map!");
+    }
+
+    /**
+     * Draws the chunks of the map that overlap the game resolution.
+     * @param buf The render buffer to draw into.
+     * @param x The x-coordinate of the map's bottom left corner.
+     * @param y The y-coordinate of the map's bottom left corner.
+     */
+    public void draw(RenderBuffer buf, float x, float y) {
+        if (SHLGL.isInitialized()) {
+            SHLGL shlgl = SHLGL.getInstance();
+            draw(buf, x, y, 0F, 0F, shlgl.getResolutionWidth(), shlgl.getResolutionHeight());
+        } else {
+            draw(buf, x, y, x, y, width * tileWidth, height * tileHeight);
+        }
+    }
+
+    /**
+     * Draws the chunks of the map that overlap a view rectangle, such as a camera's.
+     * @param buf The render buffer to draw into.
+     * @param x The x-coordinate of the map's bottom left corner.
+     * @param y The y-coordinate of the map's bottom left corner.
+     * @param viewX The view's left edge.
+     * @param viewY The view's bottom edge.
+     * @param viewWidth The view's width.
+     * @param viewHeight The view's height.
+     */
+    public void draw(RenderBuffer buf, float x, float y, float viewX, float viewY, float viewWidth, float viewHeight) {
+        float chunkW = CHUNK_SIZE * tileWidth, chunkH = CHUNK_SIZE * tileHeight;
+        int x1 = Math.max(0, (int)Math.floor((viewX - x) / chunkW));
+        int y1 = Math.max(0, (int)Math.floor((viewY - y) / chunkH));
+        int x2 = Math.min(chunksX - 1, (int)Math.floor((viewX + viewWidth - x) / chunkW));
+        int y2 = Math.min(chunksY - 1, (int)Math.floor((viewY + viewHeight - y) / chunkH));
+        if (x1 > x2 || y1 > y2)
+            return;
+        buf.pushMatrix();
+        buf.translate(x, y);
+        buf.drawTiles(this, x1, y1, x2, y2);
+        buf.popMatrix();
+    }
+
+    /**
+     * Retrieves the texture tiles are drawn from.
+     * @return The tileset.
+     */
+    public TextureInfo getTileset() {
+        return tileset;
+    }
+
+    /**
+     * Retrieves the map's width.
+     * @return The width, in tiles.
+     */
+    public int getWidth() {
+        return width;
+    }
+
+    /**
+     * Retrieves the map's height.
+     * @return The height, in tiles.
+     */
+    public int getHeight() {
+        return height;
+    }
+
+    /**
+     * Uploads and draws a range of chunks with the tileset and vertex layout bound by the caller. Must be called on
+     * the GL thread.
+     * @param program The program the chunks are drawn with.
+     * @param batch The quad batch whose index buffer the chunks are drawn with.
+     * @param x1 The first chunk column, inclusive.
+     * @param y1 The first chunk row, inclusive.
+     * @param x2 The last chunk column, inclusive.
+     * @param y2 The last chunk row, inclusive.
+     * @return The number of draw calls issued.
+     */
+    int drawChunks(int program, QuadBatch batch, int x1, int y1, int x2, int y2) {
+        if (tileset.getWidth() == 0 || tileset.getHeight() == 0)
+            return 0;
+        if (uploadedTilesetSize[0] != tileset.getWidth() || uploadedTilesetSize[1] != tileset.getHeight()) {
+            uploadedTilesetSize[0] = tileset.getWidth();
+            uploadedTilesetSize[1] = tileset.getHeight();
+            for (Chunk chunk : chunks) {
+                synchronized (chunk) {
+                    chunk.markDirty(0, CHUNK_TILES - 1);
+                }
+            }
+        }
+        int perCall = batch.getCapacity();
+        int calls = 0;
+        for (int cy = y1; cy <= y2; cy++) {
+            for (int cx = x1; cx <= x2; cx++) {
+                Chunk chunk = chunks[cy * chunksX + cx];
+                int from, to;
+                synchronized (chunk) {
+                    if (chunk.filled == 0)
+                        continue;
+                    from = chunk.dirtyFrom;
+                    to = chunk.dirtyTo;
+                    chunk.dirtyFrom = CHUNK_TILES;
+                    chunk.dirtyTo = -1;
+                    copyIds(cx, cy, from, to);
+                }
+                if (chunk.vao == 0)
+                    chunk.create(program, batch.getIndexBuffer());
+                else
+                    GLState.bindVertexArray(chunk.vao);
+                if (from <= to)
+                    upload(chunk, cx, cy, from, to);
+                for (int start = 0; start < CHUNK_TILES; start += perCall) {
+                    GL32.glDrawElementsBaseVertex(GL11.GL_TRIANGLES,
+                            Math.min(perCall, CHUNK_TILES - start) * QuadBatch.INDICES_PER_QUAD,
+                            batch.getIndexType(), 0L, start * QuadBatch.VERTICES_PER_QUAD);
+                    calls++;
+                }
+            }
+        }
+        return calls;
+    }
+
+    /**
+     * Copies the IDs of a range of a chunk's tile slots into {@link #uploadIds}. Must be called holding the chunk's
+     * lock, so that tiles set concurrently are never read half-way.
+     * @param cx The chunk's column.
+     * @param cy The chunk's row.
+     * @param from The first slot, inclusive.
+     * @param to The last slot, inclusive.
+     */
+    private void copyIds(int cx, int cy, int from, int to) {
+        for (int slot = from; slot <= to; slot++) {
+            int tx = cx * CHUNK_SIZE + slot % CHUNK_SIZE, ty = cy * CHUNK_SIZE + slot / CHUNK_SIZE;
+            uploadIds[slot] = tx < width && ty < height ? tiles[ty * width + tx] : EMPTY;
+        }
+    }
+
+    /**
+     * Rebuilds a range of a chunk's tile slots from {@link #uploadIds} and uploads them into its vertex buffer.
+     * @param chunk The chunk, whose vertex array object is bound.
+     * @param cx The chunk's column.
+     * @param cy The chunk's row.
+     * @param from The first slot, inclusive.
+     * @param to The last slot, inclusive.
+     */
+    private void upload(Chunk chunk, int cx, int cy, int from, int to) {
+        if (staging == null)
+            staging = BufferUtils.createByteBuffer(CHUNK_TILES * QuadBatch.FLOATS_PER_QUAD * Float.BYTES);
+        FloatBuffer vertices = staging.asFloatBuffer();
+        int columns = Math.max(1, tileset.getWidth() / tilesetTileWidth);
+        float du = (float)tilesetTileWidth / tileset.getWidth(), dv = (float)tilesetTileHeight / tileset.getHeight();
+        for (int slot = from; slot <= to; slot++) {
+            int tx = cx * CHUNK_SIZE + slot % CHUNK_SIZE, ty = cy * CHUNK_SIZE + slot / CHUNK_SIZE;
+            int id = uploadIds[slot];
+            if (id == EMPTY) {
+                for (int i = 0; i < QuadBatch.FLOATS_PER_QUAD; i++)
+                    vertices.put(0F);
+                continue;
+            }
+            float x1 = tx * tileWidth, y1 = ty * tileHeight, x2 = x1 + tileWidth, y2 = y1 + tileHeight;
+            float u1 = (id % columns) * du, u2 = u1 + du;
+            float v2 = 1F - (id / columns) * dv, v1 = v2 - dv;
+            vertices.put(x1).put(y1).put(u1).put(v1)
+                    .put(x2).put(y1).put(u2).put(v1)
+                    .put(x2).put(y2).put(u2).put(v2)
+                    .put(x1).put(y2).put(u1).put(v2);
+        }
+        vertices.flip();
+        GLState.bindBuffer(GL15.GL_ARRAY_BUFFER, chunk.vbo);
+        GL15.glBufferSubData(GL15.GL_ARRAY_BUFFER, (long)from * QuadBatch.FLOATS_PER_QUAD * Float.BYTES, vertices);
+    }
+
+    /**
+     * Deletes the chunks' vertex buffers. They are created again if the map is drawn afterwards. Safe to call from any
+     * thread; off the render thread, the buffers are deleted before the next frame is drawn.
+     */
+    public void dispose() {
+        if (!SHLGL.isRenderThread()) {
+            SHLGL.getInstance().runOnRenderThread(this::dispose);
+            return;
+        }
+        for (Chunk chunk : chunks) {
+            synchronized (chunk) {
+                if (chunk.vao != 0) {
+                    if (GLState.getVertexArray() == chunk.vao)
+                        GLState.bindVertexArray(0);
+                    GL30.glDeleteVertexArrays(chunk.vao);
+                    GL15.glDeleteBuffers(chunk.vbo);
+                    chunk.vao = chunk.vbo = 0;
+                }
+                chunk.markDirty(0, CHUNK_TILES - 1);
+            }
+        }
+    }
+
+    /**
+     * A square block of tiles sharing a vertex buffer, with a fixed quad slot per tile.
+     */
+    private static class Chunk {
+
+        /**
+         * The number of non-empty tiles in the chunk.
+         */
+        int filled;
+
+        /**
+         * The first slot changed since the last upload, inclusive.
+         */
+        int dirtyFrom = 0;
+
+        /**
+         * The last slot changed since the last upload, inclusive.
+         */
+        int dirtyTo = CHUNK_TILES - 1;
+
+        /**
+         * The vertex array object, or zero if not yet created.
+         */
+        int vao;
+
+        /**
+         * The vertex buffer, or zero if not yet created.
+         */
+        int vbo;
+
+        /**
+         * Widens the range of slots to upload.
+         * @param from The first changed slot.
+         * @param to The last changed slot.
+         */
+        void markDirty(int from, int to) {
+            dirtyFrom = Math.min(dirtyFrom, from);
+            dirtyTo = Math.max(dirtyTo, to);
+        }
+
+        /**
+         * Creates and binds the chunk's vertex array object and allocates its vertex buffer.
+         * @param program The program the chunk is drawn with.
+         * @param indexBuffer The quad index buffer.
+         */
+        void create(int program, int indexBuffer) {
+            vao = GL30.glGenVertexArrays();
+            GLState.bindVertexArray(vao);
+            vbo = GL15.glGenBuffers();
+            GLState.bindBuffer(GL15.GL_ARRAY_BUFFER, vbo);
+            GL15.glBufferData(GL15.GL_ARRAY_BUFFER, (long)CHUNK_TILES * QuadBatch.FLOATS_PER_QUAD * Float.BYTES,
+                    GL15.GL_STATIC_DRAW);
+            int loc = GL20.glGetAttribLocation(program, "posXY");
+            GL20.glVertexAttribPointer(loc, 2, GL11.GL_FLOAT, false, QuadBatch.BYTES_PER_VERTEX, 0);
+            GL20.glEnableVertexAttribArray(loc);
+            loc = GL20.glGetAttribLocation(program, "posUV");
+            GL20.glVertexAttribPointer(loc, 2, GL11.GL_FLOAT, false, QuadBatch.BYTES_PER_VERTEX, 2 * Float.BYTES);
+            GL20.glEnableVertexAttribArray(loc);
+            GLState.bindBuffer(GL15.GL_ELEMENT_ARRAY_BUFFER, indexBuffer);
+        }
+
+    }
+
+}
@@ -0,0 +1,89 @@
+package io.github.phantamanta44.shlgl.graphics.render;
+
+import org.lwjgl.BufferUtils;
+import org.lwjgl.opengl.GL15;
+import org.lwjgl.opengl.GL30;
+import org.lwjgl.opengl.GL31;
+
+import java.nio.FloatBuffer;
+
+/**
+ * A uniform buffer object shared by every program that declares the matching block. Values are staged off-heap and
+ * only uploaded when they changed, so per-frame constants cost one upload per frame at most.
+ * @author Evan Geng
+ */
+public class UniformBuffer {
+
+    /**
+     * The buffer's handle.
+     */
+    private final int handle;
+
+    /**
+     * The binding point the buffer is attached to.
+     */
+    private final int binding;
+
+    /**
+     * The staged contents of the buffer.
+     */
+    private final FloatBuffer data;
+
+    /**
+     * Whether the staged contents differ from what was last uploaded.
+     */
+    private boolean dirty;
+
+    /**
+     * Creates a uniform buffer and attaches it to a binding point. Must be called on the GL thread.
+     * @param floats The size of the buffer, in floats, laid out according to the block's std140 layout.
+     * @param binding The binding point.
+     */
+    public UniformBuffer(int floats, int binding) {
+        this.binding = binding;
+        this.data = BufferUtils.createFloatBuffer(floats);
+        this.handle = GL15.glGenBuffers();
+        GLState.bindBuffer(GL31.GL_UNIFORM_BUFFER, handle);
+        GL15.glBufferData(GL31.GL_UNIFORM_BUFFER, (long)floats * Float.BYTES, GL15.GL_DYNAMIC_DRAW);
+        GL30.glBindBufferBase(GL31.GL_UNIFORM_BUFFER, binding, handle);
+        this.dirty = true;
+    }
+
+    /**
+     * Attaches a program's uniform block to this buffer's binding point.
+     * @param program The shader program.
+     * @param blockName The name of the uniform block.
+     */
+    public void attach(int program, String blockName) {
+        int index = GL31.glGetUniformBlockIndex(program, blockName);
+        if (index == GL31.GL_INVALID_INDEX)
+            throw new IllegalArgumentException("No such uniform block: " + blockName);
+        GL31.glUniformBlockBinding(program, index, binding);
+    }
+
+    /**
+     * Stages values at an offset in the buffer.
+     * @param offset The offset, in floats.
+     * @param values The values to stage.
+     */
+    public void set(int offset, float[] values) {
+        for (int i = 0; i < values.length; i++) {
+            if (data.get(offset + i) != values[i]) {
+                data.put(offset + i, values[i]);
+                dirty = true;
+            }
+        }
+    }
+
+    /**
+     * Uploads the staged values if any of them changed. Must be called on the GL thread.
+     */
+    public void upload() {
+        if (!dirty)
+            return;
+        GLState.bindBuffer(GL31.GL_UNIFORM_BUFFER, handle);
+        GL15.glBufferSubData(GL31.GL_UNIFORM_BUFFER, 0, data);
+        dirty = false;
+    }
+
+}
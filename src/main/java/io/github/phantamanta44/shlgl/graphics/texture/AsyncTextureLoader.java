@@ -0,0 +1,173 @@
+package io.github.phantamanta44.shlgl.graphics.texture;
+
+import io.github.phantamanta44.shlgl.graphics.render.GLState;
+import org.lwjgl.opengl.GL11;
+import org.lwjgl.opengl.GL15;
+import org.lwjgl.opengl.GL21;
+import org.lwjgl.opengl.GL30;
+import org.lwjgl.system.MemoryUtil;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.lwjgl.system.MemoryUtil.NULL;
+
+/**
+ * Decodes textures on worker threads and uploads them on the GL thread through a pixel buffer object, a few at a time
+ * so that no single frame pays for many uploads.
+ * @author Evan Geng
+ */
+class AsyncTextureLoader {
+
+    /**
+     * The number of bytes of pixel data uploaded per frame before the rest is deferred. At least one texture is
+     * always uploaded per frame.
+     */
+    private static final int UPLOAD_BUDGET = 4 * 1024 * 1024;
+
+    /**
+     * The pool decoding images.
+     */
+    private final ExecutorService decoders;
+
+    /**
+     * Decoded images waiting to be uploaded.
+     */
+    private final Queue<Upload> uploads;
+
+    /**
+     * The pixel unpack buffer uploads go through, or zero if not yet created.
+     */
+    private int pbo;
+
+    /**
+     * Creates a loader with a worker thread per spare core.
+     */
+    AsyncTextureLoader() {
+        int threads = Math.max(1, Runtime.getRuntime().availableProcessors() - 1);
+        this.decoders = Executors.newFixedThreadPool(threads, task -> {
+            Thread thread = new Thread(task, "SHLGL Texture Decoder");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.uploads = new ConcurrentLinkedQueue<>();
+    }
+
+    /**
+     * Starts decoding an image. Safe to call from any thread.
+     * @param path The path to the image.
+     * @param info The texture info to point at the texture once it is uploaded.
+     * @return A future completed on the GL thread once the texture is uploaded.
+     */
+    CompletableFuture<TextureInfo> load(String path, TextureInfo info) {
+        CompletableFuture<TextureInfo> future = new CompletableFuture<>();
+        CompletableFuture.supplyAsync(() -> {
+            try {
+                return TextureData.load(path);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }, decoders).whenComplete((image, e) -> {
+            if (e != null)
+                future.completeExceptionally(e.getCause() != null ? e.getCause() : e);
+            else
+                uploads.add(new Upload(path, image, info, future));
+        });
+        return future;
+    }
+
+    /**
+     * Uploads decoded images until this frame's budget is spent. Images whose texture was already loaded synchronously
+     * are dropped. Must be called on the GL thread.
+     */
+    void tick() {
+        int budget = UPLOAD_BUDGET;
+        Upload upload;
+        while (budget > 0 && (upload = uploads.poll()) != null) {
+            if (!TextureManager.isPending(upload.path, upload.info)) {
+                upload.future.complete(upload.info);
+                continue;
+            }
+            budget -= upload.image.data.remaining();
+            try {
+                upload(upload);
+            } catch (RuntimeException e) {
+                upload.future.completeExceptionally(e);
+            }
+        }
+    }
+
+    /**
+     * Uploads a decoded image through the pixel unpack buffer and completes its future.
+     * @param upload The upload.
+     */
+    private void upload(Upload upload) {
+        TextureData image = upload.image;
+        int size = image.data.remaining();
+        if (pbo == 0)
+            pbo = GL15.glGenBuffers();
+        GLState.bindBuffer(GL21.GL_PIXEL_UNPACK_BUFFER, pbo);
+        GL15.glBufferData(GL21.GL_PIXEL_UNPACK_BUFFER, size, GL15.GL_STREAM_DRAW);
+        long dst = GL30.nglMapBufferRange(GL21.GL_PIXEL_UNPACK_BUFFER, 0, size,
+                GL30.GL_MAP_WRITE_BIT | GL30.GL_MAP_INVALIDATE_BUFFER_BIT);
+        TextureInfo created;
+        try {
+            if (dst == NULL)
+                throw new IllegalStateException("Failed to map pixel unpack buffer!");
+            MemoryUtil.memCopy(MemoryUtil.memAddress(image.data), dst, size);
+            GL15.glUnmapBuffer(GL21.GL_PIXEL_UNPACK_BUFFER);
+            created = TextureManager.createTexture(image.w, image.h, NULL);
+        } finally {
+            GLState.bindBuffer(GL21.GL_PIXEL_UNPACK_BUFFER, 0);
+        }
+        TextureManager.finishAsync(upload.path, upload.info, created);
+        upload.future.complete(upload.info);
+    }
+
+    /**
+     * A decoded image waiting to be uploaded.
+     */
+    private static class Upload {
+
+        /**
+         * The path the image was loaded from.
+         */
+        final String path;
+
+        /**
+         * The decoded image.
+         */
+        final TextureData image;
+
+        /**
+         * The texture info to point at the uploaded texture.
+         */
+        final TextureInfo info;
+
+        /**
+         * The future to complete once uploaded.
+         */
+        final CompletableFuture<TextureInfo> future;
+
+        /**
+         * Creates a pending upload.
+         * @param path The path the image was loaded from.
+         * @param image The decoded image.
+         * @param info The texture info to point at the uploaded texture.
+         * @param future The future to complete once uploaded.
+         */
+        Upload(String path, TextureData image, TextureInfo info, CompletableFuture<TextureInfo> future) {
+            this.path = path;
+            this.image = image;
+            this.info = info;
+            this.future = future;
+        }
+
+    }
+
+}
@@ -0,0 +1,62 @@
+package io.github.phantamanta44.shlgl.graphics.texture;
+
+/**
+ * POJO describing an image packed into a texture atlas page.
+ * @author Evan Geng
+ */
+public class AtlasRegion {
+
+    /**
+     * The atlas page containing the image.
+     */
+    public final TextureInfo page;
+
+    /**
+     * The image's width, in pixels.
+     */
+    public final int w;
+
+    /**
+     * The image's height, in pixels.
+     */
+    public final int h;
+
+    /**
+     * The normalized left texture coordinate.
+     */
+    public final float u1;
+
+    /**
+     * The normalized bottom texture coordinate.
+     */
+    public final float v1;
+
+    /**
+     * The normalized right texture coordinate.
+     */
+    public final float u2;
+
+    /**
+     * The normalized top texture coordinate.
+     */
+    public final float v2;
+
+    /**
+     * Constructs an AtlasRegion for an image at the given pixel position in a page.
+     * @param page The atlas page.
+     * @param x The image's x-coordinate in the page.
+     * @param y The image's y-coordinate in the page.
+     * @param w The image's width.
+     * @param h The image's height.
+     */
+    AtlasRegion(TextureInfo page, int x, int y, int w, int h) {
+        this.page = page;
+        this.w = w;
+        this.h = h;
+        this.u1 = (float)x / page.getWidth();
+        this.v1 = (float)y / page.getHeight();
+        this.u2 = (float)(x + w) / page.getWidth();
+        this.v2 = (float)(y + h) / page.getHeight();
+    }
+
+}
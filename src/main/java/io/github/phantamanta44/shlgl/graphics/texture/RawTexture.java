@@ -0,0 +1,130 @@
+package io.github.phantamanta44.shlgl.graphics.texture;
+
+import org.lwjgl.BufferUtils;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Reads and writes the cooked texture container: a 16-byte little-endian header of magic, version, width and height,
+ * followed by RGBA pixels with the bottom row first, ready to be handed to GL as-is.
+ * @author Evan Geng
+ */
+class RawTexture {
+
+    /**
+     * The file extension of cooked textures.
+     */
+    static final String EXTENSION = ".rtex";
+
+    /**
+     * The magic number at the start of every container, "RTEX" read as a little-endian integer.
+     */
+    private static final int MAGIC = 0x58455452;
+
+    /**
+     * The container format version.
+     */
+    private static final int VERSION = 1;
+
+    /**
+     * The size of the header, in bytes.
+     */
+    private static final int HEADER_SIZE = 16;
+
+    /**
+     * Determines where the cooked version of an image lives.
+     * @param path The path to the PNG image.
+     * @return The path to the cooked texture.
+     */
+    static String cookedPath(String path) {
+        return (path.endsWith(".png") ? path.substring(0, path.length() - 4) : path) + EXTENSION;
+    }
+
+    /**
+     * Loads a cooked texture from the classpath. Textures stored as plain files are memory-mapped, so their pixels are
+     * never copied on the Java side; textures inside archives are read into a direct buffer.
+     * @param url The location of the cooked texture.
+     * @param path The path to the cooked texture, for error messages.
+     * @return The texture.
+     * @throws IOException If the texture could not be read.
+     */
+    static TextureData load(URL url, String path) throws IOException {
+        ByteBuffer data;
+        if ("file".equals(url.getProtocol())) {
+            try (FileChannel channel = FileChannel.open(Paths.get(url.toURI()), StandardOpenOption.READ)) {
+                data = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            } catch (URISyntaxException e) {
+                throw new IOException("Bad texture location: " + url, e);
+            }
+        } else {
+            try (InputStream stream = url.openStream()) {
+                byte[] bytes = readFully(stream);
+                data = BufferUtils.createByteBuffer(bytes.length);
+                data.put(bytes).flip();
+            }
+        }
+        return parse(data, path);
+    }
+
+    /**
+     * Reads the rest of a stream.
+     * @param stream The stream.
+     * @return The bytes read.
+     * @throws IOException If the stream could not be read.
+     */
+    private static byte[] readFully(InputStream stream) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buf = new byte[8192];
+        int read;
+        while ((read = stream.read(buf)) != -1)
+            out.write(buf, 0, read);
+        return out.toByteArray();
+    }
+
+    /**
+     * Validates a container's header and slices out its pixels.
+     * @param data The container's contents.
+     * @param path The container's path, for error messages.
+     * @return The texture.
+     * @throws IOException If the container is malformed.
+     */
+    private static TextureData parse(ByteBuffer data, String path) throws IOException {
+        data.order(ByteOrder.LITTLE_ENDIAN);
+        if (data.remaining() < HEADER_SIZE || data.getInt(0) != MAGIC || data.getInt(4) != VERSION)
+            throw new IOException("Not a cooked texture: " + path);
+        int w = data.getInt(8), h = data.getInt(12);
+        if (w <= 0 || h <= 0 || data.remaining() - HEADER_SIZE != 4L * w * h)
+            throw new IOException("Corrupt cooked texture: " + path);
+        data.position(HEADER_SIZE);
+        return new TextureData(w, h, data.slice());
+    }
+
+    /**
+     * Writes a texture as a container.
+     * @param image The texture.
+     * @param file The file to write.
+     * @throws IOException If the file could not be written.
+     */
+    static void write(TextureData image, Path file) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        header.putInt(MAGIC).putInt(VERSION).putInt(image.w).putInt(image.h).flip();
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            channel.write(header);
+            ByteBuffer pixels = image.data.duplicate();
+            while (pixels.hasRemaining())
+                channel.write(pixels);
+        }
+    }
+
+}
@@ -0,0 +1,107 @@
+package io.github.phantamanta44.shlgl.graphics.texture;
+
+import io.github.phantamanta44.shlgl.util.math.Vector2I;
+import io.github.phantamanta44.shlgl.util.memory.Pooled;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Packs rectangles into a fixed-size area using horizontal shelves.
+ * @author Evan Geng
+ */
+class ShelfPacker {
+
+    /**
+     * The width of the packing area.
+     */
+    private final int width;
+
+    /**
+     * The height of the packing area.
+     */
+    private final int height;
+
+    /**
+     * The shelves allocated so far, from bottom to top.
+     */
+    private final List<Shelf> shelves;
+
+    /**
+     * The y-coordinate at which the next shelf would be opened.
+     */
+    private int top;
+
+    /**
+     * Creates a packer for an area of the given size.
+     * @param width The area's width.
+     * @param height The area's height.
+     */
+    ShelfPacker(int width, int height) {
+        this.width = width;
+        this.height = height;
+        this.shelves = new ArrayList<>();
+        this.top = 0;
+    }
+
+    /**
+     * Finds room for a rectangle. The shelf wasting the least vertical space is preferred; if none fits, a new shelf
+     * is opened.
+     * @param w The rectangle's width.
+     * @param h The rectangle's height.
+     * @return A pooled vector of the rectangle's position, or <code>null</code> if there is no room left.
+     */
+    Pooled<Vector2I> pack(int w, int h) {
+        if (w > width || h > height)
+            return null;
+        Shelf best = null;
+        for (Shelf shelf : shelves) {
+            if (shelf.height >= h && width - shelf.x >= w && (best == null || shelf.height < best.height))
+                best = shelf;
+        }
+        if (best == null) {
+            if (height - top < h)
+                return null;
+            best = new Shelf(top, h);
+            shelves.add(best);
+            top += h;
+        }
+        Pooled<Vector2I> pos = Vector2I.of(best.x, best.y);
+        best.x += w;
+        return pos;
+    }
+
+    /**
+     * A single row of packed rectangles.
+     */
+    private static class Shelf {
+
+        /**
+         * The shelf's bottom edge.
+         */
+        final int y;
+
+        /**
+         * The shelf's height.
+         */
+        final int height;
+
+        /**
+         * The x-coordinate of the next free column.
+         */
+        int x;
+
+        /**
+         * Creates an empty shelf.
+         * @param y The shelf's bottom edge.
+         * @param height The shelf's height.
+         */
+        Shelf(int y, int height) {
+            this.y = y;
+            this.height = height;
+            this.x = 0;
+        }
+
+    }
+
+}
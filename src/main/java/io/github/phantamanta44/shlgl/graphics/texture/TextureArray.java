@@ -0,0 +1,27 @@
+package io.github.phantamanta44.shlgl.graphics.texture;
+
+/**
+ * POJO that provides metadata for a 2D array texture, whose layers are same-size frames such as tiles or animation
+ * frames. The width and height are those of a single layer.
+ * @author Evan Geng
+ */
+public class TextureArray extends TextureInfo {
+
+    /**
+     * The number of layers in the texture.
+     */
+    public final int layers;
+
+    /**
+     * Constructs a TextureArray object for the given texture.
+     * @param id The texture's ID.
+     * @param w The width of a layer.
+     * @param h The height of a layer.
+     * @param layers The number of layers.
+     */
+    TextureArray(int id, int w, int h, int layers) {
+        super(id, w, h);
+        this.layers = layers;
+    }
+
+}
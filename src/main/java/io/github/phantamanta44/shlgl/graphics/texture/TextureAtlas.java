@@ -0,0 +1,197 @@
+package io.github.phantamanta44.shlgl.graphics.texture;
+
+import io.github.phantamanta44.shlgl.SHLGL;
+import io.github.phantamanta44.shlgl.graphics.render.GLState;
+import io.github.phantamanta44.shlgl.util.math.Vector2I;
+import io.github.phantamanta44.shlgl.util.memory.Pooled;
+import org.lwjgl.BufferUtils;
+import org.lwjgl.opengl.GL11;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Packs many small images into a few large textures so they can be drawn without rebinding.
+ * @author Evan Geng
+ */
+public class TextureAtlas {
+
+    /**
+     * The default width and height of an atlas page.
+     */
+    public static final int DEFAULT_PAGE_SIZE = 2048;
+
+    /**
+     * The border left around each image to keep filtering from sampling its neighbours. It is filled with copies of
+     * the image's edge pixels, so filtering at the edges blends with the image itself.
+     */
+    private static final int PADDING = 1;
+
+    /**
+     * The width and height of each page.
+     */
+    private final int pageSize;
+
+    /**
+     * The pages allocated so far.
+     */
+    private final List<Page> pages;
+
+    /**
+     * Map of image paths to packed regions.
+     */
+    private final Map<String, AtlasRegion> regionByPath;
+
+    /**
+     * Creates an atlas with pages of the given size. The size is clamped to the driver's maximum texture size.
+     * @param pageSize The width and height of each page.
+     */
+    public TextureAtlas(int pageSize) {
+        this.pageSize = Math.min(pageSize, GL11.glGetInteger(GL11.GL_MAX_TEXTURE_SIZE));
+        this.pages = new ArrayList<>();
+        this.regionByPath = new ConcurrentHashMap<>();
+    }
+
+    /**
+     * Creates an atlas with the default page size.
+     */
+    public TextureAtlas() {
+        this(DEFAULT_PAGE_SIZE);
+    }
+
+    /**
+     * Retrieves the region for a given path, packing the image into the atlas if it isn't already. Packing must happen
+     * on the render thread; throws otherwise.
+     * @param path The path to the image.
+     * @return The region, or <code>null</code> if the image could not be loaded.
+     */
+    public AtlasRegion getRegion(String path) {
+        AtlasRegion region = regionByPath.get(path);
+        if (region != null)
+            return region;
+        SHLGL.checkRenderThread("Packing an atlas region");
+        try {
+            region = insert(TextureData.load(path));
+        } catch (IOException e) {
+            return null;
+        }
+        if (region == null) {
+            TextureInfo standalone = TextureManager.getTextureInfo(path);
+            if (standalone == null)
+                return null;
+            region = new AtlasRegion(standalone, 0, 0, standalone.getWidth(), standalone.getHeight());
+        }
+        regionByPath.put(path, region);
+        return region;
+    }
+
+    /**
+     * Packs decoded image data into the first page with room for it, allocating a new page if necessary.
+     * @param image The image data.
+     * @return The packed region, or <code>null</code> if the image is too large to fit on a page.
+     */
+    AtlasRegion insert(TextureData image) {
+        int paddedW = image.w + 2 * PADDING, paddedH = image.h + 2 * PADDING;
+        if (paddedW > pageSize || paddedH > pageSize)
+            return null;
+        for (Page page : pages) {
+            AtlasRegion region = page.insert(image, paddedW, paddedH);
+            if (region != null)
+                return region;
+        }
+        Page page = new Page();
+        pages.add(page);
+        return page.insert(image, paddedW, paddedH);
+    }
+
+    /**
+     * Copies an image into a new buffer with its edge pixels repeated across the padding on every side.
+     * @param image The image data.
+     * @return The padded pixel data, <code>PADDING</code> pixels larger than the image on each side.
+     */
+    static ByteBuffer pad(TextureData image) {
+        int paddedW = image.w + 2 * PADDING, paddedH = image.h + 2 * PADDING;
+        ByteBuffer padded = BufferUtils.createByteBuffer(paddedW * paddedH * 4);
+        if (image.w == 0 || image.h == 0)
+            return padded;
+        int base = image.data.position();
+        for (int py = 0; py < paddedH; py++) {
+            int sy = Math.min(Math.max(py - PADDING, 0), image.h - 1);
+            for (int px = 0; px < paddedW; px++) {
+                int sx = Math.min(Math.max(px - PADDING, 0), image.w - 1);
+                padded.putInt((py * paddedW + px) * 4, image.data.getInt(base + (sy * image.w + sx) * 4));
+            }
+        }
+        return padded;
+    }
+
+    /**
+     * Retrieves the number of pages allocated by this atlas.
+     * @return The page count.
+     */
+    public int getPageCount() {
+        return pages.size();
+    }
+
+    /**
+     * Retrieves the width and height of this atlas' pages.
+     * @return The page size.
+     */
+    public int getPageSize() {
+        return pageSize;
+    }
+
+    /**
+     * A single texture in the atlas.
+     */
+    private class Page {
+
+        /**
+         * The page texture.
+         */
+        final TextureInfo tex;
+
+        /**
+         * The allocator for free space in the page.
+         */
+        final ShelfPacker packer;
+
+        /**
+         * Allocates a page texture cleared to transparent black, so unused space never samples as garbage.
+         */
+        Page() {
+            this.tex = TextureManager.createTexture(pageSize, pageSize,
+                    BufferUtils.createByteBuffer(pageSize * pageSize * 4));
+            this.packer = new ShelfPacker(pageSize, pageSize);
+        }
+
+        /**
+         * Copies an image into free space on this page, filling its padding with its edge pixels.
+         * @param image The image data.
+         * @param paddedW The image's width, including padding.
+         * @param paddedH The image's height, including padding.
+         * @return The packed region, or <code>null</code> if this page is full.
+         */
+        AtlasRegion insert(TextureData image, int paddedW, int paddedH) {
+            int x, y;
+            try (Pooled<Vector2I> pos = packer.pack(paddedW, paddedH)) {
+                if (pos == null)
+                    return null;
+                x = pos.get().x() + PADDING;
+                y = pos.get().y() + PADDING;
+            }
+            GLState.bindTexture(tex.getId());
+            GL11.glPixelStorei(GL11.GL_UNPACK_ALIGNMENT, 1);
+            GL11.glTexSubImage2D(GL11.GL_TEXTURE_2D, 0, x - PADDING, y - PADDING, paddedW, paddedH,
+                    GL11.GL_RGBA, GL11.GL_UNSIGNED_BYTE, pad(image));
+            TextureManager.restoreBinding();
+            return new AtlasRegion(tex, x, y, image.w, image.h);
+        }
+
+    }
+
+}
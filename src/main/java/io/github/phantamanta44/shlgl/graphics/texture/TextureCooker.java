@@ -0,0 +1,46 @@
+package io.github.phantamanta44.shlgl.graphics.texture;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Build-time tool converting every PNG image under a directory into a cooked texture, so that textures can be
+ * memory-mapped and uploaded at runtime without being decoded. Run by the <code>cook-textures</code> Maven profile.
+ * @author Evan Geng
+ */
+public class TextureCooker {
+
+    /**
+     * Cooks a directory tree of images.
+     * @param args The input directory, and optionally the output directory, which defaults to the input directory.
+     * @throws IOException If an image could not be read or a texture could not be written.
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1 || args.length > 2)
+            throw new IllegalArgumentException("Usage: TextureCooker <input dir> [output dir]");
+        Path in = Paths.get(args[0]), out = Paths.get(args.length > 1 ? args[1] : args[0]);
+        List<Path> images;
+        try (Stream<Path> files = Files.walk(in)) {
+            images = files.filter(f -> Files.isRegularFile(f) && f.toString().endsWith(".png"))
+                    .collect(Collectors.toList());
+        }
+        for (Path image : images) {
+            Path target = out.resolve(RawTexture.cookedPath(in.relativize(image).toString()));
+            if (Files.exists(target)
+                    && Files.getLastModifiedTime(target).compareTo(Files.getLastModifiedTime(image)) >= 0)
+                continue;
+            Files.createDirectories(target.toAbsolutePath().getParent());
+            try (InputStream stream = Files.newInputStream(image)) {
+                RawTexture.write(TextureData.decodePng(stream), target);
+            }
+            System.out.println("Cooked " + image + " -> " + target);
+        }
+    }
+
+}
@@ -0,0 +1,112 @@
+package io.github.phantamanta44.shlgl.graphics.texture;
+
+import de.matthiasmann.twl.utils.PNGDecoder;
+import org.lwjgl.BufferUtils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+
+/**
+ * Decoded RGBA pixel data for a texture, flipped so that the first row is the bottom of the image.
+ * @author Evan Geng
+ */
+class TextureData {
+
+    /**
+     * The image's width.
+     */
+    final int w;
+
+    /**
+     * The image's height.
+     */
+    final int h;
+
+    /**
+     * The pixel data.
+     */
+    final ByteBuffer data;
+
+    /**
+     * Wraps decoded pixel data.
+     * @param w The image's width.
+     * @param h The image's height.
+     * @param data The pixel data.
+     */
+    TextureData(int w, int h, ByteBuffer data) {
+        this.w = w;
+        this.h = h;
+        this.data = data;
+    }
+
+    /**
+     * Decodes a PNG image from a stream.
+     * @param stream The stream to read from.
+     * @return The decoded image.
+     * @throws IOException If the stream could not be read or decoded.
+     */
+    static TextureData decodePng(InputStream stream) throws IOException {
+        PNGDecoder decoder = new PNGDecoder(stream);
+        int w = decoder.getWidth(), h = decoder.getHeight();
+        ByteBuffer data = BufferUtils.createByteBuffer(4 * w * h);
+        decoder.decodeFlipped(data, 4 * w, PNGDecoder.Format.RGBA);
+        data.flip();
+        return new TextureData(w, h, data);
+    }
+
+    /**
+     * Decodes a PNG image from the classpath.
+     * @param path The path to the image.
+     * @return The decoded image.
+     * @throws IOException If the resource could not be found, read or decoded.
+     */
+    static TextureData decodePng(String path) throws IOException {
+        try (InputStream stream = TextureManager.class.getClassLoader().getResourceAsStream(path)) {
+            if (stream == null)
+                throw new IOException("No such texture: " + path);
+            return decodePng(stream);
+        }
+    }
+
+    /**
+     * Loads an image from the classpath, preferring a cooked texture next to it and decoding the PNG otherwise. A
+     * cooked texture older than its PNG is stale and ignored, so edited images show up without cooking them again.
+     * @param path The path to the PNG image.
+     * @return The image.
+     * @throws IOException If neither version could be found, read or decoded.
+     */
+    static TextureData load(String path) throws IOException {
+        ClassLoader loader = TextureData.class.getClassLoader();
+        String cookedPath = RawTexture.cookedPath(path);
+        URL cooked = loader.getResource(cookedPath);
+        if (cooked != null) {
+            URL png = loader.getResource(path);
+            if (png == null || lastModified(cooked) >= lastModified(png))
+                return RawTexture.load(cooked, cookedPath);
+        }
+        return decodePng(path);
+    }
+
+    /**
+     * Determines when a classpath resource was last modified.
+     * @param url The resource's location.
+     * @return The modification time in milliseconds since the epoch, or 0 if it is unknown.
+     * @throws IOException If the resource could not be inspected.
+     */
+    private static long lastModified(URL url) throws IOException {
+        if ("file".equals(url.getProtocol())) {
+            try {
+                return Files.getLastModifiedTime(Paths.get(url.toURI())).toMillis();
+            } catch (URISyntaxException e) {
+                throw new IOException("Bad texture location: " + url, e);
+            }
+        }
+        return url.openConnection().getLastModified();
+    }
+
+}
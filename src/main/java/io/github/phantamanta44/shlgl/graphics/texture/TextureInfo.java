@@ -1,7 +1,8 @@
 package io.github.phantamanta44.shlgl.graphics.texture;
 
 /**
- * POJO that provides texture metadata.
+ * POJO that provides texture metadata. For textures loaded asynchronously, the info describes a placeholder until the
+ * real texture is ready and is then updated in place.
  * @author Evan Geng
  */
 public class TextureInfo {
@@ -9,17 +10,23 @@ public class TextureInfo {
     /**
      * The texture's ID.
      */
-    public final int id;
+    private volatile int id;
 
     /**
      * The texture's width.
      */
-    public final int w;
+    private volatile int w;
 
     /**
      * The texture's height.
      */
-    public final int h;
+    private volatile int h;
+
+    /**
+     * The path the texture was loaded from, or <code>null</code> if it wasn't loaded from a path. Only textures with
+     * a path can be evicted and reloaded.
+     */
+    String path;
 
     /**
      * Constructs a TextureInfo object for the given texture.
@@ -33,4 +40,40 @@ public class TextureInfo {
         this.h = h;
     }
 
+    /**
+     * Points this info at a different texture.
+     * @param id The texture's ID.
+     * @param w The texture's width.
+     * @param h The texture's height.
+     */
+    void update(int id, int w, int h) {
+        this.w = w;
+        this.h = h;
+        this.id = id;
+    }
+
+    /**
+     * Retrieves the texture's ID.
+     * @return The ID.
+     */
+    public int getId() {
+        return id;
+    }
+
+    /**
+     * Retrieves the texture's width.
+     * @return The width.
+     */
+    public int getWidth() {
+        return w;
+    }
+
+    /**
+     * Retrieves the texture's height.
+     * @return The height.
+     */
+    public int getHeight() {
+        return h;
+    }
+
 }
@@ -1,14 +1,19 @@
 package io.github.phantamanta44.shlgl.graphics.texture;
 
-import de.matthiasmann.twl.utils.PNGDecoder;
 import io.github.phantamanta44.shlgl.SHLGL;
+import io.github.phantamanta44.shlgl.graphics.render.GLState;
 import org.lwjgl.BufferUtils;
 import org.lwjgl.opengl.GL11;
+import org.lwjgl.opengl.GL12;
+import org.lwjgl.opengl.GL30;
 
 import java.io.IOException;
-import java.io.InputStream;
 import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
 
 /**
@@ -33,57 +38,633 @@ public class TextureManager {
     private static TextureInfo bound;
 
     /**
-     * Retrieves the texture ID for a given path, loading the texture if it isn't already cached.
+     * Map of array texture keys, built from their source paths, to array textures.
+     */
+    private static final Map<String, TextureArray> arrays = new ConcurrentHashMap<>();
+
+    /**
+     * The currently bound array texture.
+     */
+    private static TextureArray boundArray;
+
+    /**
+     * The shared texture atlas, created on first use.
+     */
+    private static TextureAtlas atlas;
+
+    /**
+     * Map of texture paths to asynchronous loads still in progress.
+     */
+    private static final Map<String, AsyncRequest> pending = new ConcurrentHashMap<>();
+
+    /**
+     * The asynchronous texture loader, created on first use.
+     */
+    private static AsyncTextureLoader loader;
+
+    /**
+     * The texture shown in place of textures that are still loading.
+     */
+    private static TextureInfo placeholder;
+
+    /**
+     * Residency records of textures loaded from paths, from least to most recently used. Guarded by itself.
+     */
+    private static final Map<String, Resident> residents = new LinkedHashMap<>(16, 0.75F, true);
+
+    /**
+     * The texture memory budget, in bytes.
+     */
+    private static long budget = Long.MAX_VALUE;
+
+    /**
+     * The bytes of texture memory used by resident textures loaded from paths.
+     */
+    private static long residentBytes;
+
+    /**
+     * The number of textures evicted so far.
+     */
+    private static long evictions;
+
+    /**
+     * The number of evicted textures reloaded so far.
+     */
+    private static long reloads;
+
+    /**
+     * The current frame number, used to avoid evicting textures drawn this frame or the last. The last frame counts
+     * because with threaded rendering, the frame about to be flushed was recorded before {@link #tick()} advanced it.
+     */
+    private static long frame;
+
+    /**
+     * Creates the placeholder texture. Called by SHLGL on the GL thread during initialization.
+     */
+    public static void init() {
+        if (placeholder != null)
+            return;
+        ByteBuffer pixels = BufferUtils.createByteBuffer(4 * 4).order(ByteOrder.BIG_ENDIAN);
+        pixels.putInt(0xFF00FFFF).putInt(0x000000FF).putInt(0x000000FF).putInt(0xFF00FFFF).flip();
+        placeholder = createTexture(2, 2, pixels);
+    }
+
+    /**
+     * Retrieves the texture ID for a given path, loading the texture if it isn't already cached. Loading must happen
+     * on the render thread; elsewhere, use {@link #getTextureAsync(String)} or {@link #loadAsync(String)}.
      * @param path The path to the texture.
      * @return The texture ID.
      */
     public static int getTextureId(String path) {
-        if (idByPath.containsKey(path))
-            return idByPath.get(path);
+        Integer id = idByPath.get(path);
+        if (id != null)
+            return id;
         return load(path);
     }
 
     /**
-     * Loads texture data from the given path and caches it.
+     * Loads texture data from the given path and caches it. If the texture is already loading in the background, the
+     * background load is completed with the texture loaded here instead of uploading a second copy.
      * @param path The path to the texture file.
      * @return The ID of the newly loaded texture.
      */
     private static int load(String path) {
         if (!SHLGL.isInitialized())
             throw new IllegalStateException("SHLGL not initialized!");
-        try (InputStream stream = TextureManager.class.getClassLoader().getResourceAsStream(path)) {
-            PNGDecoder decoder = new PNGDecoder(stream);
-            int w = decoder.getWidth(), h = decoder.getHeight();
-            ByteBuffer data = BufferUtils.createByteBuffer(4 * w * h);
-            decoder.decodeFlipped(data, 4 * w, PNGDecoder.Format.RGBA);
-            data.flip();
-            int texId = bufferTexture(w, h, data, GL11.GL_RGBA);
-            idByPath.put(path, texId);
-            infoById.put(texId, new TextureInfo(texId, w, h));
-            return texId;
+        SHLGL.checkRenderThread("Loading a texture");
+        try {
+            TextureData image = TextureData.load(path);
+            TextureInfo created = createTexture(image.w, image.h, image.data);
+            AsyncRequest request = pending.get(path);
+            if (request == null)
+                return makeResident(path, created).getId();
+            finishAsync(path, request.info, created);
+            request.future.complete(request.info);
+            return request.info.getId();
         } catch (IOException e) {
             return -1;
         }
     }
 
     /**
-     * Initializes OpenGL texture data for a texture.
+     * Records a texture loaded from a path as resident, reusing the path's existing info if it was evicted before,
+     * then evicts other textures if over budget.
+     * @param path The texture's path.
+     * @param created The info of the newly created texture.
+     * @return The path's canonical info.
+     */
+    private static TextureInfo makeResident(String path, TextureInfo created) {
+        TextureInfo info;
+        synchronized (residents) {
+            Resident resident = residents.get(path);
+            if (resident == null) {
+                info = created;
+                info.path = path;
+                resident = new Resident(info);
+                residents.put(path, resident);
+            } else {
+                info = resident.info;
+                if (info != created)
+                    info.update(created.getId(), created.getWidth(), created.getHeight());
+                reloads++;
+            }
+            resident.bytes = 4L * created.getWidth() * created.getHeight();
+            resident.lastFrame = frame;
+            residentBytes += resident.bytes;
+        }
+        infoById.put(created.getId(), info);
+        idByPath.put(path, created.getId());
+        enforceBudget();
+        return info;
+    }
+
+    /**
+     * Evicts least recently used textures that aren't referenced, bound or drawn this frame or the last until texture
+     * memory is back within budget. The budget is soft: if nothing can be evicted, it is exceeded.
+     */
+    private static void enforceBudget() {
+        synchronized (residents) {
+            Iterator<Resident> iter = residents.values().iterator();
+            while (residentBytes > budget && iter.hasNext()) {
+                Resident resident = iter.next();
+                TextureInfo info = resident.info;
+                if (resident.refs > 0 || resident.lastFrame >= frame - 1 || info.getId() == 0 || info == bound)
+                    continue;
+                int id = info.getId();
+                GL11.glDeleteTextures(id);
+                GLState.forgetTexture(id);
+                infoById.remove(id);
+                idByPath.remove(info.path);
+                info.update(0, info.getWidth(), info.getHeight());
+                residentBytes -= resident.bytes;
+                evictions++;
+            }
+        }
+    }
+
+    /**
+     * Reloads an evicted texture and marks a resident one as used this frame.
+     * @param info The texture.
+     */
+    private static void touch(TextureInfo info) {
+        if (info.path == null)
+            return;
+        if (info.getId() == 0) {
+            load(info.path);
+            return;
+        }
+        synchronized (residents) {
+            Resident resident = residents.get(info.path);
+            if (resident != null)
+                resident.lastFrame = frame;
+        }
+    }
+
+    /**
+     * Retrieves a texture and holds a reference to it, so it is never evicted until released.
+     * @param path The path to the texture.
+     * @return The texture's info, or <code>null</code> if it could not be loaded.
+     */
+    public static TextureInfo acquire(String path) {
+        TextureInfo info = getTextureInfo(path);
+        if (info != null) {
+            synchronized (residents) {
+                residents.get(path).refs++;
+            }
+        }
+        return info;
+    }
+
+    /**
+     * Releases a reference taken by {@link #acquire(String)}. Unreferenced textures may be evicted once they go
+     * unused, and are reloaded transparently if used again.
+     * @param info The texture.
+     */
+    public static void release(TextureInfo info) {
+        if (info.path == null)
+            return;
+        synchronized (residents) {
+            Resident resident = residents.get(info.path);
+            if (resident != null && resident.refs > 0)
+                resident.refs--;
+        }
+    }
+
+    /**
+     * Sets the texture memory budget. Textures loaded from paths are evicted, least recently used first, to stay
+     * within it. Unlimited by default.
+     * @param bytes The budget, in bytes.
+     */
+    public static void setMemoryBudget(long bytes) {
+        if (bytes < 0)
+            throw new IllegalArgumentException("Texture memory budget cannot be negative!");
+        budget = bytes;
+    }
+
+    /**
+     * Retrieves the texture memory budget.
+     * @return The budget, in bytes.
+     */
+    public static long getMemoryBudget() {
+        return budget;
+    }
+
+    /**
+     * Retrieves the texture memory used by resident textures loaded from paths.
+     * @return The resident size, in bytes.
+     */
+    public static long getResidentBytes() {
+        synchronized (residents) {
+            return residentBytes;
+        }
+    }
+
+    /**
+     * Retrieves the number of textures evicted so far.
+     * @return The eviction count.
+     */
+    public static long getEvictions() {
+        synchronized (residents) {
+            return evictions;
+        }
+    }
+
+    /**
+     * Retrieves the number of evicted textures reloaded so far.
+     * @return The reload count.
+     */
+    public static long getReloads() {
+        synchronized (residents) {
+            return reloads;
+        }
+    }
+
+    /**
+     * Initializes OpenGL texture data for an RGBA texture and caches its info.
+     * @param w The texture's width.
+     * @param h The texture's height.
+     * @param data The texture data, or <code>null</code> to leave the texture uninitialized.
+     * @return The texture's info.
+     */
+    static TextureInfo createTexture(int w, int h, ByteBuffer data) {
+        int texId = allocateTexture();
+        GL11.glTexImage2D(GL11.GL_TEXTURE_2D, 0, GL11.GL_RGBA, w, h, 0, GL11.GL_RGBA, GL11.GL_UNSIGNED_BYTE, data);
+        return registerTexture(texId, w, h);
+    }
+
+    /**
+     * Initializes OpenGL texture data for an RGBA texture from the bound pixel unpack buffer and caches its info.
      * @param w The texture's width.
      * @param h The texture's height.
-     * @param data The texture data.
-     * @param format The image format.
+     * @param offset The offset of the texture data in the pixel unpack buffer.
+     * @return The texture's info.
+     */
+    static TextureInfo createTexture(int w, int h, long offset) {
+        int texId = allocateTexture();
+        GL11.glTexImage2D(GL11.GL_TEXTURE_2D, 0, GL11.GL_RGBA, w, h, 0, GL11.GL_RGBA, GL11.GL_UNSIGNED_BYTE, offset);
+        return registerTexture(texId, w, h);
+    }
+
+    /**
+     * Generates a texture, binds it and sets up its sampling parameters.
      * @return The texture's ID.
      */
-    private static int bufferTexture(int w, int h, ByteBuffer data, int format) {
+    private static int allocateTexture() {
         int texId = GL11.glGenTextures();
-        GL11.glBindTexture(GL11.GL_TEXTURE_2D, texId);
+        GLState.bindTexture(texId);
         GL11.glPixelStorei(GL11.GL_UNPACK_ALIGNMENT, 1);
-        GL11.glTexImage2D(GL11.GL_TEXTURE_2D, 0, format, w, h, 0, format, GL11.GL_UNSIGNED_BYTE, data);
         GL11.glTexParameteri(GL11.GL_TEXTURE_2D, GL11.GL_TEXTURE_MIN_FILTER, GL11.GL_LINEAR);
         GL11.glTexParameteri(GL11.GL_TEXTURE_2D, GL11.GL_TEXTURE_MAG_FILTER, GL11.GL_NEAREST);
         return texId;
     }
 
+    /**
+     * Restores the tracked binding after a texture was created and caches the new texture's info.
+     * @param texId The texture's ID.
+     * @param w The texture's width.
+     * @param h The texture's height.
+     * @return The texture's info.
+     */
+    private static TextureInfo registerTexture(int texId, int w, int h) {
+        restoreBinding();
+        TextureInfo info = new TextureInfo(texId, w, h);
+        infoById.put(texId, info);
+        return info;
+    }
+
+    /**
+     * Creates the info of a texture to be rendered into, such as through a framebuffer. Safe to call from any thread;
+     * the texture's storage is only allocated by {@link #allocateRenderTarget(TextureInfo)}, and until then its ID is
+     * zero. Render targets are not counted against the memory budget.
+     * @param w The texture's width.
+     * @param h The texture's height.
+     * @return The texture's info.
+     */
+    public static TextureInfo createRenderTarget(int w, int h) {
+        if (w < 1 || h < 1)
+            throw new IllegalArgumentException("Render target size must be positive!");
+        return new TextureInfo(0, w, h);
+    }
+
+    /**
+     * Allocates the storage of a render target texture if it isn't already allocated. Must be called on the render
+     * thread; throws otherwise.
+     * @param info The render target's info.
+     */
+    public static void allocateRenderTarget(TextureInfo info) {
+        if (info.getId() != 0)
+            return;
+        SHLGL.checkRenderThread("Allocating a render target");
+        TextureInfo created = createTexture(info.getWidth(), info.getHeight(), (ByteBuffer)null);
+        infoById.put(created.getId(), info);
+        info.update(created.getId(), created.getWidth(), created.getHeight());
+    }
+
+    /**
+     * Deletes a texture that isn't loaded from a path, such as a render target. Must be called on the render thread;
+     * throws otherwise.
+     * @param info The texture's info, whose ID becomes zero.
+     */
+    public static void deleteTexture(TextureInfo info) {
+        if (info.path != null)
+            throw new IllegalArgumentException("Textures loaded from paths are managed by the memory budget!");
+        if (info.getId() == 0)
+            return;
+        SHLGL.checkRenderThread("Deleting a texture");
+        GL11.glDeleteTextures(info.getId());
+        GLState.forgetTexture(info.getId());
+        infoById.remove(info.getId());
+        if (bound == info)
+            bound = null;
+        info.update(0, info.getWidth(), info.getHeight());
+    }
+
+    /**
+     * Replaces a rectangle of a texture's pixels. Must be called on the render thread; throws otherwise.
+     * @param info The texture's info.
+     * @param x The rectangle's x-coordinate.
+     * @param y The rectangle's y-coordinate, counting from the bottom.
+     * @param w The rectangle's width.
+     * @param h The rectangle's height.
+     * @param data The rectangle's RGBA pixels, row by row from the bottom.
+     */
+    public static void updateRegion(TextureInfo info, int x, int y, int w, int h, ByteBuffer data) {
+        SHLGL.checkRenderThread("Updating a texture");
+        GLState.bindTexture(info.getId());
+        GL11.glPixelStorei(GL11.GL_UNPACK_ALIGNMENT, 1);
+        GL11.glTexSubImage2D(GL11.GL_TEXTURE_2D, 0, x, y, w, h, GL11.GL_RGBA, GL11.GL_UNSIGNED_BYTE, data);
+        restoreBinding();
+    }
+
+    /**
+     * Retrieves an array texture made of a set of same-size images, loading it if it isn't already cached. Each image
+     * becomes a layer, in the order given. Array textures are not counted against the memory budget. Loading must
+     * happen on the render thread.
+     * @param paths The paths to the images.
+     * @return The array texture, or <code>null</code> if an image could not be loaded.
+     */
+    public static TextureArray getTextureArray(String... paths) {
+        if (paths.length == 0)
+            throw new IllegalArgumentException("Texture arrays need at least one layer!");
+        String key = String.join("\n", paths);
+        TextureArray array = arrays.get(key);
+        if (array != null)
+            return array;
+        if (!SHLGL.isInitialized())
+            throw new IllegalStateException("SHLGL not initialized!");
+        SHLGL.checkRenderThread("Loading a texture array");
+        TextureData[] images = new TextureData[paths.length];
+        try {
+            for (int i = 0; i < paths.length; i++)
+                images[i] = TextureData.load(paths[i]);
+        } catch (IOException e) {
+            return null;
+        }
+        int w = images[0].w, h = images[0].h;
+        for (TextureData image : images) {
+            if (image.w != w || image.h != h)
+                throw new IllegalArgumentException("Texture array layers must all be the same size!");
+        }
+        int texId = allocateArray(w, h, images.length);
+        for (int i = 0; i < images.length; i++) {
+            GL12.glTexSubImage3D(GL30.GL_TEXTURE_2D_ARRAY, 0, 0, 0, i, w, h, 1,
+                    GL11.GL_RGBA, GL11.GL_UNSIGNED_BYTE, images[i].data);
+        }
+        return registerArray(key, texId, w, h, images.length);
+    }
+
+    /**
+     * Retrieves an array texture made by slicing a sprite sheet into same-size frames, loading it if it isn't already
+     * cached. Frames are numbered left to right, then top to bottom, and partial frames at the edges are dropped.
+     * Array textures are not counted against the memory budget. Loading must happen on the render thread.
+     * @param path The path to the sprite sheet.
+     * @param frameW The width of a frame.
+     * @param frameH The height of a frame.
+     * @return The array texture, or <code>null</code> if the sheet could not be loaded.
+     */
+    public static TextureArray getSpriteSheet(String path, int frameW, int frameH) {
+        if (frameW < 1 || frameH < 1)
+            throw new IllegalArgumentException("Frame size must be positive!");
+        String key = path + '#' + frameW + 'x' + frameH;
+        TextureArray array = arrays.get(key);
+        if (array != null)
+            return array;
+        if (!SHLGL.isInitialized())
+            throw new IllegalStateException("SHLGL not initialized!");
+        SHLGL.checkRenderThread("Loading a sprite sheet");
+        TextureData image;
+        try {
+            image = TextureData.load(path);
+        } catch (IOException e) {
+            return null;
+        }
+        int cols = image.w / frameW, rows = image.h / frameH;
+        if (cols == 0 || rows == 0)
+            throw new IllegalArgumentException("Sprite sheet frames are larger than the sheet!");
+        int texId = allocateArray(frameW, frameH, cols * rows);
+        GL11.glPixelStorei(GL11.GL_UNPACK_ROW_LENGTH, image.w);
+        for (int row = 0; row < rows; row++) {
+            GL11.glPixelStorei(GL11.GL_UNPACK_SKIP_ROWS, image.h - (row + 1) * frameH);
+            for (int col = 0; col < cols; col++) {
+                GL11.glPixelStorei(GL11.GL_UNPACK_SKIP_PIXELS, col * frameW);
+                GL12.glTexSubImage3D(GL30.GL_TEXTURE_2D_ARRAY, 0, 0, 0, row * cols + col, frameW, frameH, 1,
+                        GL11.GL_RGBA, GL11.GL_UNSIGNED_BYTE, image.data);
+            }
+        }
+        GL11.glPixelStorei(GL11.GL_UNPACK_ROW_LENGTH, 0);
+        GL11.glPixelStorei(GL11.GL_UNPACK_SKIP_ROWS, 0);
+        GL11.glPixelStorei(GL11.GL_UNPACK_SKIP_PIXELS, 0);
+        return registerArray(key, texId, frameW, frameH, cols * rows);
+    }
+
+    /**
+     * Generates an array texture, binds it, allocates its storage and sets up its sampling parameters. Edges are
+     * clamped so that frames never bleed into each other.
+     * @param w The width of a layer.
+     * @param h The height of a layer.
+     * @param layers The number of layers.
+     * @return The texture's ID.
+     */
+    private static int allocateArray(int w, int h, int layers) {
+        int texId = GL11.glGenTextures();
+        GLState.bindTextureArray(texId);
+        GL11.glPixelStorei(GL11.GL_UNPACK_ALIGNMENT, 1);
+        GL12.glTexImage3D(GL30.GL_TEXTURE_2D_ARRAY, 0, GL11.GL_RGBA, w, h, layers, 0,
+                GL11.GL_RGBA, GL11.GL_UNSIGNED_BYTE, (ByteBuffer)null);
+        GL11.glTexParameteri(GL30.GL_TEXTURE_2D_ARRAY, GL11.GL_TEXTURE_MIN_FILTER, GL11.GL_LINEAR);
+        GL11.glTexParameteri(GL30.GL_TEXTURE_2D_ARRAY, GL11.GL_TEXTURE_MAG_FILTER, GL11.GL_NEAREST);
+        GL11.glTexParameteri(GL30.GL_TEXTURE_2D_ARRAY, GL11.GL_TEXTURE_WRAP_S, GL12.GL_CLAMP_TO_EDGE);
+        GL11.glTexParameteri(GL30.GL_TEXTURE_2D_ARRAY, GL11.GL_TEXTURE_WRAP_T, GL12.GL_CLAMP_TO_EDGE);
+        return texId;
+    }
+
+    /**
+     * Restores the tracked array binding after an array texture was created and caches the new texture's info.
+     * @param key The array texture's key.
+     * @param texId The texture's ID.
+     * @param w The width of a layer.
+     * @param h The height of a layer.
+     * @param layers The number of layers.
+     * @return The array texture.
+     */
+    private static TextureArray registerArray(String key, int texId, int w, int h, int layers) {
+        if (boundArray != null)
+            GLState.bindTextureArray(boundArray.getId());
+        TextureArray array = new TextureArray(texId, w, h, layers);
+        arrays.put(key, array);
+        return array;
+    }
+
+    /**
+     * Starts loading a texture in the background if it isn't already loaded or loading. Safe to call from any thread
+     * once SHLGL is initialized.
+     * @param path The path to the texture.
+     * @return A future completed on the GL thread with the texture's info once it is ready.
+     */
+    public static CompletableFuture<TextureInfo> loadAsync(String path) {
+        Integer id = idByPath.get(path);
+        if (id != null)
+            return CompletableFuture.completedFuture(infoById.get(id));
+        return requestAsync(path).future;
+    }
+
+    /**
+     * Retrieves a texture, starting to load it in the background if necessary. Until the texture is ready, the
+     * returned info describes a placeholder, and it is updated in place once the real texture is uploaded. If the
+     * texture fails to load, the placeholder stays.
+     * @param path The path to the texture.
+     * @return The texture's info.
+     */
+    public static TextureInfo getTextureAsync(String path) {
+        Integer id = idByPath.get(path);
+        if (id != null)
+            return infoById.get(id);
+        return requestAsync(path).info;
+    }
+
+    /**
+     * Retrieves the asynchronous load of a texture, starting it if necessary. A failed load is forgotten, so the
+     * texture can be requested again.
+     * @param path The path to the texture.
+     * @return The load.
+     */
+    private static AsyncRequest requestAsync(String path) {
+        if (placeholder == null)
+            throw new IllegalStateException("SHLGL not initialized!");
+        AsyncRequest request = pending.get(path);
+        if (request != null)
+            return request;
+        synchronized (TextureManager.class) {
+            if (loader == null)
+                loader = new AsyncTextureLoader();
+        }
+        TextureInfo info = new TextureInfo(placeholder.getId(), placeholder.getWidth(), placeholder.getHeight());
+        request = new AsyncRequest(info, new CompletableFuture<>());
+        AsyncRequest existing = pending.putIfAbsent(path, request);
+        if (existing != null)
+            return existing;
+        AsyncRequest started = request;
+        loader.load(path, info).whenComplete((result, e) -> {
+            if (e != null) {
+                pending.remove(path, started);
+                started.future.completeExceptionally(e);
+            } else {
+                started.future.complete(result);
+            }
+        });
+        return request;
+    }
+
+    /**
+     * Checks whether an asynchronous load still needs its texture uploaded, rather than having been completed by a
+     * synchronous load of the same path.
+     * @param path The texture's path.
+     * @param info The info handed out while the texture was loading.
+     * @return Whether the load is still pending.
+     */
+    static boolean isPending(String path, TextureInfo info) {
+        AsyncRequest request = pending.get(path);
+        return request != null && request.info == info;
+    }
+
+    /**
+     * Points an asynchronously loaded texture's info at the uploaded texture and caches it under its path.
+     * @param path The texture's path.
+     * @param info The info handed out while the texture was loading.
+     * @param created The info of the uploaded texture.
+     */
+    static void finishAsync(String path, TextureInfo info, TextureInfo created) {
+        info.update(created.getId(), created.getWidth(), created.getHeight());
+        info.path = path;
+        makeResident(path, info);
+        pending.remove(path);
+    }
+
+    /**
+     * Uploads some of the textures that finished loading in the background. Called by SHLGL on the GL thread once
+     * per frame.
+     */
+    public static void tick() {
+        synchronized (residents) {
+            frame++;
+        }
+        enforceBudget();
+        if (loader != null)
+            loader.tick();
+    }
+
+    /**
+     * Rebinds the tracked texture after a texture was bound for an upload.
+     */
+    static void restoreBinding() {
+        if (bound != null)
+            GLState.bindTexture(bound.getId());
+    }
+
+    /**
+     * Retrieves the shared texture atlas, creating it if necessary.
+     * @return The atlas.
+     */
+    public static TextureAtlas getAtlas() {
+        if (atlas == null) {
+            if (!SHLGL.isInitialized())
+                throw new IllegalStateException("SHLGL not initialized!");
+            atlas = new TextureAtlas();
+        }
+        return atlas;
+    }
+
+    /**
+     * Retrieves the atlas region for a given path, packing the image into the shared atlas if it isn't already.
+     * Drawing regions that share an atlas page needs no texture rebinds in between. Packing must happen on the render
+     * thread.
+     * @param path The path to the image.
+     * @return The region, or <code>null</code> if the image could not be loaded.
+     */
+    public static AtlasRegion getRegion(String path) {
+        return getAtlas().getRegion(path);
+    }
+
     /**
      * Retrieves the TextureInfo instance for a texture.
      * @param texId The ID to look up.
@@ -103,22 +684,49 @@ public class TextureManager {
     }
 
     /**
-     * Retrieves the currently bound texture info.
+     * Retrieves the currently bound texture info. The binding belongs to the GL context, so this may only be called on
+     * the render thread; render buffers recorded elsewhere resolve the bound texture when they are drawn.
      * @return The texture.
      */
     public static TextureInfo getBound() {
+        SHLGL.checkRenderThread("Reading the bound texture");
         return bound;
     }
 
     /**
-     * Binds a texture by info. The preferred way to bind textures.
+     * Binds a texture by info. The preferred way to bind textures. Array textures are bound as if by
+     * {@link #bindArray(TextureArray)}.
      * @param info The texture to bind.
      */
     public static void bind(TextureInfo info) {
-        GL11.glBindTexture(GL11.GL_TEXTURE_2D, info.id);
+        if (info instanceof TextureArray) {
+            bindArray((TextureArray)info);
+            return;
+        }
+        touch(info);
+        GLState.bindTexture(info.getId());
         bound = info;
     }
 
+    /**
+     * Binds an array texture. Array textures have their own binding, so this leaves the bound texture bound.
+     * @param array The array texture to bind.
+     */
+    public static void bindArray(TextureArray array) {
+        GLState.bindTextureArray(array.getId());
+        boundArray = array;
+    }
+
+    /**
+     * Retrieves the currently bound array texture. May only be called on the render thread, as with
+     * {@link #getBound()}.
+     * @return The array texture.
+     */
+    public static TextureArray getBoundArray() {
+        SHLGL.checkRenderThread("Reading the bound array texture");
+        return boundArray;
+    }
+
     /**
      * Binds a texture by ID. Use {@link #bind(TextureInfo)} instead if possible.
      * @param id The texture ID.
@@ -135,4 +743,66 @@ public class TextureManager {
         bind(getTextureId(path));
     }
 
-}
\ No newline at end of file
+    /**
+     * The residency record of a texture loaded from a path.
+     */
+    private static class Resident {
+
+        /**
+         * The path's canonical texture info.
+         */
+        final TextureInfo info;
+
+        /**
+         * The number of references held through {@link #acquire(String)}.
+         */
+        int refs;
+
+        /**
+         * The texture's size in memory, in bytes.
+         */
+        long bytes;
+
+        /**
+         * The last frame the texture was used in.
+         */
+        long lastFrame;
+
+        /**
+         * Creates a residency record.
+         * @param info The path's canonical texture info.
+         */
+        Resident(TextureInfo info) {
+            this.info = info;
+        }
+
+    }
+
+    /**
+     * An asynchronous texture load in progress.
+     */
+    private static class AsyncRequest {
+
+        /**
+         * The info handed out while the texture is loading.
+         */
+        final TextureInfo info;
+
+        /**
+         * The future completed once the texture is ready.
+         */
+        final CompletableFuture<TextureInfo> future;
+
+        /**
+         * Creates a record of an asynchronous load.
+         * @param info The info handed out while the texture is loading.
+         * @param future The future completed once the texture is ready.
+         */
+        AsyncRequest(TextureInfo info, CompletableFuture<TextureInfo> future) {
+            this.info = info;
+            this.future = future;
+        }
+
+    }
+
+}
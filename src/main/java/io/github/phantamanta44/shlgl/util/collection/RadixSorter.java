@@ -0,0 +1,92 @@
+package io.github.phantamanta44.shlgl.util.collection;
+
+import java.util.Arrays;
+
+/**
+ * A stable least-significant-digit radix sorter for 64-bit unsigned keys with attached integer values. Scratch storage
+ * is kept between calls, so sorting the same number of elements repeatedly allocates nothing.
+ * @author Evan Geng
+ */
+public class RadixSorter {
+
+    /**
+     * The number of bits sorted per pass.
+     */
+    private static final int RADIX_BITS = 8;
+
+    /**
+     * The number of buckets per pass.
+     */
+    private static final int RADIX = 1 << RADIX_BITS;
+
+    /**
+     * The bucket counts for the current pass.
+     */
+    private final int[] counts;
+
+    /**
+     * Scratch storage for keys.
+     */
+    private long[] keyScratch;
+
+    /**
+     * Scratch storage for values.
+     */
+    private int[] valueScratch;
+
+    /**
+     * Creates a radix sorter.
+     */
+    public RadixSorter() {
+        this.counts = new int[RADIX];
+        this.keyScratch = new long[0];
+        this.valueScratch = new int[0];
+    }
+
+    /**
+     * Sorts the first <code>n</code> keys in ascending unsigned order, permuting the values alongside them. Elements
+     * with equal keys keep their relative order.
+     * @param keys The keys to sort.
+     * @param values The values attached to each key.
+     * @param n The number of elements to sort.
+     */
+    public void sort(long[] keys, int[] values, int n) {
+        if (n < 2)
+            return;
+        if (keyScratch.length < n) {
+            keyScratch = new long[keys.length];
+            valueScratch = new int[keys.length];
+        }
+        long[] srcKeys = keys, dstKeys = keyScratch;
+        int[] srcValues = values, dstValues = valueScratch;
+        for (int shift = 0; shift < Long.SIZE; shift += RADIX_BITS) {
+            Arrays.fill(counts, 0);
+            for (int i = 0; i < n; i++)
+                counts[(int)(srcKeys[i] >>> shift) & (RADIX - 1)]++;
+            if (counts[(int)(srcKeys[0] >>> shift) & (RADIX - 1)] == n)
+                continue;
+            int sum = 0;
+            for (int b = 0; b < RADIX; b++) {
+                int count = counts[b];
+                counts[b] = sum;
+                sum += count;
+            }
+            for (int i = 0; i < n; i++) {
+                int dst = counts[(int)(srcKeys[i] >>> shift) & (RADIX - 1)]++;
+                dstKeys[dst] = srcKeys[i];
+                dstValues[dst] = srcValues[i];
+            }
+            long[] swapKeys = srcKeys;
+            srcKeys = dstKeys;
+            dstKeys = swapKeys;
+            int[] swapValues = srcValues;
+            srcValues = dstValues;
+            dstValues = swapValues;
+        }
+        if (srcKeys != keys) {
+            System.arraycopy(srcKeys, 0, keys, 0, n);
+            System.arraycopy(srcValues, 0, values, 0, n);
+        }
+    }
+
+}
@@ -0,0 +1,99 @@
+package io.github.phantamanta44.shlgl.util.collection;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * A lock-free exchange of values between one producer and one consumer thread. The producer writes into a back slot
+ * and publishes it; the consumer picks up the most recently published slot. Neither side ever waits for the other,
+ * and frames the consumer didn't get to in time are skipped.
+ * @author Evan Geng
+ */
+public class TripleBuffer<T> {
+
+    /**
+     * The flag marking the middle slot as published but not yet consumed.
+     */
+    private static final int FRESH = 4;
+
+    /**
+     * The three slots.
+     */
+    private final Object[] slots;
+
+    /**
+     * The index of the slot between producer and consumer, combined with {@link #FRESH}.
+     */
+    private final AtomicInteger middle;
+
+    /**
+     * The index of the slot owned by the producer.
+     */
+    private int back;
+
+    /**
+     * The index of the slot owned by the consumer.
+     */
+    private int front;
+
+    /**
+     * Creates a triple buffer, filling each slot from a factory.
+     * @param factory The factory providing the slot values.
+     */
+    public TripleBuffer(Supplier<T> factory) {
+        this.slots = new Object[] {factory.get(), factory.get(), factory.get()};
+        this.back = 0;
+        this.front = 1;
+        this.middle = new AtomicInteger(2);
+    }
+
+    /**
+     * Retrieves the slot owned by the producer. Must only be called on the producer thread.
+     * @return The back slot.
+     */
+    @SuppressWarnings("unchecked")
+    public T getBack() {
+        return (T)slots[back];
+    }
+
+    /**
+     * Publishes the back slot to the consumer and takes ownership of a new back slot. Must only be called on the
+     * producer thread.
+     * @return Whether the new back slot holds a frame that was published but never consumed.
+     */
+    public boolean publish() {
+        int old = middle.getAndSet(back | FRESH);
+        back = old & ~FRESH;
+        return (old & FRESH) != 0;
+    }
+
+    /**
+     * Checks whether the most recently published slot is still waiting to be consumed.
+     * @return Whether a published slot is pending.
+     */
+    public boolean isPending() {
+        return (middle.get() & FRESH) != 0;
+    }
+
+    /**
+     * Takes ownership of the most recently published slot, if one was published since the last call. Must only be
+     * called on the consumer thread.
+     * @return Whether a new slot was acquired.
+     */
+    public boolean acquire() {
+        if ((middle.get() & FRESH) == 0)
+            return false;
+        front = middle.getAndSet(front) & ~FRESH;
+        return true;
+    }
+
+    /**
+     * Retrieves the slot owned by the consumer. Must only be called on the consumer thread.
+     * @return The front slot.
+     */
+    @SuppressWarnings("unchecked")
+    public T getFront() {
+        return (T)slots[front];
+    }
+
+}
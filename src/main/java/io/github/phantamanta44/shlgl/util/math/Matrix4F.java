@@ -109,16 +109,26 @@ public class Matrix4F implements IShared {
      * @param o The other matrix.
      */
     public void multiply(Matrix4F o) {
-        Matrix4F result = new Matrix4F();
-        for (int r = 0; r < 4; r++) {
-            for (int c = 0; c < 4; c++) {
-                float sum = 0F;
-                for (int i = 0; i < 4; i++)
-                    sum += get(r, i) * o.get(i, c);
-                result.put(r, c, sum);
+        if (o == this) {
+            try (Pooled<Matrix4F> copy = of(values)) {
+                multiply(copy.get());
             }
+            return;
         }
-        readArray(result.asArray());
+        float[] b = o.values;
+        for (int r = 0; r < 16; r += 4) {
+            float a0 = values[r], a1 = values[r + 1], a2 = values[r + 2], a3 = values[r + 3];
+            for (int c = 0; c < 4; c++)
+                values[r + c] = a0 * b[c] + a1 * b[4 + c] + a2 * b[8 + c] + a3 * b[12 + c];
+        }
+    }
+
+    /**
+     * Resets this matrix to the identity matrix.
+     */
+    public void identity() {
+        for (int i = 0; i < 16; i++)
+            values[i] = i % 5 == 0 ? 1F : 0F;
     }
 
     /**
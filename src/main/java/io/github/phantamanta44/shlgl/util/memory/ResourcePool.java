@@ -39,10 +39,10 @@ public class ResourcePool<T extends IShared> {
     }
 
     /**
-     * Retrieves a pooled resource, or creates a new one if none are available.
+     * Retrieves a pooled resource, or creates a new one if none are available. Safe to call from any thread.
      * @return A resource.
      */
-    public Pooled<T> get() {
+    public synchronized Pooled<T> get() {
         if (free == null)
             return generate();
         Pooled<T> res = free.getValue();
@@ -55,7 +55,7 @@ public class ResourcePool<T extends IShared> {
      * Frees a pooled resource.
      * @param res The resource to free.
      */
-    public void free(Pooled<T> res) {
+    public synchronized void free(Pooled<T> res) {
         if (res != null && !res.isFree()) {
             if (free != null)
                 free = free.extend(res);
@@ -7,7 +7,11 @@ out vec2 texPos;
 
 uniform mat4 transformKernel;
 
+layout(std140, row_major) uniform FrameConstants {
+    mat4 projection;
+};
+
 void main() {
-    gl_Position = vec4(posXY, 0.0, 1.0) * transformKernel;
+    gl_Position = projection * transformKernel * vec4(posXY, 0.0, 1.0);
     texPos = posUV;
 }
\ No newline at end of file
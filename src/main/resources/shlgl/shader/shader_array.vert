@@ -0,0 +1,28 @@
+#version 150
+
+in vec2 corner;
+in vec4 instRect;
+in vec4 instUV;
+in float instRotation;
+in float instLayer;
+in vec4 instColour;
+
+out vec3 texPos;
+out vec4 tint;
+
+uniform mat4 transformKernel;
+
+layout(std140, row_major) uniform FrameConstants {
+    mat4 projection;
+};
+
+void main() {
+    vec2 halfSize = instRect.zw * 0.5;
+    vec2 local = (corner - 0.5) * instRect.zw;
+    float s = sin(instRotation);
+    float c = cos(instRotation);
+    vec2 pos = instRect.xy + halfSize + vec2(local.x * c - local.y * s, local.x * s + local.y * c);
+    gl_Position = projection * transformKernel * vec4(pos, 0.0, 1.0);
+    texPos = vec3(mix(instUV.xy, instUV.zw, corner), instLayer);
+    tint = instColour;
+}
\ No newline at end of file
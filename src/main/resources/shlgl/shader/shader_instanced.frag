@@ -0,0 +1,13 @@
+#version 150
+
+in vec2 texPos;
+in vec4 tint;
+
+out vec4 colour;
+
+uniform sampler2D tex;
+uniform vec4 colourTransform;
+
+void main() {
+    colour = texture(tex, texPos) * tint * colourTransform;
+}
\ No newline at end of file
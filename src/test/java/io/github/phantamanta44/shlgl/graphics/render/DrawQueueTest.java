@@ -0,0 +1,95 @@
+package io.github.phantamanta44.shlgl.graphics.render;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for the sort key packing and ordering of {@link DrawQueue}.
+ * @author Evan Geng
+ */
+public class DrawQueueTest {
+
+    /**
+     * Asserts that one key sorts strictly before another as unsigned values.
+     * @param lower The key expected first.
+     * @param higher The key expected second.
+     */
+    private static void assertBefore(long lower, long higher) {
+        assertTrue(Long.toHexString(lower) + " should sort before " + Long.toHexString(higher),
+                Long.compareUnsigned(lower, higher) < 0);
+    }
+
+    @Test
+    public void ordersLayersAcrossSign() {
+        assertBefore(DrawQueue.key(-2, 0, 0, 0), DrawQueue.key(-1, 0, 0, 0));
+        assertBefore(DrawQueue.key(-1, 255, 0xFFFFFF, 0xFFFF), DrawQueue.key(0, 0, 0, 0));
+        assertBefore(DrawQueue.key(0, 0, 0, 0), DrawQueue.key(1, 0, 0, 0));
+        assertBefore(DrawQueue.key(Short.MIN_VALUE, 0, 0, 0), DrawQueue.key(Short.MAX_VALUE, 0, 0, 0));
+    }
+
+    @Test
+    public void clampsLayers() {
+        assertEquals(DrawQueue.key(Short.MAX_VALUE, 1, 2, 3), DrawQueue.key(Integer.MAX_VALUE, 1, 2, 3));
+        assertEquals(DrawQueue.key(Short.MIN_VALUE, 1, 2, 3), DrawQueue.key(Integer.MIN_VALUE, 1, 2, 3));
+    }
+
+    @Test
+    public void clampsDepths() {
+        assertEquals(DrawQueue.key(0, 0, 5, 0), DrawQueue.key(0, 0, 5, -1));
+        assertEquals(DrawQueue.key(0, 0, 5, 0xFFFF), DrawQueue.key(0, 0, 5, 0x10000));
+        assertBefore(DrawQueue.key(0, 0, 5, -100), DrawQueue.key(0, 0, 5, 1));
+        assertBefore(DrawQueue.key(0, 0, 5, 0xFFFF), DrawQueue.key(0, 0, 6, 0));
+    }
+
+    @Test
+    public void ordersFieldsBySignificance() {
+        assertBefore(DrawQueue.key(0, 255, 0xFFFFFF, 0xFFFF), DrawQueue.key(1, 0, 0, 0));
+        assertBefore(DrawQueue.key(0, 0, 0xFFFFFF, 0xFFFF), DrawQueue.key(0, 1, 0, 0));
+        assertBefore(DrawQueue.key(0, 0, 0, 0xFFFF), DrawQueue.key(0, 0, 1, 0));
+        assertBefore(DrawQueue.key(0, 0, 0, 0), DrawQueue.key(0, 0, 0, 1));
+    }
+
+    @Test
+    public void keepsTextureOverflowOutOfOtherFields() {
+        long key = DrawQueue.key(3, 7, 0x1000005, 9);
+        assertEquals(DrawQueue.key(3, 7, 5, 9), key);
+        assertEquals(DrawQueue.key(3, 7, 0, 0) >>> 40, key >>> 40);
+        assertEquals(DrawQueue.key(3, 7, -1, 9) >>> 40, key >>> 40);
+    }
+
+    @Test
+    public void sortsDrawsStably() {
+        Random rand = new Random(4L);
+        DrawQueue queue = new DrawQueue();
+        for (int trial = 0; trial < 5; trial++) {
+            queue.clear();
+            int n = 1 + rand.nextInt(1500);
+            long[] keys = new long[n];
+            for (int i = 0; i < n; i++) {
+                keys[i] = DrawQueue.key(rand.nextInt(5) - 2, rand.nextInt(3), rand.nextInt(4),
+                        rand.nextInt(3) * 20000 - 20000);
+                queue.add(keys[i], null, 0, i * 4, i);
+            }
+            queue.sort();
+            Integer[] expected = new Integer[n];
+            for (int i = 0; i < n; i++)
+                expected[i] = i;
+            Arrays.sort(expected, Comparator.comparingLong(i -> keys[i] ^ Long.MIN_VALUE));
+            assertEquals(n, queue.size());
+            for (int i = 0; i < n; i++) {
+                int draw = queue.drawAt(i);
+                assertEquals((int)expected[i], draw);
+                assertEquals(keys[draw], queue.keyAt(i));
+                assertEquals(draw * 4, queue.offsetOf(draw));
+                assertEquals(draw, queue.paramOf(draw));
+            }
+        }
+    }
+
+}
@@ -0,0 +1,95 @@
+package io.github.phantamanta44.shlgl.graphics.render;
+
+import io.github.phantamanta44.shlgl.graphics.texture.TextureInfo;
+import io.github.phantamanta44.shlgl.graphics.texture.TextureManager;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Tests for the quads and draws {@link NullRenderBackend} counts from a flushed {@link RenderBuffer}.
+ * @author Evan Geng
+ */
+public class NullRenderBackendTest {
+
+    @Test
+    public void splitsDrawsAtTheBatchSize() {
+        NullRenderBackend backend = new NullRenderBackend(4);
+        RenderBuffer buf = new RenderBuffer();
+        for (int i = 0; i < 10; i++)
+            buf.drawRect(i, 0F, 1F, 1F);
+        buf.flush(backend);
+        assertEquals(10, backend.getQuads());
+        assertEquals(40, backend.getVertices());
+        assertEquals(3, backend.getDraws());
+    }
+
+    @Test
+    public void splitsDrawsOnTextureChanges() {
+        TextureInfo a = TextureManager.createRenderTarget(4, 4), b = TextureManager.createRenderTarget(4, 4);
+        NullRenderBackend backend = new NullRenderBackend();
+        RenderBuffer buf = new RenderBuffer();
+        buf.bind(a);
+        buf.drawRect(0F, 0F, 1F, 1F);
+        buf.drawRect(1F, 0F, 1F, 1F);
+        buf.bind(b);
+        buf.drawRect(2F, 0F, 1F, 1F);
+        buf.bind(a);
+        buf.drawRect(3F, 0F, 1F, 1F);
+        buf.flush(backend);
+        assertEquals(4, backend.getQuads());
+        assertEquals(3, backend.getDraws());
+    }
+
+    @Test
+    public void splitsDrawsOnColourChangesOnly() {
+        NullRenderBackend backend = new NullRenderBackend();
+        RenderBuffer buf = new RenderBuffer();
+        buf.drawRect(0F, 0F, 1F, 1F);
+        buf.colour4F(1F, 1F, 1F, 1F);
+        buf.drawRect(1F, 0F, 1F, 1F);
+        buf.colour4F(1F, 0F, 0F, 1F);
+        buf.drawRect(2F, 0F, 1F, 1F);
+        buf.flush(backend);
+        assertEquals(3, backend.getQuads());
+        assertEquals(2, backend.getDraws());
+    }
+
+    @Test
+    public void batchesUntintedSpritesWithQuads() {
+        NullRenderBackend backend = new NullRenderBackend();
+        RenderBuffer buf = new RenderBuffer();
+        buf.colour4F(0.5F, 0.5F, 0.5F, 1F);
+        buf.drawRect(0F, 0F, 1F, 1F);
+        for (int i = 0; i < 5; i++)
+            buf.drawSprite(i, 0F, 1F, 1F, 0F, 0F, 1F, 1F, 30F, 0xFFFFFFFF);
+        buf.flush(backend);
+        assertEquals(6, backend.getQuads());
+        assertEquals(1, backend.getDraws());
+    }
+
+    @Test
+    public void drawsTintedSpritesSeparately() {
+        NullRenderBackend backend = new NullRenderBackend();
+        RenderBuffer buf = new RenderBuffer();
+        buf.drawRect(0F, 0F, 1F, 1F);
+        buf.drawSprite(1F, 0F, 1F, 1F, 0F, 0F, 1F, 1F, 0F, 0xFF0000FF);
+        buf.drawRect(2F, 0F, 1F, 1F);
+        buf.flush(backend);
+        assertEquals(3, backend.getQuads());
+        assertEquals(3, backend.getDraws());
+    }
+
+    @Test
+    public void resetsCountsEachFrame() {
+        NullRenderBackend backend = new NullRenderBackend();
+        RenderBuffer buf = new RenderBuffer();
+        buf.drawRect(0F, 0F, 1F, 1F);
+        buf.flush(backend);
+        assertEquals(1, backend.getQuads());
+        buf.flush(backend);
+        assertEquals(0, backend.getQuads());
+        assertEquals(0, backend.getDraws());
+    }
+
+}
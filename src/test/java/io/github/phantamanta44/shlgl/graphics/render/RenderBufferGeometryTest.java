@@ -0,0 +1,206 @@
+package io.github.phantamanta44.shlgl.graphics.render;
+
+import io.github.phantamanta44.shlgl.graphics.texture.TextureInfo;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for the quads generated by the shape drawing methods of {@link RenderBuffer}.
+ * @author Evan Geng
+ */
+public class RenderBufferGeometryTest {
+
+    /**
+     * The tolerance for vertex positions.
+     */
+    private static final float EPSILON = 1E-4F;
+
+    /**
+     * Flushes a buffer into a capturing backend.
+     * @param buf The buffer.
+     * @return The captured quads, each as four x, y positions.
+     */
+    private static List<float[]> capture(RenderBuffer buf) {
+        List<float[]> quads = new ArrayList<>();
+        buf.flush(new RenderBackend() {
+            @Override
+            public void setTexture(TextureInfo texture) {
+                // NO-OP
+            }
+
+            @Override
+            public void setColour(float[] colour) {
+                // NO-OP
+            }
+
+            @Override
+            public void drawQuad(float x1, float y1, float u1, float v1,
+                                 float x2, float y2, float u2, float v2,
+                                 float x3, float y3, float u3, float v3,
+                                 float x4, float y4, float u4, float v4) {
+                quads.add(new float[] {x1, y1, x2, y2, x3, y3, x4, y4});
+            }
+        });
+        return quads;
+    }
+
+    /**
+     * Asserts that a vertex of a quad lies at a position.
+     * @param quad The quad.
+     * @param vertex The vertex's index.
+     * @param x The expected x-coordinate.
+     * @param y The expected y-coordinate.
+     */
+    private static void assertVertex(float[] quad, int vertex, float x, float y) {
+        assertEquals(x, quad[vertex * 2], EPSILON);
+        assertEquals(y, quad[vertex * 2 + 1], EPSILON);
+    }
+
+    @Test
+    public void drawsStraightPolylineSegments() {
+        RenderBuffer buf = new RenderBuffer();
+        buf.drawPolyline(new float[] {0F, 0F, 5F, 0F, 10F, 0F}, 2F, false);
+        List<float[]> quads = capture(buf);
+        assertEquals(2, quads.size());
+        assertVertex(quads.get(0), 0, 0F, -1F);
+        assertVertex(quads.get(0), 1, 5F, -1F);
+        assertVertex(quads.get(0), 2, 5F, 1F);
+        assertVertex(quads.get(0), 3, 0F, 1F);
+        assertVertex(quads.get(1), 1, 10F, -1F);
+        assertVertex(quads.get(1), 2, 10F, 1F);
+    }
+
+    @Test
+    public void mitersRightAngleJoins() {
+        RenderBuffer buf = new RenderBuffer();
+        buf.drawPolyline(new float[] {0F, 0F, 10F, 0F, 10F, 10F}, 2F, false);
+        List<float[]> quads = capture(buf);
+        assertEquals(2, quads.size());
+        float[] first = quads.get(0), second = quads.get(1);
+        assertVertex(first, 1, 11F, -1F);
+        assertVertex(first, 2, 9F, 1F);
+        assertVertex(second, 0, 11F, -1F);
+        assertVertex(second, 3, 9F, 1F);
+        assertVertex(second, 1, 11F, 10F);
+        assertVertex(second, 2, 9F, 10F);
+    }
+
+    @Test
+    public void clipsSharpJoins() {
+        RenderBuffer buf = new RenderBuffer();
+        buf.drawPolyline(new float[] {0F, 0F, 10F, 0F, 0F, 0.5F}, 2F, false);
+        float[] quad = capture(buf).get(0);
+        float ox = quad[4] - 10F, oy = quad[5];
+        float reach = (float)Math.sqrt(ox * ox + oy * oy);
+        assertTrue("Join reaches " + reach, reach <= 4F + EPSILON);
+        assertTrue("Join reaches " + reach, reach > 1F);
+    }
+
+    @Test
+    public void closesPolylinesBackToTheStart() {
+        RenderBuffer buf = new RenderBuffer();
+        buf.drawPolyline(new float[] {0F, 0F, 10F, 0F, 10F, 10F, 0F, 10F}, 2F, true);
+        List<float[]> quads = capture(buf);
+        assertEquals(4, quads.size());
+        float[] first = quads.get(0), last = quads.get(3);
+        assertVertex(first, 0, -1F, -1F);
+        assertVertex(first, 3, 1F, 1F);
+        assertVertex(last, 1, -1F, -1F);
+        assertVertex(last, 2, 1F, 1F);
+        assertVertex(quads.get(1), 0, 11F, -1F);
+        assertVertex(quads.get(2), 0, 11F, 11F);
+    }
+
+    @Test
+    public void reusesPolylineScratchAcrossSizes() {
+        RenderBuffer buf = new RenderBuffer();
+        float[] longLine = new float[200];
+        for (int i = 0; i < 100; i++) {
+            longLine[i * 2] = i;
+            longLine[i * 2 + 1] = (i % 2) * 3F;
+        }
+        buf.drawPolyline(longLine, 1F, false);
+        assertEquals(99, capture(buf).size());
+        float[] shortLine = {0F, 0F, 10F, 0F, 10F, 10F};
+        buf.drawPolyline(shortLine, 2F, false);
+        List<float[]> reused = capture(buf);
+        RenderBuffer fresh = new RenderBuffer();
+        fresh.drawPolyline(shortLine, 2F, false);
+        List<float[]> expected = capture(fresh);
+        assertEquals(expected.size(), reused.size());
+        for (int i = 0; i < expected.size(); i++)
+            assertArrayEquals(expected.get(i), reused.get(i), EPSILON);
+    }
+
+    @Test
+    public void skipsDegeneratePolylines() {
+        RenderBuffer buf = new RenderBuffer();
+        buf.drawPolyline(new float[] {3F, 4F}, 2F, true);
+        assertEquals(0, capture(buf).size());
+    }
+
+    @Test
+    public void fansPolygonsTwoTrianglesPerQuad() {
+        for (int count = 3; count <= 9; count++) {
+            float[] points = new float[count * 2];
+            for (int i = 0; i < count; i++) {
+                double angle = 2D * Math.PI * i / count;
+                points[i * 2] = (float)Math.cos(angle);
+                points[i * 2 + 1] = (float)Math.sin(angle);
+            }
+            RenderBuffer buf = new RenderBuffer();
+            buf.drawPolygon(points);
+            List<float[]> quads = capture(buf);
+            assertEquals("Quads for " + count + " vertices", (count - 1) / 2, quads.size());
+            for (float[] quad : quads)
+                assertVertex(quad, 0, points[0], points[1]);
+            float[] last = quads.get(quads.size() - 1);
+            assertVertex(last, 3, points[(count - 1) * 2], points[(count - 1) * 2 + 1]);
+        }
+    }
+
+    @Test
+    public void tessellatesCirclesBySegmentCount() {
+        for (int segments = 3; segments <= 12; segments++) {
+            RenderBuffer buf = new RenderBuffer();
+            buf.drawCircle(5F, -2F, 3F, segments);
+            List<float[]> quads = capture(buf);
+            assertEquals("Quads for " + segments + " segments", (segments + 1) / 2, quads.size());
+            for (float[] quad : quads) {
+                assertVertex(quad, 0, 5F, -2F);
+                for (int v = 1; v < 4; v++) {
+                    float dx = quad[v * 2] - 5F, dy = quad[v * 2 + 1] + 2F;
+                    assertEquals(3F, (float)Math.sqrt(dx * dx + dy * dy), EPSILON);
+                }
+            }
+            assertVertex(quads.get(quads.size() - 1), 3, 8F, -2F);
+        }
+    }
+
+    @Test
+    public void ringsCircleOutlinesBySegmentCount() {
+        RenderBuffer buf = new RenderBuffer();
+        buf.drawCircleOutline(0F, 0F, 4F, 2F, 16);
+        List<float[]> quads = capture(buf);
+        assertEquals(16, quads.size());
+        for (float[] quad : quads) {
+            assertEquals(3F, (float)Math.hypot(quad[0], quad[1]), EPSILON);
+            assertEquals(3F, (float)Math.hypot(quad[2], quad[3]), EPSILON);
+            assertEquals(5F, (float)Math.hypot(quad[4], quad[5]), EPSILON);
+            assertEquals(5F, (float)Math.hypot(quad[6], quad[7]), EPSILON);
+        }
+        assertVertex(quads.get(15), 1, 3F, 0F);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsCirclesWithTooFewSegments() {
+        new RenderBuffer().drawCircle(0F, 0F, 1F, 2);
+    }
+
+}
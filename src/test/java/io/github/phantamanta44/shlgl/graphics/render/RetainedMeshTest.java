@@ -0,0 +1,83 @@
+package io.github.phantamanta44.shlgl.graphics.render;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+/**
+ * Tests for how {@link RetainedMesh.Builder} splits captured quads into runs.
+ * @author Evan Geng
+ */
+public class RetainedMeshTest {
+
+    /**
+     * Captures a unit quad.
+     * @param builder The builder to capture into.
+     */
+    private static void drawQuad(RetainedMesh.Builder builder) {
+        builder.drawQuad(0F, 0F, 0F, 0F, 1F, 0F, 1F, 0F, 1F, 1F, 1F, 1F, 0F, 1F, 0F, 1F);
+    }
+
+    @Test
+    public void keepsEqualColoursInOneRun() {
+        RetainedMesh.Builder builder = new RetainedMesh.Builder();
+        builder.setColour(new float[] {1F, 0.5F, 0.25F, 1F});
+        drawQuad(builder);
+        builder.setColour(new float[] {1F, 0.5F, 0.25F, 1F});
+        drawQuad(builder);
+        builder.setColour(new float[] {1F, 0.5F, 0.25F, 1F});
+        drawQuad(builder);
+        RetainedMesh mesh = builder.build();
+        assertEquals(3, mesh.getQuadCount());
+        assertEquals(1, mesh.getRunCount());
+    }
+
+    @Test
+    public void splitsRunsOnColourChange() {
+        RetainedMesh.Builder builder = new RetainedMesh.Builder();
+        builder.setColour(new float[] {1F, 1F, 1F, 1F});
+        drawQuad(builder);
+        builder.setColour(new float[] {1F, 0F, 0F, 1F});
+        drawQuad(builder);
+        builder.setColour(new float[] {1F, 1F, 1F, 1F});
+        drawQuad(builder);
+        RetainedMesh mesh = builder.build();
+        assertEquals(3, mesh.getRunCount());
+        assertArrayEquals(new float[] {1F, 0F, 0F, 1F}, mesh.colourOf(1), 0F);
+        assertEquals(2, mesh.startOf(2));
+    }
+
+    @Test
+    public void copiesColourValues() {
+        RetainedMesh.Builder builder = new RetainedMesh.Builder();
+        float[] colour = {0.5F, 0.5F, 0.5F, 1F};
+        builder.setColour(colour);
+        drawQuad(builder);
+        colour[0] = 0F;
+        RetainedMesh mesh = builder.build();
+        assertArrayEquals(new float[] {0.5F, 0.5F, 0.5F, 1F}, mesh.colourOf(0), 0F);
+    }
+
+    @Test
+    public void keepsCachedLayersBetweenRuns() {
+        RenderBuffer buf = new RenderBuffer();
+        RenderBuffer child = buf.fork();
+        CachedLayer layer = new CachedLayer(4, 4, pass -> pass.drawRect(0F, 0F, 4F, 4F));
+        child.drawRect(0F, 0F, 1F, 1F);
+        child.translate(2F, 0F);
+        layer.draw(child, 0F, 0F);
+        child.drawRect(1F, 0F, 1F, 1F);
+        RetainedMesh mesh = buf.bake(child);
+        assertEquals(2, mesh.getQuadCount());
+        assertEquals(2, mesh.getRunCount());
+        assertEquals(1, mesh.getPassthroughCount());
+        RetainedMesh.Passthrough kept = mesh.passthroughOf(0);
+        assertEquals(1, kept.run);
+        assertSame(layer.getTexture(), kept.layer);
+        assertArrayEquals(new float[] {0F, 0F, 4F, 4F}, kept.rect, 0F);
+        assertEquals(2F, kept.kernel[3], 0F);
+    }
+
+}
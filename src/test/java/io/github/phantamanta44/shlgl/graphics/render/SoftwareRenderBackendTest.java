@@ -0,0 +1,179 @@
+package io.github.phantamanta44.shlgl.graphics.render;
+
+import io.github.phantamanta44.shlgl.graphics.texture.TextureInfo;
+import io.github.phantamanta44.shlgl.graphics.texture.TextureManager;
+import org.junit.Test;
+
+import java.awt.image.BufferedImage;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Tests for the pixels {@link SoftwareRenderBackend} produces from a flushed {@link RenderBuffer}.
+ * @author Evan Geng
+ */
+public class SoftwareRenderBackendTest {
+
+    /**
+     * Asserts that a pixel has a colour.
+     * @param backend The backend.
+     * @param x The pixel's x-coordinate.
+     * @param y The pixel's y-coordinate, counting from the bottom.
+     * @param argb The expected colour, packed as 0xAARRGGBB.
+     */
+    private static void assertPixel(SoftwareRenderBackend backend, int x, int y, int argb) {
+        assertEquals("Pixel " + x + ", " + y, Integer.toHexString(argb), Integer.toHexString(backend.getPixel(x, y)));
+    }
+
+    @Test
+    public void fillsRectanglesByPixelCentres() {
+        SoftwareRenderBackend backend = new SoftwareRenderBackend(8, 8);
+        RenderBuffer buf = new RenderBuffer();
+        buf.drawRect(2F, 2F, 3F, 3F);
+        buf.flush(backend);
+        for (int y = 0; y < 8; y++) {
+            for (int x = 0; x < 8; x++) {
+                boolean inside = x >= 2 && x < 5 && y >= 2 && y < 5;
+                assertPixel(backend, x, y, inside ? 0xFFFFFFFF : 0);
+            }
+        }
+    }
+
+    @Test
+    public void fillsSharedEdgesOnce() {
+        SoftwareRenderBackend backend = new SoftwareRenderBackend(8, 8);
+        backend.setBlending(true);
+        RenderBuffer buf = new RenderBuffer();
+        buf.colour4F(1F, 1F, 1F, 0.5F);
+        buf.drawRect(0F, 0F, 4F, 8F);
+        buf.drawRect(4F, 0F, 4F, 8F);
+        buf.flush(backend);
+        for (int y = 0; y < 8; y++) {
+            for (int x = 0; x < 8; x++)
+                assertPixel(backend, x, y, 0x40808080);
+        }
+    }
+
+    @Test
+    public void modulatesByTheColourModifier() {
+        SoftwareRenderBackend backend = new SoftwareRenderBackend(4, 4);
+        RenderBuffer buf = new RenderBuffer();
+        buf.colour4F(1F, 0.5F, 0F, 1F);
+        buf.drawRect(0F, 0F, 4F, 4F);
+        buf.flush(backend);
+        assertPixel(backend, 1, 1, 0xFFFF8000);
+    }
+
+    @Test
+    public void multipliesSpriteColourByTheColourModifier() {
+        SoftwareRenderBackend backend = new SoftwareRenderBackend(8, 4);
+        RenderBuffer buf = new RenderBuffer();
+        buf.colour4F(0.5F, 1F, 1F, 1F);
+        buf.drawSprite(0F, 0F, 4F, 4F, 0F, 0F, 1F, 1F, 0F, 0xFF0000FF);
+        buf.drawRect(4F, 0F, 4F, 4F);
+        buf.flush(backend);
+        assertPixel(backend, 1, 1, 0xFF800000);
+        assertPixel(backend, 5, 1, 0xFF80FFFF);
+    }
+
+    @Test
+    public void leavesUntintedSpritesAtTheColourModifier() {
+        SoftwareRenderBackend backend = new SoftwareRenderBackend(4, 4);
+        RenderBuffer buf = new RenderBuffer();
+        buf.colour4F(0F, 1F, 0F, 1F);
+        buf.drawSprite(0F, 0F, 4F, 4F, 0F, 0F, 1F, 1F, 0F, 0xFFFFFFFF);
+        buf.flush(backend);
+        assertPixel(backend, 2, 2, 0xFF00FF00);
+    }
+
+    @Test
+    public void blendsAllChannelsLikeOpenGl() {
+        SoftwareRenderBackend backend = new SoftwareRenderBackend(4, 4);
+        backend.setBlending(true);
+        backend.setClearColour(0xFF0000FF);
+        RenderBuffer buf = new RenderBuffer();
+        buf.colour4F(1F, 1F, 1F, 0.5F);
+        buf.drawRect(0F, 0F, 2F, 4F);
+        buf.colour4F(1F, 1F, 1F, 0F);
+        buf.drawRect(2F, 0F, 2F, 4F);
+        buf.flush(backend);
+        assertPixel(backend, 0, 0, 0xBF8080FF);
+        assertPixel(backend, 3, 0, 0xFF0000FF);
+    }
+
+    @Test
+    public void overwritesPixelsWithoutBlending() {
+        SoftwareRenderBackend backend = new SoftwareRenderBackend(4, 4);
+        backend.setClearColour(0xFF0000FF);
+        RenderBuffer buf = new RenderBuffer();
+        buf.colour4F(1F, 1F, 1F, 0.5F);
+        buf.drawRect(0F, 0F, 2F, 4F);
+        buf.colour4F(1F, 0F, 0F, 0F);
+        buf.drawRect(2F, 0F, 2F, 4F);
+        buf.flush(backend);
+        assertPixel(backend, 0, 0, 0x80FFFFFF);
+        assertPixel(backend, 3, 0, 0x00FF0000);
+    }
+
+    @Test
+    public void samplesRegisteredTextures() {
+        BufferedImage image = new BufferedImage(2, 2, BufferedImage.TYPE_INT_ARGB);
+        image.setRGB(0, 0, 0xFFFF0000);
+        image.setRGB(1, 0, 0xFF00FF00);
+        image.setRGB(0, 1, 0xFF0000FF);
+        image.setRGB(1, 1, 0xFFFFFFFF);
+        TextureInfo tex = TextureManager.createRenderTarget(2, 2);
+        SoftwareRenderBackend backend = new SoftwareRenderBackend(8, 8);
+        backend.putTexture(tex, image);
+        RenderBuffer buf = new RenderBuffer();
+        buf.bind(tex);
+        buf.drawRect(0F, 0F, 8F, 8F);
+        buf.flush(backend);
+        assertPixel(backend, 1, 6, 0xFFFF0000);
+        assertPixel(backend, 6, 6, 0xFF00FF00);
+        assertPixel(backend, 1, 1, 0xFF0000FF);
+        assertPixel(backend, 6, 1, 0xFFFFFFFF);
+    }
+
+    @Test
+    public void normalizesTexelsAgainstTheTextureBoundWhenDrawn() {
+        BufferedImage image = new BufferedImage(2, 2, BufferedImage.TYPE_INT_ARGB);
+        image.setRGB(0, 0, 0xFFFF0000);
+        image.setRGB(1, 0, 0xFF00FF00);
+        image.setRGB(0, 1, 0xFF0000FF);
+        image.setRGB(1, 1, 0xFFFFFFFF);
+        TextureInfo tex = TextureManager.createRenderTarget(2, 2);
+        SoftwareRenderBackend backend = new SoftwareRenderBackend(4, 4);
+        backend.putTexture(tex, image);
+        RenderBuffer buf = new RenderBuffer();
+        RenderBuffer first = buf.fork(), second = buf.fork();
+        second.drawRect(0F, 0F, 4F, 4F, 0F, 0F, 1F, 1F);
+        first.bind(tex);
+        buf.join(first);
+        buf.join(second);
+        buf.flush(backend);
+        for (int y = 0; y < 4; y++) {
+            for (int x = 0; x < 4; x++)
+                assertPixel(backend, x, y, 0xFF0000FF);
+        }
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void rejectsTexelsWithoutABoundTexture() {
+        RenderBuffer buf = new RenderBuffer();
+        buf.drawRect(0F, 0F, 4F, 4F, 1F, 0F, 1F, 1F);
+        buf.flush(new SoftwareRenderBackend(4, 4));
+    }
+
+    @Test
+    public void clearsEachFrame() {
+        SoftwareRenderBackend backend = new SoftwareRenderBackend(4, 4);
+        RenderBuffer buf = new RenderBuffer();
+        buf.drawRect(0F, 0F, 4F, 4F);
+        buf.flush(backend);
+        assertPixel(backend, 0, 0, 0xFFFFFFFF);
+        buf.flush(backend);
+        assertPixel(backend, 0, 0, 0);
+    }
+
+}
@@ -0,0 +1,32 @@
+package io.github.phantamanta44.shlgl.graphics.texture;
+
+import org.junit.Test;
+import org.lwjgl.BufferUtils;
+
+import java.nio.ByteBuffer;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Tests for the padding {@link TextureAtlas} puts around packed images.
+ * @author Evan Geng
+ */
+public class TextureAtlasTest {
+
+    @Test
+    public void repeatsEdgePixelsIntoThePadding() {
+        ByteBuffer data = BufferUtils.createByteBuffer(2 * 2 * 4);
+        data.putInt(0, 0x11111111).putInt(4, 0x22222222).putInt(8, 0x33333333).putInt(12, 0x44444444);
+        ByteBuffer padded = TextureAtlas.pad(new TextureData(2, 2, data));
+        int[] expected = {
+                0x11111111, 0x11111111, 0x22222222, 0x22222222,
+                0x11111111, 0x11111111, 0x22222222, 0x22222222,
+                0x33333333, 0x33333333, 0x44444444, 0x44444444,
+                0x33333333, 0x33333333, 0x44444444, 0x44444444
+        };
+        assertEquals(expected.length * 4, padded.remaining());
+        for (int i = 0; i < expected.length; i++)
+            assertEquals("Pixel " + i, expected[i], padded.getInt(i * 4));
+    }
+
+}
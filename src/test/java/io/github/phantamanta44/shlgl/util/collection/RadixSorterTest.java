@@ -0,0 +1,104 @@
+package io.github.phantamanta44.shlgl.util.collection;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for {@link RadixSorter}, checked against {@link Arrays#sort(long[])}.
+ * @author Evan Geng
+ */
+public class RadixSorterTest {
+
+    /**
+     * Sorts random keys and checks them against the reference sort and the values for stability.
+     * @param sorter The sorter.
+     * @param keys The keys, of which the first <code>n</code> are sorted.
+     * @param n The number of keys to sort.
+     */
+    private static void checkSort(RadixSorter sorter, long[] keys, int n) {
+        long[] original = keys.clone();
+        int[] values = new int[keys.length];
+        for (int i = 0; i < values.length; i++)
+            values[i] = i;
+        sorter.sort(keys, values, n);
+        long[] expected = new long[n];
+        for (int i = 0; i < n; i++)
+            expected[i] = original[i] ^ Long.MIN_VALUE;
+        Arrays.sort(expected);
+        for (int i = 0; i < n; i++)
+            expected[i] ^= Long.MIN_VALUE;
+        assertArrayEquals(expected, Arrays.copyOf(keys, n));
+        for (int i = 0; i < n; i++) {
+            assertEquals(original[values[i]], keys[i]);
+            if (i > 0 && keys[i] == keys[i - 1])
+                assertTrue("Equal keys out of submission order at " + i, values[i] > values[i - 1]);
+        }
+        for (int i = n; i < keys.length; i++) {
+            assertEquals(original[i], keys[i]);
+            assertEquals(i, values[i]);
+        }
+    }
+
+    @Test
+    public void sortsFullRangeKeysUnsigned() {
+        Random rand = new Random(44L);
+        RadixSorter sorter = new RadixSorter();
+        for (int trial = 0; trial < 20; trial++) {
+            long[] keys = new long[1 + rand.nextInt(3000)];
+            for (int i = 0; i < keys.length; i++)
+                keys[i] = rand.nextLong();
+            checkSort(sorter, keys, keys.length);
+        }
+    }
+
+    @Test
+    public void keepsEqualKeysInSubmissionOrder() {
+        Random rand = new Random(45L);
+        RadixSorter sorter = new RadixSorter();
+        for (int trial = 0; trial < 20; trial++) {
+            long[] keys = new long[2000];
+            for (int i = 0; i < keys.length; i++)
+                keys[i] = (long)rand.nextInt(8) << 56 | (long)rand.nextInt(4) << 16 | rand.nextInt(3);
+            checkSort(sorter, keys, keys.length);
+        }
+    }
+
+    @Test
+    public void sortsOnlyPrefix() {
+        Random rand = new Random(46L);
+        long[] keys = new long[500];
+        for (int i = 0; i < keys.length; i++)
+            keys[i] = rand.nextLong();
+        checkSort(new RadixSorter(), keys, 200);
+    }
+
+    @Test
+    public void handlesUniformAndTrivialInputs() {
+        RadixSorter sorter = new RadixSorter();
+        long[] same = new long[100];
+        Arrays.fill(same, 0x123456789ABCDEFL);
+        checkSort(sorter, same, same.length);
+        checkSort(sorter, new long[] {-1L, 0L, Long.MIN_VALUE, Long.MAX_VALUE, 1L}, 5);
+        checkSort(sorter, new long[] {7L}, 1);
+        checkSort(sorter, new long[0], 0);
+    }
+
+    @Test
+    public void reusesScratchAcrossSizes() {
+        Random rand = new Random(47L);
+        RadixSorter sorter = new RadixSorter();
+        for (int size : new int[] {1000, 10, 4000, 3}) {
+            long[] keys = new long[size];
+            for (int i = 0; i < size; i++)
+                keys[i] = rand.nextInt(50);
+            checkSort(sorter, keys, size);
+        }
+    }
+
+}